@@ -0,0 +1,156 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.cache.HotKeyDetector;
+import com.example.demo.cache.ProductBloomFilter;
+import com.example.demo.cache.ProductCache;
+import com.example.demo.cache.ProductCacheProperties;
+import com.example.demo.config.JacksonConfig;
+import com.example.demo.id.SnowflakeIdGenerator;
+import com.example.demo.mapper.OrderItemMapper;
+import com.example.demo.mapper.ProductMapper;
+import com.example.demo.metrics.ShopMetrics;
+import com.example.demo.service.OrderNumberGenerator;
+import com.example.demo.service.OrderPricing;
+import com.example.demo.service.OrderService;
+import com.example.demo.service.OrderTimeoutQueue;
+import com.example.demo.service.ProductOutbox;
+import com.example.demo.service.ProductService;
+import com.example.demo.service.StockReservationService;
+import com.example.demo.service.StockWriteBehindBuffer;
+import com.example.demo.shard.ShardRouter;
+import com.example.demo.support.ServiceFixtures;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fppt.jedismock.RedisServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.codec.JsonJacksonCodec;
+import org.redisson.config.Config;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 离线运行的被测对象：真实的 Service 和缓存组件，数据库换成内存 Mapper，
+ * Redis 换成进程内的 jedis-mock（走真实的 RESP 协议和 Redisson 客户端）。
+ */
+final class BenchmarkFixture implements AutoCloseable {
+    static final long MAX_PRODUCT_ID = 100_000;
+
+    final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+    final RedisServer redisServer;
+    final RedissonClient redissonClient;
+    final ProductCache productCache;
+    final ProductService productService;
+    final OrderPricing orderPricing;
+    final OrderService orderService;
+    final OrderNumberGenerator orderNumberGenerator = new OrderNumberGenerator(new SnowflakeIdGenerator(0), ShardRouter.single());
+    // 模拟 @Transactional：提供事务同步，使提交后回调（确认预扣、清缓存）照常执行
+    final TransactionTemplate transactionTemplate = new TransactionTemplate(new NoOpTransactionManager());
+
+    BenchmarkFixture() throws IOException {
+        this(InMemoryMappers.productMapper(MAX_PRODUCT_ID));
+    }
+
+    // productMapper 可以包一层模拟查库往返，使缓存未命中路径与基线承担相同的延迟
+    BenchmarkFixture(ProductMapper productMapper) throws IOException {
+        redisServer = RedisServer.newRedisServer();
+        redisServer.start();
+        Config config = new Config();
+        config.setCodec(new JsonJacksonCodec(objectMapper));
+        // jedis-mock 不能在同一个连接上订阅多个频道，每个频道单独一个订阅连接
+        config.useSingleServer()
+                .setAddress(String.format("redis://%s:%d", redisServer.getHost(), redisServer.getBindPort()))
+                .setSubscriptionsPerConnection(1);
+        redissonClient = Redisson.create(config);
+
+        productCache = new ProductCache(redissonClient, 10_000, 5_000);
+        productCache.subscribe();
+        HotKeyDetector hotKeyDetector = new HotKeyDetector(6, 4096, 4, 1000, 200, 100, Set.of());
+        // 未预热的布隆过滤器一律放行
+        ProductBloomFilter bloomFilter = new ProductBloomFilter(redissonClient, productMapper,
+                new NoOpTransactionManager(), 100_000, 0.0001, Duration.ofHours(6));
+        ShopMetrics shopMetrics = new ShopMetrics(new SimpleMeterRegistry());
+        // 关闭 outbox，变更后直接清缓存（不访问 outbox 表）
+        ProductOutbox productOutbox = new ProductOutbox(null, productMapper, productCache, hotKeyDetector,
+                new ProductCacheProperties(), redissonClient, false, 500);
+        // 关闭 write-behind，库存直接更新
+        StockWriteBehindBuffer stockBuffer = new StockWriteBehindBuffer(productMapper,
+                InMemoryMappers.stockJournalMapper(), productOutbox, redissonClient,
+                new NoOpTransactionManager(), false, true, 1000);
+        productService = ServiceFixtures.productService(productMapper)
+                .redissonClient(redissonClient)
+                .productCache(productCache)
+                .hotKeyDetector(hotKeyDetector)
+                .productBloomFilter(bloomFilter)
+                .stockWriteBehindBuffer(stockBuffer)
+                .shopMetrics(shopMetrics)
+                .productOutbox(productOutbox)
+                .build();
+        orderPricing = new OrderPricing(productService, new NoOpTransactionManager());
+        OrderItemMapper orderItemMapper = InMemoryMappers.orderItemMapper();
+        orderService = ServiceFixtures.orderService(InMemoryMappers.orderMapper(), orderItemMapper,
+                        productService, new NoOpTransactionManager())
+                .stockReservationService(new NoOpStockReservationService())
+                .orderNumberGenerator(orderNumberGenerator)
+                .orderTimeoutQueue(new OrderTimeoutQueue(redissonClient, Duration.ofMinutes(30), false))
+                .orderPricing(orderPricing)
+                .shopMetrics(shopMetrics)
+                .build();
+    }
+
+    @Override
+    public void close() throws IOException {
+        productCache.unsubscribe();
+        redissonClient.shutdown();
+        redisServer.stop();
+    }
+
+    private static final class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+
+    // 预扣库存的 Lua 脚本依赖真实 Redis 的性能特征，这里不计入下单基准
+    private static final class NoOpStockReservationService implements StockReservationService {
+        @Override
+        public void reserve(String token, Map<Long, Integer> quantities) {
+        }
+
+        @Override
+        public void confirm(String token) {
+        }
+
+        @Override
+        public void release(String token) {
+        }
+
+        @Override
+        public void restore(Map<Long, Integer> quantities) {
+        }
+
+        @Override
+        public void reconcile() {
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.entity.Order;
+import com.example.demo.entity.Product;
+import com.example.demo.mapper.OrderItemMapper;
+import com.example.demo.mapper.OrderMapper;
+import com.example.demo.mapper.ProductMapper;
+import com.example.demo.mapper.StockJournalMapper;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * 基准测试用的内存版 Mapper，只实现被测路径用到的方法，其余方法抛 UnsupportedOperationException。
+ * 用动态代理实现，Mapper 接口新增方法时不需要同步修改。
+ */
+final class InMemoryMappers {
+
+    private InMemoryMappers() {
+    }
+
+    /**
+     * id 小于等于 maxProductId 的商品存在，库存无限；更大的 id 视为不存在（用于空值缓存）。
+     */
+    static ProductMapper productMapper(long maxProductId) {
+        LocalDateTime now = LocalDateTime.now();
+        Function<Long, Product> product = id -> Product.builder()
+                .id(id)
+                .name("商品" + id)
+                .price(BigDecimal.valueOf(100))
+                .stock(Integer.MAX_VALUE)
+                .description("基准测试商品")
+                .createdTime(now)
+                .updatedTime(now)
+                .build();
+        return fake(ProductMapper.class, (method, args) -> switch (method) {
+            case "findById" -> {
+                Long id = (Long) args[0];
+                yield id <= maxProductId ? Optional.of(product.apply(id)) : Optional.empty();
+            }
+            case "deductStockBatch" -> ((Map<?, ?>) args[0]).size();
+            case "deductStock", "increaseStock" -> 1;
+            case "getStock" -> Integer.MAX_VALUE;
+            case "count" -> maxProductId;
+            case "findIdsAfter" -> List.of();
+            case "findByIds", "findStockByIds" -> ((Collection<?>) args[0]).stream().map(id -> product.apply((Long) id)).toList();
+            default -> throw new UnsupportedOperationException(method);
+        });
+    }
+
+    // 基准测试不开启库存 write-behind，日志表不会被访问
+    static StockJournalMapper stockJournalMapper() {
+        return fake(StockJournalMapper.class, (method, args) -> {
+            throw new UnsupportedOperationException(method);
+        });
+    }
+
+    static OrderMapper orderMapper() {
+        AtomicLong ids = new AtomicLong();
+        return fake(OrderMapper.class, (method, args) -> switch (method) {
+            case "insert" -> {
+                ((Order) args[0]).setId(ids.incrementAndGet());
+                yield 1;
+            }
+            case "findById", "findByOrderNumber" -> Optional.empty();
+            default -> throw new UnsupportedOperationException(method);
+        });
+    }
+
+    static OrderItemMapper orderItemMapper() {
+        return fake(OrderItemMapper.class, (method, args) -> switch (method) {
+            case "insertBatch" -> ((List<?>) args[0]).size();
+            case "insert" -> 1;
+            default -> throw new UnsupportedOperationException(method);
+        });
+    }
+
+    // 每次调用前等待 latencyNanos，模拟数据库往返
+    static <T> T withLatency(Class<T> type, T target, long latencyNanos) {
+        if (latencyNanos <= 0) {
+            return target;
+        }
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (self, method, args) -> {
+            LockSupport.parkNanos(latencyNanos);
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+        return type.cast(proxy);
+    }
+
+    interface Handler {
+        Object handle(String method, Object[] args);
+    }
+
+    private static <T> T fake(Class<T> type, Handler handler) {
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (self, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "hashCode" -> System.identityHashCode(self);
+                    case "equals" -> self == args[0];
+                    default -> "InMemory" + type.getSimpleName();
+                };
+            }
+            return handler.handle(method.getName(), args);
+        });
+        return type.cast(proxy);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.dto.PurchaseRequest;
+import com.example.demo.entity.Order;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OrderServiceImpl.createOrder 按购物车大小（1/10/50 个商品）的耗时，包含提交后清理商品缓存的 Redis 往返。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderCreateBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int cartSize;
+
+    private BenchmarkFixture fixture;
+    private PurchaseRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = new BenchmarkFixture();
+        request = new PurchaseRequest();
+        request.setUserId(1L);
+        List<PurchaseRequest.PurchaseItem> items = new ArrayList<>(cartSize);
+        for (int i = 1; i <= cartSize; i++) {
+            PurchaseRequest.PurchaseItem item = new PurchaseRequest.PurchaseItem();
+            item.setProductId((long) i);
+            item.setQuantity(1);
+            items.add(item);
+        }
+        request.setItems(items);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    @Benchmark
+    public Order createOrder() {
+        return fixture.transactionTemplate.execute(status -> fixture.orderService.createOrder(request));
+    }
+}
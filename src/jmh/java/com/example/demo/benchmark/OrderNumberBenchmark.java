@@ -0,0 +1,61 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.id.SnowflakeIdGenerator;
+import com.example.demo.service.OrderNumberGenerator;
+import com.example.demo.shard.ShardRouter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// 订单号生成：单线程和多线程竞争下的耗时，legacy 为原先 时间格式化 + UUID 的实现，作对比基线
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderNumberBenchmark {
+
+    private final SnowflakeIdGenerator idGenerator = new SnowflakeIdGenerator(0);
+    private final OrderNumberGenerator generator = new OrderNumberGenerator(idGenerator, ShardRouter.single());
+
+    @Benchmark
+    public long nextId() {
+        return idGenerator.nextId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long nextIdContended() {
+        return idGenerator.nextId();
+    }
+
+    @Benchmark
+    public String next() {
+        return generator.next(1L);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String nextContended() {
+        return generator.next(1L);
+    }
+
+    @Benchmark
+    public String legacy() {
+        return "ORD" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"))
+                + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+    }
+}
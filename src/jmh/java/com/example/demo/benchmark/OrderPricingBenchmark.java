@@ -0,0 +1,104 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.entity.Product;
+import com.example.demo.mapper.ProductMapper;
+import com.example.demo.money.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 下单算价：perItemLookup 为逐个商品 findById + BigDecimal 链式计算的基线，
+ * resolve 为 OrderPricing 从商品缓存批量读取 + 分为单位的整数运算（缓存命中），
+ * resolveCold 为每次调用前清掉两级缓存后的 resolve（一次 IN 查询并回填缓存）。
+ * roundTripMicros 模拟每次查库的网络往返（内存 Mapper 本身没有延迟），基线和 OrderPricing 使用同一个 Mapper。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderPricingBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int cartSize;
+
+    @Param({"0", "200"})
+    public long roundTripMicros;
+
+    private BenchmarkFixture fixture;
+    private ProductMapper productMapper;
+    private List<Long> productIds;
+
+    // 只给 resolveCold 使用：每次调用前清掉购物车商品的两级缓存（清缓存本身不计时）
+    @State(Scope.Thread)
+    public static class ColdCache {
+        @Setup(Level.Invocation)
+        public void evict(OrderPricingBenchmark benchmark) {
+            benchmark.productIds.forEach(benchmark.fixture.productCache::evict);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        productMapper = InMemoryMappers.withLatency(ProductMapper.class,
+                InMemoryMappers.productMapper(BenchmarkFixture.MAX_PRODUCT_ID), TimeUnit.MICROSECONDS.toNanos(roundTripMicros));
+        fixture = new BenchmarkFixture(productMapper);
+        productIds = new ArrayList<>(cartSize);
+        for (long id = 1; id <= cartSize; id++) {
+            productIds.add(id);
+        }
+        // 预热缓存，resolve 测量的是稳态（命中）下的开销
+        fixture.orderPricing.resolve(productIds);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    @Benchmark
+    public BigDecimal perItemLookup() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (Long productId : productIds) {
+            Product product = productMapper.findById(productId).orElseThrow();
+            total = total.add(product.getPrice().multiply(BigDecimal.valueOf(2)));
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long resolve() {
+        return total(fixture.orderPricing.resolve(productIds));
+    }
+
+    @Benchmark
+    public long resolveCold(ColdCache cold) {
+        return total(fixture.orderPricing.resolve(productIds));
+    }
+
+    private long total(Map<Long, Money> prices) {
+        long totalCents = 0;
+        for (Long productId : productIds) {
+            totalCents = Math.addExact(totalCents, prices.get(productId).times(2).cents());
+        }
+        return totalCents;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.config.JacksonConfig;
+import com.example.demo.entity.Order;
+import com.example.demo.entity.OrderItem;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// 订单（含订单项）的 JSON 序列化，使用应用里配置的 ObjectMapper
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderSerializationBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int itemCount;
+
+    private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+    private Order order;
+    private String json;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        LocalDateTime now = LocalDateTime.now();
+        List<OrderItem> items = new ArrayList<>(itemCount);
+        for (int i = 1; i <= itemCount; i++) {
+            items.add(OrderItem.builder()
+                    .id((long) i)
+                    .orderId(1L)
+                    .productId((long) i)
+                    .quantity(2)
+                    .price(BigDecimal.valueOf(100))
+                    .subtotal(BigDecimal.valueOf(200))
+                    .build());
+        }
+        order = Order.builder()
+                .id(1L)
+                .orderNumber("ORD20240101000000ABCDEF12")
+                .userId(1L)
+                .totalAmount(BigDecimal.valueOf(200L * itemCount))
+                .status("PENDING")
+                .createdTime(now)
+                .updatedTime(now)
+                .orderItems(items)
+                .build();
+        json = objectMapper.writeValueAsString(order);
+    }
+
+    @Benchmark
+    public String serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(order);
+    }
+
+    @Benchmark
+    public Order deserialize() throws JsonProcessingException {
+        return objectMapper.readValue(json, Order.class);
+    }
+}
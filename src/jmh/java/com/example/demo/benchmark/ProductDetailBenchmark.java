@@ -0,0 +1,74 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.entity.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ProductServiceImpl.getProductDetail 的三条路径：L1 命中、两级缓存都未命中（查库并回填）、命中空值缓存。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductDetailBenchmark {
+    private static final long HIT_ID = 1L;
+    private static final long MISSING_ID = BenchmarkFixture.MAX_PRODUCT_ID + 1;
+    private static final long MISS_ID_RANGE = 1000;
+
+    private BenchmarkFixture fixture;
+
+    // 只给 cacheMiss 使用：每次调用前清掉两级缓存，保证走查库回填路径（清缓存本身不计时）
+    @State(Scope.Thread)
+    public static class MissKey {
+        long id;
+
+        @Setup(Level.Invocation)
+        public void next(ProductDetailBenchmark benchmark) {
+            id = 2 + (id + 1) % MISS_ID_RANGE;
+            benchmark.fixture.productCache.evict(id);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = new BenchmarkFixture();
+        // 预先写入缓存和空值标记
+        fixture.productService.getProductDetail(HIT_ID);
+        fixture.productService.getProductDetail(MISSING_ID);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    @Benchmark
+    public Product cacheHit() {
+        return fixture.productService.getProductDetail(HIT_ID);
+    }
+
+    @Benchmark
+    public Product cacheMiss(MissKey key) {
+        return fixture.productService.getProductDetail(key.id);
+    }
+
+    @Benchmark
+    public Product nullMarker() {
+        return fixture.productService.getProductDetail(MISSING_ID);
+    }
+}
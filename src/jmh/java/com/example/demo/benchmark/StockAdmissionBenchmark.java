@@ -0,0 +1,107 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.concurrency.StripedBudget;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 同一商品的准入令牌在 1~64 个线程竞争下的吞吐：striped 为 StripedBudget，single 为单个 AtomicLong CAS 扣减的基线。
+ * 每次获取后立即归还，预算不会耗尽，测量的是纯竞争开销。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StockAdmissionBenchmark {
+
+    private final StripedBudget striped = new StripedBudget(16);
+    private final AtomicLong single = new AtomicLong();
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        striped.reset(1_000_000);
+        single.set(1_000_000);
+    }
+
+    private boolean stripedAcquire() {
+        if (striped.tryAcquire(1)) {
+            striped.release(1);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean singleAcquire() {
+        long available;
+        while ((available = single.get()) >= 1) {
+            if (single.compareAndSet(available, available - 1)) {
+                single.incrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean striped1() {
+        return stripedAcquire();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean striped4() {
+        return stripedAcquire();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean striped16() {
+        return stripedAcquire();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public boolean striped64() {
+        return stripedAcquire();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean single1() {
+        return singleAcquire();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean single4() {
+        return singleAcquire();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean single16() {
+        return singleAcquire();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public boolean single64() {
+        return singleAcquire();
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.demo.cache;
+
+import com.example.demo.entity.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 商品缓存条目，product 为 null 表示商品不存在（空值缓存，解决缓存穿透问题）。
+ * 逻辑过期：超过 softExpireAt 仍可返回旧值并触发后台刷新，超过 hardExpireAt 才视为未命中。
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CacheEntry {
+    private Product product;
+    private long softExpireAt;
+    private long hardExpireAt;
+
+    public boolean isStale(long now) {
+        return now >= softExpireAt;
+    }
+
+    public boolean isExpired(long now) {
+        return now >= hardExpireAt;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.demo.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁 Count-Min Sketch：用 depth 行、每行 width 个计数器估算 key 的出现次数，
+ * 估算值只会偏大不会偏小。
+ */
+public class CountMinSketch {
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+            0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x94D049BB133111EBL, 0xBF58476D1CE4E5B9L
+    };
+
+    private final int depth;
+    private final int mask;
+    private final AtomicLongArray counters;
+
+    // width 会向上取整为 2 的幂，depth 最大为 8
+    public CountMinSketch(int width, int depth) {
+        if (depth < 1 || depth > SEEDS.length) {
+            throw new IllegalArgumentException("depth必须在1到" + SEEDS.length + "之间");
+        }
+        int size = Integer.highestOneBit(Math.max(width - 1, 1)) << 1;
+        this.depth = depth;
+        this.mask = size - 1;
+        this.counters = new AtomicLongArray(size * depth);
+    }
+
+    // 计数加一，返回加一后的估算值
+    public long add(long key) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters.incrementAndGet(index(row, key)));
+        }
+        return min;
+    }
+
+    public long estimate(long key) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters.get(index(row, key)));
+        }
+        return min;
+    }
+
+    public void clear() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+    }
+
+    private int index(int row, long key) {
+        long h = (key ^ (key >>> 33)) * SEEDS[row];
+        h ^= h >>> 29;
+        return row * (mask + 1) + (int) (h & mask);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.demo.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 热点商品探测：滑动窗口由若干个时间片组成，每个时间片一个 Count-Min Sketch。
+ * 窗口内访问量超过晋升阈值的商品进入热点集合（走加锁重建缓存的保护路径），
+ * 降到降级阈值以下时移出。配置中固定的商品始终视为热点。
+ */
+@Component
+@Slf4j
+public class HotKeyDetector {
+
+    private final CountMinSketch[] slices;
+    private volatile int current;
+    private final long promoteThreshold;
+    private final long demoteThreshold;
+    private final int maxHotKeys;
+    private final Set<Long> pinnedIds;
+    // 商品ID -> 晋升时间
+    private final Map<Long, Long> hotKeys = new ConcurrentHashMap<>();
+
+    public HotKeyDetector(@Value("${product.hot-key.window-slices:6}") int windowSlices,
+                          @Value("${product.hot-key.sketch-width:4096}") int sketchWidth,
+                          @Value("${product.hot-key.sketch-depth:4}") int sketchDepth,
+                          @Value("${product.hot-key.promote-threshold:1000}") long promoteThreshold,
+                          @Value("${product.hot-key.demote-threshold:200}") long demoteThreshold,
+                          @Value("${product.hot-key.max-hot-keys:100}") int maxHotKeys,
+                          @Value("${product.hot-key.pinned-ids:}") Set<Long> pinnedIds) {
+        this.slices = new CountMinSketch[windowSlices];
+        for (int i = 0; i < windowSlices; i++) {
+            slices[i] = new CountMinSketch(sketchWidth, sketchDepth);
+        }
+        this.promoteThreshold = promoteThreshold;
+        this.demoteThreshold = demoteThreshold;
+        this.maxHotKeys = maxHotKeys;
+        this.pinnedIds = Set.copyOf(pinnedIds);
+    }
+
+    // 记录一次访问，达到阈值时晋升为热点
+    public void record(Long productId) {
+        slices[current].add(productId);
+        if (isHot(productId) || hotKeys.size() >= maxHotKeys) {
+            return;
+        }
+        long count = estimate(productId);
+        if (count >= promoteThreshold && hotKeys.putIfAbsent(productId, System.currentTimeMillis()) == null) {
+            log.info("商品晋升为热点，ID: {}, 窗口访问量: {}", productId, count);
+        }
+    }
+
+    public boolean isHot(Long productId) {
+        return hotKeys.containsKey(productId) || pinnedIds.contains(productId);
+    }
+
+    // 整个窗口内的估算访问量
+    public long estimate(Long productId) {
+        long sum = 0;
+        for (CountMinSketch slice : slices) {
+            sum += slice.estimate(productId);
+        }
+        return sum;
+    }
+
+    // 滑动窗口：清空最旧的时间片作为新的当前片，并降级已冷却的热点
+    @Scheduled(fixedRateString = "${product.hot-key.slice-ms:10000}")
+    public void rotate() {
+        int next = (current + 1) % slices.length;
+        slices[next].clear();
+        current = next;
+
+        hotKeys.keySet().removeIf(productId -> {
+            long count = estimate(productId);
+            if (count < demoteThreshold) {
+                log.info("商品热度下降，移出热点，ID: {}, 窗口访问量: {}", productId, count);
+                return true;
+            }
+            return false;
+        });
+    }
+
+    public List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Long productId : pinnedIds) {
+            result.add(describe(productId, null, true));
+        }
+        hotKeys.forEach((productId, since) -> result.add(describe(productId, since, false)));
+        return result;
+    }
+
+    private Map<String, Object> describe(Long productId, Long since, boolean pinned) {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("productId", productId);
+        item.put("windowCount", estimate(productId));
+        item.put("pinned", pinned);
+        item.put("since", since);
+        return item;
+    }
+}
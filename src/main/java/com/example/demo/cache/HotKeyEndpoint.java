@@ -0,0 +1,23 @@
+package com.example.demo.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+// GET /actuator/hotkeys 查看当前节点的热点商品
+@Component
+@Endpoint(id = "hotkeys")
+@RequiredArgsConstructor
+public class HotKeyEndpoint {
+
+    private final HotKeyDetector hotKeyDetector;
+
+    @ReadOperation
+    public List<Map<String, Object>> hotKeys() {
+        return hotKeyDetector.snapshot();
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.demo.cache;
+
+import com.example.demo.mapper.ProductMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.redisson.api.RBloomFilter;
+import org.redisson.api.RBucket;
+import org.redisson.api.RLock;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.LongCodec;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 商品存在性布隆过滤器（解决缓存穿透问题）：不存在的商品ID直接返回，不查缓存和数据库。
+ * <p>
+ * Redis 中按代存放，product:bloom:current 指向当前代。定期（或元素数超过容量时）
+ * 用游标流式扫描商品ID重建新一代并切换，以清除已删除的ID、控制误判率；只有重建的节点扫描，
+ * 其他节点收到切换通知后只改用新的 Redis 过滤器，不会全集群同时扫表。
+ * 预热完成前、Redis 不可用时一律放行（视为可能存在），由缓存和数据库兜底：
+ * 只有 Redis 里的过滤器包含全部节点新增的商品，单个节点的本地副本会把其他节点的新商品误判为不存在。
+ */
+@Component
+@Slf4j
+public class ProductBloomFilter {
+    private static final String CURRENT_KEY = "product:bloom:current";
+    private static final String FILTER_KEY_PREFIX = "product:bloom:";
+    private static final String REBUILD_LOCK_KEY = "product:bloom:rebuild_lock";
+    private static final String ROTATED_TOPIC = "product:bloom:rotated";
+    private static final int BATCH_SIZE = 1000;
+    // 旧一代过滤器保留一段时间，给尚未切换的节点使用
+    private static final Duration RETIRED_TTL = Duration.ofMinutes(10);
+
+    private final RedissonClient redissonClient;
+    private final ProductMapper productMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    private final long expectedInsertions;
+    private final double falseProbability;
+    private final Duration rebuildInterval;
+
+    private volatile RBloomFilter<Long> redisFilter;
+    private RTopic rotatedTopic;
+    private int listenerId;
+
+    public ProductBloomFilter(RedissonClient redissonClient,
+                              ProductMapper productMapper,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${product.bloom-filter.expected-insertions:100000}") long expectedInsertions,
+                              @Value("${product.bloom-filter.false-probability:0.0001}") double falseProbability,
+                              @Value("${product.bloom-filter.rebuild-interval:6h}") Duration rebuildInterval) {
+        this.redissonClient = redissonClient;
+        this.productMapper = productMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.expectedInsertions = expectedInsertions;
+        this.falseProbability = falseProbability;
+        this.rebuildInterval = rebuildInterval;
+    }
+
+    // 应用启动后预热，期间请求照常放行
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            rotatedTopic = redissonClient.getTopic(ROTATED_TOPIC, StringCodec.INSTANCE);
+            listenerId = rotatedTopic.addListener(String.class, (channel, name) -> switchTo(name));
+            String current = currentPointer().get();
+            if (needsRebuild(current)) {
+                rebuild();
+            } else {
+                switchTo(current);
+            }
+        } catch (Exception e) {
+            // 下一次 checkRotation 重试，期间放行
+            log.warn("布隆过滤器预热失败，暂不拦截: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (rotatedTopic != null) {
+            rotatedTopic.removeListener(listenerId);
+        }
+    }
+
+    public boolean mightContain(Long productId) {
+        RBloomFilter<Long> filter = redisFilter;
+        if (filter == null) {
+            return true;
+        }
+        try {
+            return filter.contains(productId);
+        } catch (Exception e) {
+            log.debug("Redis布隆过滤器不可用，放行: {}", e.getMessage());
+            return true;
+        }
+    }
+
+    /**
+     * 新商品写入后立即加入（事务回滚只会多一个误判，不影响正确性），
+     * 提交后按最新指针再加一次，防止期间其他节点切换了新一代而漏掉。
+     */
+    public void add(Long productId) {
+        addNow(productId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    addNow(productId);
+                }
+            });
+        }
+    }
+
+    // 到期或元素数超过容量（误判率上升）时重建；预热失败或错过切换通知的节点在这里跟上当前代
+    @Scheduled(fixedDelayString = "${product.bloom-filter.check-interval-ms:60000}")
+    public void checkRotation() {
+        try {
+            String current = currentPointer().get();
+            if (needsRebuild(current)) {
+                rebuild();
+            } else {
+                switchTo(current);
+            }
+        } catch (Exception e) {
+            log.warn("检查布隆过滤器失败: {}", e.getMessage());
+        }
+    }
+
+    // 流式扫描商品ID构建新一代过滤器并切换，集群内同一时间只有一个节点执行
+    public void rebuild() {
+        RLock lock = redissonClient.getLock(REBUILD_LOCK_KEY);
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            RBucket<String> pointer = currentPointer();
+            String previous = pointer.get();
+            // 拿到锁之前其他节点可能刚重建完
+            if (!needsRebuild(previous)) {
+                switchTo(previous);
+                return;
+            }
+            long capacity = Math.max(expectedInsertions, productMapper.count() * 2);
+            String name = FILTER_KEY_PREFIX + System.currentTimeMillis();
+            RBloomFilter<Long> filter = redissonClient.getBloomFilter(name, LongCodec.INSTANCE);
+            filter.tryInit(capacity, falseProbability);
+
+            List<Long> batch = new ArrayList<>(BATCH_SIZE);
+            long[] maxId = {0};
+            scanIds(id -> {
+                maxId[0] = Math.max(maxId[0], id);
+                batch.add(id);
+                if (batch.size() == BATCH_SIZE) {
+                    filter.add(batch);
+                    batch.clear();
+                }
+            });
+            if (!batch.isEmpty()) {
+                filter.add(batch);
+            }
+
+            pointer.set(name);
+            redisFilter = filter;
+            // 补扫扫描期间新增的商品（它们可能只加入了旧一代）
+            for (Long id : productMapper.findIdsAfter(maxId[0])) {
+                addNow(id);
+            }
+            if (previous != null) {
+                redissonClient.getBloomFilter(previous, LongCodec.INSTANCE).expire(RETIRED_TTL);
+            }
+            rotatedTopic.publish(name);
+            log.info("布隆过滤器重建完成: {}, 容量: {}", name, capacity);
+        } finally {
+            if (lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    private boolean needsRebuild(String name) {
+        if (name == null) {
+            return true;
+        }
+        RBloomFilter<Long> filter = redissonClient.getBloomFilter(name, LongCodec.INSTANCE);
+        if (!filter.isExists()) {
+            return true;
+        }
+        long createdAt = Long.parseLong(name.substring(FILTER_KEY_PREFIX.length()));
+        return System.currentTimeMillis() - createdAt > rebuildInterval.toMillis()
+                || filter.count() > filter.getExpectedInsertions();
+    }
+
+    private void addNow(Long productId) {
+        try {
+            String name = currentPointer().get();
+            if (name != null) {
+                redissonClient.getBloomFilter(name, LongCodec.INSTANCE).add(productId);
+            }
+        } catch (Exception e) {
+            log.warn("商品ID加入Redis布隆过滤器失败，ID: {}, 原因: {}", productId, e.getMessage());
+        }
+    }
+
+    // 切换到新一代：只替换 Redis 过滤器的引用，在通知监听线程上执行也不会阻塞
+    private void switchTo(String name) {
+        RBloomFilter<Long> current = redisFilter;
+        if (current != null && current.getName().equals(name)) {
+            return;
+        }
+        redisFilter = redissonClient.getBloomFilter(name, LongCodec.INSTANCE);
+        log.info("切换到布隆过滤器: {}", name);
+    }
+
+    // 用游标流式读取全部商品ID，不把整张表加载到内存
+    private void scanIds(Consumer<Long> sink) {
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Cursor<Long> ids = productMapper.scanIds()) {
+                for (Long id : ids) {
+                    sink.accept(id);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private RBucket<String> currentPointer() {
+        return redissonClient.getBucket(CURRENT_KEY, StringCodec.INSTANCE);
+    }
+}
@@ -0,0 +1,281 @@
+package com.example.demo.cache;
+
+import com.example.demo.entity.Product;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBatch;
+import org.redisson.api.RBucket;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.LongCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 商品两级缓存：L1 为进程内 Caffeine（按容量和写入时间淘汰），L2 为 Redis。
+ * 失效时通过 Redis 发布订阅通知所有节点清理各自的 L1。
+ */
+@Component
+@Slf4j
+public class ProductCache {
+    private static final String KEY_PREFIX = "product:";
+    private static final String INVALIDATE_TOPIC = "product:cache:invalidate";
+    private static final String REBUILT_TOPIC = "product:cache:rebuilt";
+
+    private final RedissonClient redissonClient;
+    private final Cache<Long, CacheEntry> localCache;
+
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder redisMisses = new LongAdder();
+    private final LongAdder redisEvictions = new LongAdder();
+    private final LongAdder remoteInvalidations = new LongAdder();
+
+    // 等待其他节点重建缓存的请求：商品ID -> 重建完成通知
+    private final Map<Long, CompletableFuture<Void>> rebuildWaiters = new ConcurrentHashMap<>();
+
+    private RTopic invalidateTopic;
+    private int listenerId;
+    private RTopic rebuiltTopic;
+    private int rebuiltListenerId;
+
+    public ProductCache(RedissonClient redissonClient,
+                        @Value("${product.cache.local.maximum-size:10000}") long localMaximumSize,
+                        @Value("${product.cache.local.expire-after-write-ms:5000}") long localExpireAfterWriteMs) {
+        this.redissonClient = redissonClient;
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(localMaximumSize)
+                .expireAfterWrite(Duration.ofMillis(localExpireAfterWriteMs))
+                .recordStats()
+                .build();
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        invalidateTopic = redissonClient.getTopic(INVALIDATE_TOPIC, LongCodec.INSTANCE);
+        listenerId = invalidateTopic.addListener(Long.class, (channel, productId) -> {
+            remoteInvalidations.increment();
+            localCache.invalidate(productId);
+        });
+        rebuiltTopic = redissonClient.getTopic(REBUILT_TOPIC, LongCodec.INSTANCE);
+        rebuiltListenerId = rebuiltTopic.addListener(Long.class, (channel, productId) -> {
+            CompletableFuture<Void> waiter = rebuildWaiters.remove(productId);
+            if (waiter != null) {
+                waiter.complete(null);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void unsubscribe() {
+        if (invalidateTopic != null) {
+            invalidateTopic.removeListener(listenerId);
+        }
+        if (rebuiltTopic != null) {
+            rebuiltTopic.removeListener(rebuiltListenerId);
+        }
+    }
+
+    // 依次查 L1、L2，都未命中（或已硬过期）返回 null；逻辑过期的条目照常返回，由调用方决定是否刷新
+    public CacheEntry get(Long productId) {
+        CacheEntry entry = localCache.getIfPresent(productId);
+        if (entry != null) {
+            if (!entry.isExpired(System.currentTimeMillis())) {
+                return entry;
+            }
+            localCache.invalidate(productId);
+        }
+        return getFromRedis(productId);
+    }
+
+    // 跳过 L1 直接读 L2，并用读到的值刷新 L1
+    public CacheEntry getFromRedis(Long productId) {
+        CacheEntry entry = bucket(productId).get();
+        if (entry == null) {
+            redisMisses.increment();
+            return null;
+        }
+        redisHits.increment();
+        localCache.put(productId, entry);
+        return entry;
+    }
+
+    // 批量读取：先查 L1，其余一次 MGET 从 L2 读取；未命中（或已硬过期）的商品不在返回结果中
+    public Map<Long, CacheEntry> getAll(Collection<Long> productIds) {
+        long now = System.currentTimeMillis();
+        Map<Long, CacheEntry> result = new HashMap<>();
+        List<String> missingKeys = new ArrayList<>();
+        for (Long productId : productIds) {
+            CacheEntry entry = localCache.getIfPresent(productId);
+            if (entry != null && !entry.isExpired(now)) {
+                result.put(productId, entry);
+            } else {
+                missingKeys.add(KEY_PREFIX + productId);
+            }
+        }
+        if (missingKeys.isEmpty()) {
+            return result;
+        }
+        Map<String, CacheEntry> remote = redissonClient.getBuckets().get(missingKeys.toArray(new String[0]));
+        redisHits.add(remote.size());
+        redisMisses.add(missingKeys.size() - remote.size());
+        remote.forEach((key, entry) -> {
+            Long productId = Long.valueOf(key.substring(KEY_PREFIX.length()));
+            localCache.put(productId, entry);
+            result.put(productId, entry);
+        });
+        return result;
+    }
+
+    // product 为 null 时写入空值缓存；Redis TTL 取硬过期时间
+    public void put(Long productId, Product product, ProductCacheProperties.Policy policy) {
+        CacheEntry entry = newEntry(product, policy);
+        bucket(productId).set(entry, redisTtl(entry, System.currentTimeMillis()));
+        localCache.put(productId, entry);
+    }
+
+    // 批量写入，一次管道提交；值为 null 的写入空值缓存
+    public void putAll(Map<Long, Product> products, Function<Long, ProductCacheProperties.Policy> policies) {
+        if (products.isEmpty()) {
+            return;
+        }
+        RBatch batch = redissonClient.createBatch();
+        long now = System.currentTimeMillis();
+        products.forEach((productId, product) -> {
+            CacheEntry entry = newEntry(product, policies.apply(productId));
+            batch.<CacheEntry>getBucket(KEY_PREFIX + productId)
+                    .setAsync(entry, redisTtl(entry, now));
+            localCache.put(productId, entry);
+        });
+        batch.execute();
+    }
+
+    // Redis TTL 取到硬过期时间的剩余时长，至少 1 毫秒：配置为 0 或时钟回拨时不会写入不过期的键或因非法 TTL 失败
+    private static Duration redisTtl(CacheEntry entry, long now) {
+        return Duration.ofMillis(Math.max(1, entry.getHardExpireAt() - now));
+    }
+
+    // 通知所有节点：该商品的缓存已重建
+    public void publishRebuilt(Long productId) {
+        rebuiltTopic.publish(productId);
+    }
+
+    /**
+     * 等待其他节点重建缓存，收到通知或超时后再读一次缓存。
+     * 先登记等待再检查缓存，避免错过在两者之间发出的通知。
+     */
+    public CacheEntry awaitRebuilt(Long productId, long timeoutMs) throws InterruptedException {
+        CompletableFuture<Void> waiter = rebuildWaiters.computeIfAbsent(productId, id -> new CompletableFuture<>());
+        CacheEntry entry = get(productId);
+        if (entry != null) {
+            return entry;
+        }
+        try {
+            waiter.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            rebuildWaiters.remove(productId, waiter);
+        }
+        return get(productId);
+    }
+
+    // 先删 L2 再清 L1，并通知其他节点清理 L1
+    public void evict(Long productId) {
+        try {
+            bucket(productId).delete();
+            redisEvictions.increment();
+            localCache.invalidate(productId);
+            invalidateTopic.publish(productId);
+            log.debug("已清除商品缓存: {}", productId);
+        } catch (Exception e) {
+            localCache.invalidate(productId);
+            log.warn("清除商品缓存失败: {}", e.getMessage());
+        }
+    }
+
+    // 立即清除，并在事务提交后再清除一次，防止提交前被其他请求用旧数据回填
+    public void evictAfterCommit(Long productId) {
+        evict(productId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(productId);
+                }
+            });
+        }
+    }
+
+    /**
+     * 批量用新值覆盖 L2，并通知所有节点清理 L1（之后从 L2 读到新值），不留下缓存为空的窗口；
+     * 值为 null 的写入空值缓存。失败时抛出，由调用方重试。
+     */
+    public void refreshAll(Map<Long, Product> products, Function<Long, ProductCacheProperties.Policy> policies) {
+        if (products.isEmpty()) {
+            return;
+        }
+        RBatch batch = redissonClient.createBatch();
+        long now = System.currentTimeMillis();
+        products.forEach((productId, product) -> {
+            CacheEntry entry = newEntry(product, policies.apply(productId));
+            batch.<CacheEntry>getBucket(KEY_PREFIX + productId)
+                    .setAsync(entry, redisTtl(entry, now));
+            batch.getTopic(INVALIDATE_TOPIC, LongCodec.INSTANCE).publishAsync(productId);
+        });
+        batch.execute();
+        products.keySet().forEach(localCache::invalidate);
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats local = localCache.stats();
+        Map<String, Object> l1 = new LinkedHashMap<>();
+        l1.put("size", localCache.estimatedSize());
+        l1.put("hits", local.hitCount());
+        l1.put("misses", local.missCount());
+        l1.put("evictions", local.evictionCount());
+        l1.put("remoteInvalidations", remoteInvalidations.sum());
+
+        Map<String, Object> l2 = new LinkedHashMap<>();
+        l2.put("hits", redisHits.sum());
+        l2.put("misses", redisMisses.sum());
+        l2.put("evictions", redisEvictions.sum());
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("local", l1);
+        stats.put("redis", l2);
+        return stats;
+    }
+
+    private static CacheEntry newEntry(Product product, ProductCacheProperties.Policy policy) {
+        long now = System.currentTimeMillis();
+        long jitter = policy.getJitter().toMillis() > 0
+                ? ThreadLocalRandom.current().nextLong(policy.getJitter().toMillis()) : 0;
+        return new CacheEntry(product,
+                now + policy.getSoftTtl().toMillis() + jitter,
+                now + policy.getHardTtl().toMillis() + jitter);
+    }
+
+    private RBucket<CacheEntry> bucket(Long productId) {
+        return redissonClient.getBucket(KEY_PREFIX + productId);
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.demo.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// GET /actuator/productcache 查看各级缓存命中、未命中和淘汰计数
+@Component
+@Endpoint(id = "productcache")
+@RequiredArgsConstructor
+public class ProductCacheEndpoint {
+
+    private final ProductCache productCache;
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        return productCache.stats();
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.demo.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 商品缓存过期策略，按缓存类别配置：hot（热点商品）、default（普通商品）、missing（空值缓存）。
+ * 未配置的类别使用 default。
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "product.cache")
+public class ProductCacheProperties {
+    public static final String HOT = "hot";
+    public static final String DEFAULT = "default";
+    public static final String MISSING = "missing";
+
+    private static final Policy FALLBACK = new Policy();
+
+    private Map<String, Policy> policies = new HashMap<>();
+
+    public Policy policy(String category) {
+        Policy policy = policies.get(category);
+        return policy != null ? policy : policies.getOrDefault(DEFAULT, FALLBACK);
+    }
+
+    @Data
+    public static class Policy {
+        // 逻辑过期时间：过期后返回旧值并后台刷新
+        private Duration softTtl = Duration.ofMinutes(5);
+        // 硬过期时间（Redis TTL）：过期后请求需等待重建
+        private Duration hardTtl = Duration.ofMinutes(10);
+        // 在两个过期时间上叠加 [0, jitter) 的随机值，避免同时过期
+        private Duration jitter = Duration.ofSeconds(30);
+    }
+}
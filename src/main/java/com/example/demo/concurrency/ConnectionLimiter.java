@@ -0,0 +1,76 @@
+package com.example.demo.concurrency;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 数据库并发闸门：每个物理连接池各一个 {@link ConnectionLimitingDataSource}，许可数默认等于该连接池的最大连接数。
+ * <p>
+ * 分片、读写分离的路由数据源和延迟取连接的代理不加闸门：它们背后有多个连接池，
+ * 如果在外层套一个按单个连接池大小设置的信号量，所有分片和从库的总并发都会被压到这个数。
+ * 这些连接池在创建时各自通过 {@link #wrap} 加闸门。
+ */
+@Slf4j
+public class ConnectionLimiter {
+
+    private final boolean enabled;
+    // 未配置时跟随各连接池的最大连接数
+    private final Integer maxConcurrency;
+    private final long acquireTimeoutMs;
+    private final int defaultPoolSize;
+    private final Map<String, ConnectionLimitingDataSource> gates = new ConcurrentHashMap<>();
+
+    public ConnectionLimiter(boolean enabled, Integer maxConcurrency, long acquireTimeoutMs, int defaultPoolSize) {
+        this.enabled = enabled;
+        this.maxConcurrency = maxConcurrency;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.defaultPoolSize = defaultPoolSize;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 给容器中的数据源加闸门（由 BeanPostProcessor 调用）。路由数据源、代理和已加闸门的数据源原样返回。
+     */
+    public DataSource limit(String name, DataSource dataSource) {
+        if (!enabled || dataSource instanceof AbstractRoutingDataSource || dataSource instanceof DelegatingDataSource) {
+            return dataSource;
+        }
+        int poolSize = dataSource instanceof HikariDataSource hikari ? hikari.getMaximumPoolSize() : defaultPoolSize;
+        return wrap(name, dataSource, poolSize);
+    }
+
+    // 给一个物理连接池加闸门，poolSize 为该连接池的最大连接数；未开启时原样返回
+    public DataSource wrap(String name, DataSource pool, int poolSize) {
+        if (!enabled) {
+            return pool;
+        }
+        int permits = maxConcurrency != null ? maxConcurrency : poolSize;
+        ConnectionLimitingDataSource gate = new ConnectionLimitingDataSource(pool, permits, acquireTimeoutMs);
+        gates.put(name, gate);
+        log.info("连接池 {} 启用并发闸门，最大并发: {}, 等待超时: {}ms", name, permits, acquireTimeoutMs);
+        return gate;
+    }
+
+    // 每个闸门一条：许可数、剩余许可、排队线程数
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        gates.forEach((name, gate) -> {
+            Map<String, Object> gateStats = new LinkedHashMap<>();
+            gateStats.put("maxConcurrency", gate.getMaxConcurrency());
+            gateStats.put("availablePermits", gate.getAvailablePermits());
+            gateStats.put("waiting", gate.getQueueLength());
+            stats.put(name, gateStats);
+        });
+        return stats;
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.demo.concurrency;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 虚拟线程钉住（pinning）诊断：通过 JFR 事件流监听 jdk.VirtualThreadPinned。
+ * <p>
+ * 虚拟线程在 synchronized 块内阻塞（例如 MySQL 驱动、部分 Redisson 路径）时会钉住载体线程，
+ * 并发量大时载体线程被占满，效果等同于没有使用虚拟线程。这里按调用栈位置统计钉住次数和耗时，
+ * 并打印首次出现的调用栈，便于定位。
+ */
+@Component
+@Slf4j
+public class PinnedThreadMonitor {
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int STACK_DEPTH = 12;
+
+    private final boolean enabled;
+    private final Duration threshold;
+    private final Map<String, Site> sites = new ConcurrentHashMap<>();
+
+    private RecordingStream stream;
+
+    public PinnedThreadMonitor(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                               @Value("${virtual-threads.pinning.enabled:true}") boolean pinningEnabled,
+                               @Value("${virtual-threads.pinning.threshold:20ms}") Duration threshold) {
+        this.enabled = virtualThreads && pinningEnabled;
+        this.threshold = threshold;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            stream = new RecordingStream();
+            stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+            stream.onEvent(PINNED_EVENT, this::onPinned);
+            stream.startAsync();
+            log.info("虚拟线程钉住监控已启动，阈值: {}", threshold);
+        } catch (Exception e) {
+            log.warn("虚拟线程钉住监控启动失败: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // 按累计钉住时长倒序
+    public List<Map<String, Object>> snapshot() {
+        return sites.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, Site> e) -> e.getValue().nanos.sum()).reversed())
+                .map(e -> {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    row.put("site", e.getKey());
+                    row.put("count", e.getValue().count.sum());
+                    row.put("totalMs", e.getValue().nanos.sum() / 1_000_000);
+                    return row;
+                })
+                .toList();
+    }
+
+    private void onPinned(RecordedEvent event) {
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        String site = site(stackTrace);
+        Site stats = sites.computeIfAbsent(site, key -> {
+            log.warn("虚拟线程被钉住 {}ms，位置: {}\n{}", event.getDuration().toMillis(), key, format(stackTrace));
+            return new Site();
+        });
+        stats.count.increment();
+        stats.nanos.add(event.getDuration().toNanos());
+    }
+
+    // 取第一个非 JDK 的栈帧作为钉住位置（通常是持有监视器锁的驱动或客户端代码）
+    private static String site(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "unknown";
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            String type = frame.getMethod().getType().getName();
+            if (!type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun.")) {
+                return type + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+            }
+        }
+        return "jdk";
+    }
+
+    private static String format(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        for (int i = 0; i < Math.min(STACK_DEPTH, frames.size()); i++) {
+            RecordedFrame frame = frames.get(i);
+            sb.append("\tat ").append(frame.getMethod().getType().getName()).append('.')
+                    .append(frame.getMethod().getName()).append(':').append(frame.getLineNumber()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static final class Site {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.demo.concurrency;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分条带的无锁令牌预算：总量均分到若干条带，线程按线程ID落到一个条带上做 CAS 扣减，
+ * 自己的条带不够时依次尝试其他条带，最后跨条带凑齐。并发扣减分散在不同缓存行上，不会都挤在一个计数器上。
+ * <p>
+ * 扣减不会让任何条带变为负数，成功获取的令牌总数不超过 reset 设置的总量（reset 之间）。
+ */
+public final class StripedBudget {
+    // 每个条带占 128 字节（16 个 long），相邻条带不共享缓存行，也避开相邻行预取
+    private static final int PAD = 16;
+
+    private final int mask;
+    private final AtomicLongArray cells;
+
+    public StripedBudget(int stripes) {
+        // 向上取整到 2 的幂
+        int size = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.mask = size - 1;
+        this.cells = new AtomicLongArray(size * PAD);
+    }
+
+    public int stripes() {
+        return mask + 1;
+    }
+
+    // 重新设定总量，余数分给前几个条带；与并发的扣减交错时结果是近似的，由下一次 reset 纠正
+    public void reset(long total) {
+        int stripes = stripes();
+        long base = Math.max(0, total) / stripes;
+        long remainder = Math.max(0, total) % stripes;
+        for (int i = 0; i < stripes; i++) {
+            cells.set(i * PAD, base + (i < remainder ? 1 : 0));
+        }
+    }
+
+    public boolean tryAcquire(int permits) {
+        int start = probe();
+        for (int k = 0; k <= mask; k++) {
+            int index = ((start + k) & mask) * PAD;
+            long available;
+            while ((available = cells.get(index)) >= permits) {
+                if (cells.compareAndSet(index, available, available - permits)) {
+                    return true;
+                }
+            }
+        }
+        return acquireAcrossStripes(start, permits);
+    }
+
+    public void release(int permits) {
+        cells.getAndAdd((probe() & mask) * PAD, permits);
+    }
+
+    public long available() {
+        long sum = 0;
+        for (int i = 0; i <= mask; i++) {
+            sum += cells.get(i * PAD);
+        }
+        return sum;
+    }
+
+    // 每个条带都不够但总量可能够：逐个条带拿走能拿的部分，凑不齐就全部还回去
+    private boolean acquireAcrossStripes(int start, int permits) {
+        long taken = 0;
+        for (int k = 0; k <= mask && taken < permits; k++) {
+            int index = ((start + k) & mask) * PAD;
+            long available;
+            while ((available = cells.get(index)) > 0) {
+                long take = Math.min(available, permits - taken);
+                if (cells.compareAndSet(index, available, available - take)) {
+                    taken += take;
+                    break;
+                }
+            }
+        }
+        if (taken == permits) {
+            return true;
+        }
+        if (taken > 0) {
+            cells.getAndAdd((start & mask) * PAD, taken);
+        }
+        return false;
+    }
+
+    private static int probe() {
+        long id = Thread.currentThread().threadId();
+        // 混合高低位，连续的线程ID落到不同条带
+        return (int) (id ^ (id >>> 16)) * 0x9E3779B9;
+    }
+}
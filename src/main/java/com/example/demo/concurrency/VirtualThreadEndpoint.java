@@ -0,0 +1,40 @@
+package com.example.demo.concurrency;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// GET /actuator/virtualthreads 查看虚拟线程模式、数据库并发闸门和钉住统计
+@Component
+@Endpoint(id = "virtualthreads")
+public class VirtualThreadEndpoint {
+
+    private final boolean virtualThreads;
+    private final PinnedThreadMonitor pinnedThreadMonitor;
+    private final ConnectionLimiter connectionLimiter;
+
+    public VirtualThreadEndpoint(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                                 PinnedThreadMonitor pinnedThreadMonitor,
+                                 ConnectionLimiter connectionLimiter) {
+        this.virtualThreads = virtualThreads;
+        this.pinnedThreadMonitor = pinnedThreadMonitor;
+        this.connectionLimiter = connectionLimiter;
+    }
+
+    @ReadOperation
+    public Map<String, Object> info() {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("virtualThreads", virtualThreads);
+        if (connectionLimiter.isEnabled()) {
+            // 每个连接池一个闸门
+            info.put("connectionLimiter", connectionLimiter.stats());
+        }
+        info.put("pinningMonitor", pinnedThreadMonitor.isEnabled());
+        info.put("pinnedSites", pinnedThreadMonitor.snapshot());
+        return info;
+    }
+}
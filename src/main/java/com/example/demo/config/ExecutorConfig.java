@@ -0,0 +1,113 @@
+package com.example.demo.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * 后台线程池。spring.threads.virtual.enabled=true 时改为每个任务一个虚拟线程
+ * （Tomcat 请求线程和定时任务由 Spring Boot 按同一开关切换），数据库并发由连接闸门限制。
+ */
+@Configuration
+public class ExecutorConfig {
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    // 商品缓存后台刷新线程池，队列满时直接放弃本次刷新（继续返回旧值）
+    @Bean
+    public AsyncTaskExecutor cacheRefreshExecutor(
+            @Value("${product.cache.refresh.core-pool-size:2}") int corePoolSize,
+            @Value("${product.cache.refresh.max-pool-size:4}") int maxPoolSize,
+            @Value("${product.cache.refresh.queue-capacity:1000}") int queueCapacity) {
+        if (virtualThreads) {
+            // 同一商品同时只有一个刷新任务，任务数本身有上限
+            return virtualThreadExecutor("cache-refresh-");
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("cache-refresh-");
+        executor.initialize();
+        return executor;
+    }
+
+    // 异步下单消费线程，每个线程一个 Redis Stream 消费者
+    @Bean
+    public AsyncTaskExecutor orderConsumerExecutor(@Value("${order.async.consumers:2}") int consumers) {
+        if (virtualThreads) {
+            return virtualThreadExecutor("order-consumer-");
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(consumers);
+        executor.setMaxPoolSize(consumers);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("order-consumer-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+        return executor;
+    }
+
+    // 订单超时消费线程，单线程批量取消
+    @Bean
+    public AsyncTaskExecutor orderTimeoutExecutor() {
+        if (virtualThreads) {
+            return virtualThreadExecutor("order-timeout-");
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("order-timeout-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+        return executor;
+    }
+
+    // 跨分片查询线程池，每个分片一个任务
+    @Bean
+    public AsyncTaskExecutor shardQueryExecutor(@Value("${sharding.query-concurrency:8}") int concurrency) {
+        if (virtualThreads) {
+            return virtualThreadExecutor("shard-query-");
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("shard-query-");
+        executor.initialize();
+        return executor;
+    }
+
+    // 流式导出线程池，每个导出占用一个数据库连接，并发数要小，超出时在队列中等待
+    @Bean
+    public AsyncTaskExecutor streamingExecutor(
+            @Value("${order.history.export-concurrency:1}") int concurrency,
+            @Value("${order.history.export-queue-capacity:50}") int queueCapacity) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = virtualThreadExecutor("streaming-");
+            executor.setConcurrencyLimit(concurrency);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("streaming-");
+        executor.initialize();
+        return executor;
+    }
+
+    private static SimpleAsyncTaskExecutor virtualThreadExecutor(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        executor.setTaskTerminationTimeout(10_000);
+        return executor;
+    }
+}
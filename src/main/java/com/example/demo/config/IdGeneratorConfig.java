@@ -0,0 +1,22 @@
+package com.example.demo.config;
+
+import com.example.demo.id.IdGenerator;
+import com.example.demo.id.RedisWorkerIdLease;
+import com.example.demo.id.SnowflakeIdGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class IdGeneratorConfig {
+
+    // 节点号从 Redis 租用，租约变化时同步给生成器
+    @Bean
+    public IdGenerator idGenerator(RedisWorkerIdLease workerIdLease,
+                                   @Value("${id.max-backward-ms:1000}") long maxBackwardMs) {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(
+                workerIdLease.getWorkerId(), maxBackwardMs, System::currentTimeMillis);
+        workerIdLease.onChange(generator::setWorkerId);
+        return generator;
+    }
+}
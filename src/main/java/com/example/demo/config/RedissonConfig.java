@@ -21,6 +21,10 @@ public class RedissonConfig {
     @Value("${spring.data.redis.database:0}")
     private int database;
 
+    // 每个订阅连接上的频道数（Redisson 默认 5）
+    @Value("${redisson.subscriptions-per-connection:5}")
+    private int subscriptionsPerConnection;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -40,7 +44,8 @@ public class RedissonConfig {
                 .setConnectTimeout(3000)
                 .setTimeout(3000)
                 .setRetryAttempts(3)
-                .setRetryInterval(1500);
+                .setRetryInterval(1500)
+                .setSubscriptionsPerConnection(subscriptionsPerConnection);
 
         return Redisson.create(config);
     }
@@ -0,0 +1,47 @@
+package com.example.demo.config;
+
+import com.example.demo.concurrency.ConnectionLimiter;
+import com.example.demo.replica.LazyRoutingDataSource;
+import com.example.demo.replica.ReplicaLagMonitor;
+import com.example.demo.replica.ReplicaProperties;
+import com.example.demo.replica.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+@Configuration
+@Slf4j
+public class ReplicaConfig {
+
+    // 未分片时的读写分离：主库沿用 spring.datasource（含 hikari 配置），从库来自 datasource.replica.replicas；
+    // 分片时由 ShardingConfig 按分片配置从库
+    @Bean
+    @Primary
+    @ConditionalOnExpression("${datasource.replica.enabled:false} and !${sharding.enabled:false}")
+    public DataSource dataSource(DataSourceProperties dataSourceProperties, Environment environment,
+                                 ReplicaProperties properties, ReplicaLagMonitor replicaLagMonitor,
+                                 ConnectionLimiter connectionLimiter, MeterRegistry meterRegistry) {
+        if (properties.getReplicas().isEmpty()) {
+            throw new IllegalStateException("datasource.replica.enabled=true 时必须配置 datasource.replica.replicas");
+        }
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setPoolName("primary");
+        // 包在路由数据源里，Spring Boot 拆不出这个连接池，手动绑定指标
+        primary.setMetricRegistry(meterRegistry);
+        log.info("启用读写分离，从库数: {}", properties.getReplicas().size());
+        return new LazyRoutingDataSource(ReplicaRoutingDataSource.create("primary",
+                connectionLimiter.wrap("primary", primary, primary.getMaximumPoolSize()), properties.getReplicas(),
+                replicaLagMonitor, properties.getStickyWindow(), connectionLimiter, meterRegistry));
+    }
+}
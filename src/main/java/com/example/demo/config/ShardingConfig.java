@@ -0,0 +1,69 @@
+package com.example.demo.config;
+
+import com.example.demo.concurrency.ConnectionLimiter;
+import com.example.demo.replica.LazyRoutingDataSource;
+import com.example.demo.replica.ReplicaLagMonitor;
+import com.example.demo.replica.ReplicaProperties;
+import com.example.demo.replica.ReplicaRoutingDataSource;
+import com.example.demo.shard.ShardRouter;
+import com.example.demo.shard.ShardRoutingDataSource;
+import com.example.demo.shard.ShardScatterGather;
+import com.example.demo.shard.ShardingProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+@Configuration
+@Slf4j
+public class ShardingConfig {
+
+    @Bean
+    public ShardRouter shardRouter(ShardingProperties properties) {
+        return new ShardRouter(properties.shardCount(), properties.getLegacyMaxOrderId());
+    }
+
+    @Bean
+    public ShardScatterGather shardScatterGather(ShardRouter shardRouter,
+                                                 @Qualifier("shardQueryExecutor") Executor shardQueryExecutor) {
+        return new ShardScatterGather(shardRouter, shardQueryExecutor);
+    }
+
+    // 开启分片后替换 Spring Boot 默认的数据源，每个分片一个连接池；开启读写分离时每个分片再按配置挂从库
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "sharding.enabled", havingValue = "true")
+    public DataSource dataSource(ShardingProperties properties, ShardRouter shardRouter,
+                                 ReplicaProperties replicaProperties, ReplicaLagMonitor replicaLagMonitor,
+                                 ConnectionLimiter connectionLimiter, MeterRegistry meterRegistry) {
+        if (properties.getShards().isEmpty()) {
+            throw new IllegalStateException("sharding.enabled=true 时必须配置 sharding.shards");
+        }
+        List<DataSource> shards = new ArrayList<>(properties.getShards().size());
+        for (ShardingProperties.Shard shard : properties.getShards()) {
+            String name = "shard-" + shards.size();
+            // 会话级的自增步长和起始值，订单主键可以算出分片（同一连接上其他表的自增主键也按此步长，不影响使用）
+            HikariDataSource pool = shard.create(name, meterRegistry, shardRouter.idSequenceInitSql(shards.size()));
+            // 每个连接池各自一个闸门，不在路由数据源外层共用一个
+            DataSource primary = connectionLimiter.wrap(name, pool, shard.getMaximumPoolSize());
+            if (replicaProperties.isEnabled() && !shard.getReplicas().isEmpty()) {
+                shards.add(ReplicaRoutingDataSource.create(name, primary, shard.getReplicas(),
+                        replicaLagMonitor, replicaProperties.getStickyWindow(), connectionLimiter, meterRegistry));
+            } else {
+                shards.add(primary);
+            }
+        }
+        log.info("启用分片数据源，分片数: {}, 读写分离: {}", shards.size(), replicaProperties.isEnabled());
+        ShardRoutingDataSource dataSource = new ShardRoutingDataSource(shards);
+        return replicaProperties.isEnabled() ? new LazyRoutingDataSource(dataSource) : dataSource;
+    }
+}
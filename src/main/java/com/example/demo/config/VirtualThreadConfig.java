@@ -0,0 +1,38 @@
+package com.example.demo.config;
+
+import com.example.demo.concurrency.ConnectionLimiter;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class VirtualThreadConfig {
+
+    /**
+     * 连接池前的并发闸门，默认在虚拟线程模式下开启。
+     * 许可数默认等于各连接池的大小，线程在闸门排队（最长 acquire-timeout-ms），不再撞上连接池的 connection-timeout。
+     */
+    @Bean
+    public static ConnectionLimiter connectionLimiter(Environment environment) {
+        boolean virtualThreads = environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false);
+        boolean enabled = environment.getProperty("datasource.limiter.enabled", Boolean.class, virtualThreads);
+        int poolSize = environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10);
+        Integer maxConcurrency = environment.getProperty("datasource.limiter.max-concurrency", Integer.class);
+        long acquireTimeoutMs = environment.getProperty("datasource.limiter.acquire-timeout-ms", Long.class, 3000L);
+        return new ConnectionLimiter(enabled, maxConcurrency, acquireTimeoutMs, poolSize);
+    }
+
+    // 给 Spring Boot 默认的连接池加闸门；分片、读写分离的路由数据源跳过，其下的连接池在创建时各自加闸门
+    @Bean
+    public static BeanPostProcessor connectionLimiterPostProcessor(ConnectionLimiter connectionLimiter) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource dataSource ? connectionLimiter.limit(beanName, dataSource) : bean;
+            }
+        };
+    }
+}
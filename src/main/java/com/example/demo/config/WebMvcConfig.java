@@ -0,0 +1,21 @@
+package com.example.demo.config;
+
+import com.example.demo.replica.ReadYourWritesInterceptor;
+import com.example.demo.replica.ReplicaProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@RequiredArgsConstructor
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    private final ReplicaProperties replicaProperties;
+
+    // 读写分离的读己之写：请求携带的主库粘滞 Cookie 在本次请求内生效，最长不超过 sticky-window
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ReadYourWritesInterceptor(replicaProperties.getStickyWindow()));
+    }
+}
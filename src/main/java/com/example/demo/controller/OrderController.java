@@ -1,13 +1,30 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.AsyncOrderStatus;
+import com.example.demo.dto.OrderFetch;
 import com.example.demo.dto.PurchaseRequest;
 import com.example.demo.entity.Order;
+import com.example.demo.exception.DuplicateRequestException;
+import com.example.demo.service.AsyncOrderService;
 import com.example.demo.service.OrderService;
+import com.example.demo.service.PurchaseIdempotencyService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -15,32 +32,126 @@ import java.util.Optional;
 public class OrderController {
 
     private final OrderService orderService;
+    private final AsyncOrderService asyncOrderService;
+    private final PurchaseIdempotencyService purchaseIdempotencyService;
+    private final ObjectMapper objectMapper;
+    private final StreamingExports streamingExports;
+    // 导出时不逐条 flush，由生成器缓冲区写满后再写出
+    private final ObjectWriter exportWriter;
 
-    public OrderController(OrderService orderService) {
+    public OrderController(OrderService orderService, AsyncOrderService asyncOrderService,
+                           PurchaseIdempotencyService purchaseIdempotencyService, ObjectMapper objectMapper,
+                           StreamingExports streamingExports) {
         this.orderService = orderService;
+        this.asyncOrderService = asyncOrderService;
+        this.purchaseIdempotencyService = purchaseIdempotencyService;
+        this.objectMapper = objectMapper;
+        this.streamingExports = streamingExports;
+        this.exportWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
     }
 
+    // 带 Idempotency-Key 时，同一个键重复提交返回原订单，不会重复下单
     @PostMapping("/purchase")
-    public ResponseEntity<?> purchase(@Validated @RequestBody PurchaseRequest purchaseRequest) {
+    public ResponseEntity<?> purchase(@Validated @RequestBody PurchaseRequest purchaseRequest,
+                                      @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         try {
-            Order order = orderService.createOrder(purchaseRequest);
+            Order order = idempotencyKey == null
+                    ? orderService.createOrder(purchaseRequest)
+                    : purchaseIdempotencyService.purchase(idempotencyKey, purchaseRequest);
             return ResponseEntity.ok(order);
+        } catch (DuplicateRequestException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
 
-    @GetMapping("/{orderId}")
-    public ResponseEntity<?> getOrder(@PathVariable Long orderId) {
-        Optional<Order> order = orderService.getOrderById(orderId);
-        return order.map(ResponseEntity::ok)
+    // 预扣库存后立即返回 202，订单由后台消费者落库，通过 Location 查询结果
+    @PostMapping("/purchase/async")
+    public ResponseEntity<?> purchaseAsync(@Validated @RequestBody PurchaseRequest purchaseRequest) {
+        try {
+            AsyncOrderStatus status = asyncOrderService.submit(purchaseRequest);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/orders/purchase/status/" + status.getToken()))
+                    .body(status);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/purchase/status/{token}")
+    public ResponseEntity<?> getPurchaseStatus(@PathVariable String token) {
+        return asyncOrderService.getStatus(token)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    // expand：none/items/products，默认带订单项和商品信息
+    @GetMapping("/{orderId}")
+    public ResponseEntity<?> getOrder(@PathVariable Long orderId,
+                                      @RequestParam(required = false) String expand) {
+        try {
+            Optional<Order> order = orderService.getOrderById(orderId, OrderFetch.parse(expand, OrderFetch.PRODUCTS));
+            return order.<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // 键集分页：首页不传 cursor，之后传上一页返回的 nextCursor；expand 默认 none，按需加载订单项
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<Order>> getUserOrders(@PathVariable Long userId) {
-        List<Order> orders = orderService.getOrdersByUserId(userId);
-        return ResponseEntity.ok(orders);
+    public ResponseEntity<?> getUserOrders(@PathVariable Long userId,
+                                           @RequestParam(required = false) String cursor,
+                                           @RequestParam(defaultValue = "20") int size,
+                                           @RequestParam(required = false) String expand) {
+        try {
+            return ResponseEntity.ok(orderService.getOrdersByUserId(userId, cursor, size,
+                    OrderFetch.parse(expand, OrderFetch.NONE)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // 流式导出用户全部订单（JSON 数组），边读边写，内存占用与订单数量无关；在导出线程池中执行
+    @GetMapping("/user/{userId}/export")
+    public ResponseEntity<?> exportUserOrders(@PathVariable Long userId) {
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.writeStartArray();
+                orderService.exportOrdersByUserId(userId, order -> {
+                    try {
+                        exportWriter.writeValue(generator, order);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+        try {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header("Content-Disposition", "attachment; filename=orders-" + userId + ".json")
+                    .body(streamingExports.start(body));
+        } catch (TaskRejectedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("导出任务过多，请稍后重试");
+        }
+    }
+
+    // 运营查询：跨分片合并最近的订单，按创建时间倒序
+    @GetMapping("/admin/recent")
+    public ResponseEntity<?> getRecentOrders(@RequestParam(defaultValue = "PENDING") String status,
+                                             @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(orderService.getRecentOrdersByStatus(status, limit));
+    }
+
+    @PostMapping("/{orderId}/pay")
+    public ResponseEntity<?> payOrder(@PathVariable Long orderId) {
+        boolean success = orderService.payOrder(orderId);
+        return success ? ResponseEntity.ok("订单支付成功") :
+                ResponseEntity.badRequest().body("订单支付失败");
     }
 
     @PostMapping("/{orderId}/cancel")
@@ -49,4 +160,14 @@ public class OrderController {
         return success ? ResponseEntity.ok("订单取消成功") :
                 ResponseEntity.badRequest().body("订单取消失败");
     }
+
+    // 批量取消，返回实际取消的订单数（已支付或已取消的订单被跳过）
+    @PostMapping("/cancel")
+    public ResponseEntity<?> cancelOrders(@RequestBody List<Long> orderIds) {
+        try {
+            return ResponseEntity.ok(Map.of("cancelled", orderService.cancelOrders(orderIds)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
 }
@@ -1,19 +1,33 @@
 package com.example.demo.controller;
 
 import com.example.demo.entity.Product;
+import com.example.demo.service.ProductCatalogExporter;
 import com.example.demo.service.ProductService;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/products")
 public class ProductController {
 
     private final ProductService productService;
+    private final ProductCatalogExporter catalogExporter;
+    private final StreamingExports streamingExports;
 
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService, ProductCatalogExporter catalogExporter,
+                             StreamingExports streamingExports) {
         this.productService = productService;
+        this.catalogExporter = catalogExporter;
+        this.streamingExports = streamingExports;
     }
 
     @GetMapping
@@ -44,6 +58,87 @@ public class ProductController {
         }
     }
 
+    // 键集分页，供界面列表使用：首页不传 afterId，之后传上一页返回的 nextAfterId
+    @GetMapping("/page")
+    public ResponseEntity<?> getProductPage(@RequestParam(required = false) Long afterId,
+                                            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(productService.getProductPage(afterId, size));
+    }
+
+    // 流式导出全部商品：format=ndjson|csv，请求头带 Accept-Encoding: gzip 时压缩输出；在导出线程池中执行
+    @GetMapping("/export")
+    public ResponseEntity<?> exportCatalog(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        ProductCatalogExporter.Format exportFormat;
+        try {
+            exportFormat = ProductCatalogExporter.Format.parse(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                    .body(e.getMessage());
+        }
+        boolean gzip = acceptsGzip(acceptEncoding);
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                // syncFlush：每次 flush 都把已压缩的数据推给客户端
+                GZIPOutputStream gzipOut = new GZIPOutputStream(out, 8192, true);
+                catalogExporter.export(gzipOut, exportFormat);
+                gzipOut.finish();
+            } else {
+                catalogExporter.export(out, exportFormat);
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=products." + exportFormat.getExtension())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        try {
+            return response.body(streamingExports.start(body));
+        } catch (TaskRejectedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("导出任务过多，请稍后重试");
+        }
+    }
+
+    /**
+     * 按 Accept-Encoding 的 q 值判断客户端是否接受 gzip：gzip（或 x-gzip）的 q 值优先，未列出时看 *；
+     * q=0 表示不接受，q 值格式错误的条目忽略。
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double wildcard = null;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.length() > 2 && param.substring(0, 2).equalsIgnoreCase("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = Double.NaN;
+                    }
+                }
+            }
+            if (Double.isNaN(q)) {
+                continue;
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = gzip == null ? q : Math.max(gzip, q);
+            } else if (coding.equals("*")) {
+                wildcard = q;
+            }
+        }
+        Double q = gzip != null ? gzip : wildcard;
+        return q != null && q > 0;
+    }
 
     @GetMapping("/{id}")
     public ResponseEntity<?> getProduct(@PathVariable Long id) {
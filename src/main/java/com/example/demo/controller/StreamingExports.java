@@ -0,0 +1,103 @@
+package com.example.demo.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * 流式导出在导出专用线程池（streamingExecutor）中执行，通过 ResponseBodyEmitter 分块写出响应。
+ * <p>
+ * 直接返回 StreamingResponseBody 会使用 MVC 全局的异步线程池，为了限制导出并发把它设成导出线程池，
+ * 会让其他异步请求也挤在这几个线程上。这里只有导出任务提交到导出线程池，全局异步配置保持默认。
+ */
+@Component
+@Slf4j
+public class StreamingExports {
+    private static final int CHUNK_SIZE = 8192;
+
+    private final AsyncTaskExecutor streamingExecutor;
+    private final long timeoutMs;
+
+    public StreamingExports(@Qualifier("streamingExecutor") AsyncTaskExecutor streamingExecutor,
+                            @Value("${order.history.export-timeout-ms:300000}") long timeoutMs) {
+        this.streamingExecutor = streamingExecutor;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * 提交导出任务，返回写出响应体的 emitter
+     *
+     * @throws TaskRejectedException 导出线程池已满
+     */
+    public ResponseBodyEmitter start(StreamingResponseBody body) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(timeoutMs);
+        streamingExecutor.execute(() -> {
+            try (OutputStream out = new EmitterOutputStream(emitter)) {
+                body.writeTo(out);
+            } catch (Exception e) {
+                // 客户端断开或超时后写出失败，游标和事务随导出任务一起结束
+                log.warn("流式导出中断: {}", e.getMessage());
+                emitter.completeWithError(e);
+                return;
+            }
+            emitter.complete();
+        });
+        return emitter;
+    }
+
+    // 攒满一块或 flush 时作为一段字节写出；emitter 在响应就绪前收到的数据会先缓存
+    private static class EmitterOutputStream extends OutputStream {
+        private final ResponseBodyEmitter emitter;
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private int count;
+
+        EmitterOutputStream(ResponseBodyEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                flush();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (count == buffer.length) {
+                    flush();
+                }
+                int n = Math.min(length, buffer.length - count);
+                System.arraycopy(bytes, offset, buffer, count, n);
+                count += n;
+                offset += n;
+                length -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (count > 0) {
+                emitter.send(Arrays.copyOf(buffer, count), MediaType.APPLICATION_OCTET_STREAM);
+                count = 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
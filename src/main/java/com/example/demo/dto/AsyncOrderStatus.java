@@ -0,0 +1,20 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// 异步下单状态：ACCEPTED（已受理，排队落库）、CREATED（已落库）、FAILED（失败，库存已归还）
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AsyncOrderStatus {
+    public static final String ACCEPTED = "ACCEPTED";
+    public static final String CREATED = "CREATED";
+    public static final String FAILED = "FAILED";
+
+    private String token;
+    private String status;
+    private Long orderId;
+    private String message;
+}
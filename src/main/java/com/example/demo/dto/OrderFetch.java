@@ -0,0 +1,22 @@
+package com.example.demo.dto;
+
+import java.util.Locale;
+
+// 订单关联数据的加载范围：NONE 只有订单本身，ITEMS 加载订单项，PRODUCTS 再补充订单项的商品名称和描述
+public enum OrderFetch {
+    NONE,
+    ITEMS,
+    PRODUCTS;
+
+    // 忽略大小写，空值返回 defaultValue
+    public static OrderFetch parse(String value, OrderFetch defaultValue) {
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("expand 只支持 none/items/products: " + value);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.demo.dto;
+
+import com.example.demo.entity.Order;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// 订单分页结果，nextCursor 为 null 表示没有更多数据
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderPage {
+    private List<Order> items;
+    private String nextCursor;
+}
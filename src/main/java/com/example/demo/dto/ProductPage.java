@@ -0,0 +1,17 @@
+package com.example.demo.dto;
+
+import com.example.demo.entity.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// 商品分页结果，nextAfterId 为 null 表示没有更多数据
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductPage {
+    private List<Product> items;
+    private Long nextAfterId;
+}
@@ -4,7 +4,9 @@ import lombok.Data;
 
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Data
 public class PurchaseRequest {
@@ -15,6 +17,15 @@ public class PurchaseRequest {
     @NotNull(message = "商品列表不能为空")
     private List<PurchaseItem> items;
 
+    // 按商品合并数量：商品ID -> 总数量
+    public Map<Long, Integer> quantitiesByProduct() {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (PurchaseItem item : items) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+
     // 静态内部类
     public static class PurchaseItem {
         @NotNull(message = "商品ID不能为空")
@@ -0,0 +1,20 @@
+package com.example.demo.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// 尚未同步到缓存的商品变更，changeType 见 ProductOutbox 中的常量
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ProductOutboxEntry {
+    private Long id;
+    private Long productId;
+    private String changeType;
+    private LocalDateTime createdTime;
+}
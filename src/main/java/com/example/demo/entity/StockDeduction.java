@@ -0,0 +1,23 @@
+package com.example.demo.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// 跨分片下单时在商品分片上已提交、但订单尚未确认落库的库存扣减
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class StockDeduction {
+    private Long id;
+    // 一次扣减（一次下单尝试）的标识，同一订单号重试时各自独立
+    private String deductionId;
+    private String orderNumber;
+    private Long productId;
+    private Integer quantity;
+    private LocalDateTime createdTime;
+}
@@ -0,0 +1,20 @@
+package com.example.demo.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// 尚未合并到 products.stock 的库存变化量，正数为加库存，负数为扣库存
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class StockJournalEntry {
+    private Long id;
+    private Long productId;
+    private Integer delta;
+    private LocalDateTime createdTime;
+}
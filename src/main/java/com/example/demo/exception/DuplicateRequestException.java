@@ -0,0 +1,9 @@
+package com.example.demo.exception;
+
+
+// 幂等键冲突：同一个键的请求正在处理中，或已被请求体不同的请求使用
+public class DuplicateRequestException extends RuntimeException {
+    public DuplicateRequestException(String message) {
+        super(message);
+    }
+}
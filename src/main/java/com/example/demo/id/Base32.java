@@ -0,0 +1,78 @@
+package com.example.demo.id;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Crockford Base32 编码（不含 I、L、O、U，避免人工抄写时混淆）。
+ * 64 位非负数固定编码为 13 个字符，高位补 0，因此文本字典序与数值大小一致。
+ */
+public final class Base32 {
+    public static final int LENGTH = 13;
+    private static final byte[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".getBytes(StandardCharsets.US_ASCII);
+
+    private Base32() {
+    }
+
+    public static String encode(long value) {
+        return encode(null, value);
+    }
+
+    // prefix 须为 ASCII，一次分配完成拼接
+    public static String encode(String prefix, long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("只支持非负数: " + value);
+        }
+        int offset = prefix == null ? 0 : prefix.length();
+        byte[] bytes = new byte[offset + LENGTH];
+        for (int i = 0; i < offset; i++) {
+            bytes[i] = (byte) prefix.charAt(i);
+        }
+        for (int i = bytes.length - 1; i >= offset; i--) {
+            bytes[i] = ALPHABET[(int) (value & 31)];
+            value >>>= 5;
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    // 定长编码较小的非负数（如分片号），length 位最多表示 32^length - 1
+    public static String encode(int value, int length) {
+        if (value < 0 || value >= 1L << (5 * length)) {
+            throw new IllegalArgumentException(length + " 位无法表示: " + value);
+        }
+        byte[] bytes = new byte[length];
+        for (int i = length - 1; i >= 0; i--) {
+            bytes[i] = ALPHABET[value & 31];
+            value >>>= 5;
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    public static long decode(CharSequence text) {
+        if (text.length() != LENGTH) {
+            throw new IllegalArgumentException("长度必须为 " + LENGTH + ": " + text);
+        }
+        return decode(text, 0, LENGTH);
+    }
+
+    // 解码 text 中 [start, end) 的字符
+    public static long decode(CharSequence text, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = digit(Character.toUpperCase(text.charAt(i)));
+            if (digit < 0) {
+                throw new IllegalArgumentException("非法字符: " + text);
+            }
+            value = (value << 5) | digit;
+        }
+        return value;
+    }
+
+    private static int digit(char c) {
+        for (int i = 0; i < ALPHABET.length; i++) {
+            if (ALPHABET[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
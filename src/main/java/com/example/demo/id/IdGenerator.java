@@ -0,0 +1,14 @@
+package com.example.demo.id;
+
+/**
+ * 全局唯一ID生成器。生成的ID按时间递增（同一节点内严格递增），可直接作为 B+ 树索引的顺序插入键。
+ */
+public interface IdGenerator {
+
+    long nextId();
+
+    // 定长的文本形式，字典序与数值大小一致
+    default String nextText() {
+        return Base32.encode(nextId());
+    }
+}
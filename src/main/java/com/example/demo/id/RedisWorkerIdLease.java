@@ -0,0 +1,90 @@
+package com.example.demo.id;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongConsumer;
+
+/**
+ * 从 Redis 租用 Snowflake 节点号：id:worker:{n} 用 SET NX PX 占用，定期续期。
+ * <p>
+ * 停机时不主动释放，等租约自然过期后才能被其他节点使用，
+ * 这样快速重启（或重启后时钟略有回拨）的节点不会拿到同一个节点号而生成重复ID。
+ * 续期发现租约已丢失（例如 Redis 长时间不可用导致过期）时重新租用一个节点号。
+ */
+@Component
+@Slf4j
+public class RedisWorkerIdLease {
+    private static final String KEY_PREFIX = "id:worker:";
+    private static final int WORKER_COUNT = (int) SnowflakeIdGenerator.MAX_WORKER_ID + 1;
+    // 持有者一致时续期
+    private static final String RENEW_SCRIPT =
+            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+            "  return redis.call('pexpire', KEYS[1], ARGV[2]) " +
+            "end " +
+            "return 0";
+
+    private final RedissonClient redissonClient;
+    private final Duration ttl;
+    private final String owner = ManagementFactory.getRuntimeMXBean().getName() + ":" + UUID.randomUUID();
+    private final List<LongConsumer> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile long workerId;
+
+    public RedisWorkerIdLease(RedissonClient redissonClient,
+                              @Value("${id.worker-lease-ttl:60s}") Duration ttl) {
+        this.redissonClient = redissonClient;
+        this.ttl = ttl;
+        this.workerId = acquire();
+    }
+
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    public void onChange(LongConsumer listener) {
+        listeners.add(listener);
+    }
+
+    @Scheduled(fixedDelayString = "${id.worker-lease-renew-ms:10000}")
+    public void renew() {
+        try {
+            Long renewed = redissonClient.getScript(StringCodec.INSTANCE).eval(RScript.Mode.READ_WRITE,
+                    RENEW_SCRIPT, RScript.ReturnType.INTEGER, List.of(KEY_PREFIX + workerId),
+                    owner, String.valueOf(ttl.toMillis()));
+            if (renewed != null && renewed == 1) {
+                return;
+            }
+            long previous = workerId;
+            workerId = acquire();
+            log.warn("节点号租约已丢失，{} -> {}", previous, workerId);
+            listeners.forEach(listener -> listener.accept(workerId));
+        } catch (Exception e) {
+            log.error("节点号租约续期失败，节点号: {}, 原因: {}", workerId, e.getMessage());
+        }
+    }
+
+    // 从随机位置开始依次尝试占用，减少多个节点同时启动时的冲突
+    private long acquire() {
+        int start = ThreadLocalRandom.current().nextInt(WORKER_COUNT);
+        for (int i = 0; i < WORKER_COUNT; i++) {
+            int candidate = (start + i) % WORKER_COUNT;
+            if (redissonClient.getBucket(KEY_PREFIX + candidate, StringCodec.INSTANCE).setIfAbsent(owner, ttl)) {
+                log.info("租用节点号: {}", candidate);
+                return candidate;
+            }
+        }
+        throw new IllegalStateException("没有可用的节点号，已全部被占用: " + WORKER_COUNT);
+    }
+}
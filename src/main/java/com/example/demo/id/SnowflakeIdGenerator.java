@@ -0,0 +1,91 @@
+package com.example.demo.id;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Snowflake 风格的 64 位ID：1 位符号 + 41 位毫秒时间戳（自 2024-01-01 起，约 69 年）+ 10 位节点号 + 12 位序列号。
+ * <p>
+ * 时间戳和序列号打包在一个 AtomicLong 里用 CAS 推进，无锁、无对象分配。
+ * 同一毫秒序列号用完时借用下一毫秒；时钟小幅回拨（不超过 maxBackwardMs）时继续沿用上次的时间戳递增，
+ * 超过则拒绝生成，避免与回拨前生成的ID重复。
+ */
+public class SnowflakeIdGenerator implements IdGenerator {
+    public static final long EPOCH = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    public static final int WORKER_ID_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    public static final long MAX_WORKER_ID = (1L << WORKER_ID_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int TIMESTAMP_SHIFT = WORKER_ID_BITS + SEQUENCE_BITS;
+
+    // 高位为相对 EPOCH 的时间戳，低 12 位为序列号
+    private final AtomicLong state = new AtomicLong();
+    private final long maxBackwardMs;
+    private final LongSupplier clock;
+    private volatile long workerId;
+
+    public SnowflakeIdGenerator(long workerId) {
+        this(workerId, 1000, System::currentTimeMillis);
+    }
+
+    public SnowflakeIdGenerator(long workerId, long maxBackwardMs, LongSupplier clock) {
+        this.maxBackwardMs = maxBackwardMs;
+        this.clock = clock;
+        setWorkerId(workerId);
+    }
+
+    // 节点号租约变化时切换，切换前后的ID节点号不同，不会重复
+    public void setWorkerId(long workerId) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("节点号超出范围 [0, " + MAX_WORKER_ID + "]: " + workerId);
+        }
+        this.workerId = workerId;
+    }
+
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    @Override
+    public long nextId() {
+        while (true) {
+            long current = state.get();
+            long lastTimestamp = current >>> SEQUENCE_BITS;
+            long now = clock.getAsLong() - EPOCH;
+            long next;
+            if (now > lastTimestamp) {
+                next = now << SEQUENCE_BITS;
+            } else {
+                long behind = lastTimestamp - now;
+                if (behind > maxBackwardMs) {
+                    throw new IllegalStateException("时钟回拨 " + behind + "ms，超过允许的 " + maxBackwardMs + "ms，拒绝生成ID");
+                }
+                if ((current & SEQUENCE_MASK) == SEQUENCE_MASK) {
+                    // 本毫秒序列号用完：借用下一毫秒，但不能超前时钟太多
+                    if (behind + 1 > maxBackwardMs) {
+                        Thread.onSpinWait();
+                        continue;
+                    }
+                    next = (lastTimestamp + 1) << SEQUENCE_BITS;
+                } else {
+                    next = current + 1;
+                }
+            }
+            if (state.compareAndSet(current, next)) {
+                return ((next >>> SEQUENCE_BITS) << TIMESTAMP_SHIFT)
+                        | (workerId << SEQUENCE_BITS)
+                        | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    // 从ID中取出生成时间（毫秒时间戳）
+    public static long timestampOf(long id) {
+        return (id >>> TIMESTAMP_SHIFT) + EPOCH;
+    }
+
+    public static long workerIdOf(long id) {
+        return (id >>> SEQUENCE_BITS) & MAX_WORKER_ID;
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.demo.job;
+
+import com.example.demo.dto.AsyncOrderStatus;
+import com.example.demo.entity.Order;
+import com.example.demo.exception.InsufficientStockException;
+import com.example.demo.service.OrderCommandQueue;
+import com.example.demo.service.OrderCommandQueue.OrderCommand;
+import com.example.demo.service.OrderService;
+import com.example.demo.service.StockReservationService;
+import com.example.demo.shard.ShardContext;
+import com.example.demo.shard.ShardRouter;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+
+/**
+ * 异步下单消费者：从 Redis Stream 批量读取下单命令，按用户分片分组，同一分片的命令在同一个事务（一个数据库连接）里落库。
+ * 整批失败时逐条重试；业务失败（库存不足）归还预扣并标记失败，其他异常不确认消息，稍后重新投递。
+ */
+@Component
+@Slf4j
+public class OrderCommandConsumer {
+
+    private final OrderCommandQueue orderCommandQueue;
+    private final OrderService orderService;
+    private final StockReservationService stockReservationService;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transactionTemplate;
+    private final Executor orderConsumerExecutor;
+    private final String consumerPrefix = ManagementFactory.getRuntimeMXBean().getName();
+
+    @Value("${order.async.enabled:true}")
+    private boolean enabled;
+    @Value("${order.async.consumers:2}")
+    private int consumers;
+    @Value("${order.async.batch-size:50}")
+    private int batchSize;
+    @Value("${order.async.block-ms:1000}")
+    private long blockMs;
+    @Value("${order.async.claim-idle-ms:60000}")
+    private long claimIdleMs;
+
+    private volatile boolean running;
+
+    public OrderCommandConsumer(OrderCommandQueue orderCommandQueue,
+                                OrderService orderService,
+                                StockReservationService stockReservationService,
+                                ShardRouter shardRouter,
+                                PlatformTransactionManager transactionManager,
+                                @Qualifier("orderConsumerExecutor") Executor orderConsumerExecutor) {
+        this.orderCommandQueue = orderCommandQueue;
+        this.orderService = orderService;
+        this.stockReservationService = stockReservationService;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.orderConsumerExecutor = orderConsumerExecutor;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        orderCommandQueue.ensureGroup();
+        running = true;
+        for (int i = 0; i < consumers; i++) {
+            String consumer = consumerPrefix + "-" + i;
+            orderConsumerExecutor.execute(() -> consume(consumer));
+        }
+        log.info("异步下单消费者已启动，数量: {}", consumers);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+    }
+
+    // 接管崩溃节点遗留的未确认消息
+    @Scheduled(fixedDelayString = "${order.async.claim-interval-ms:30000}")
+    public void reclaim() {
+        if (!running) {
+            return;
+        }
+        try {
+            List<OrderCommand> commands = orderCommandQueue.claimStale(consumerPrefix + "-claim",
+                    Duration.ofMillis(claimIdleMs), batchSize);
+            if (!commands.isEmpty()) {
+                log.warn("接管未确认的下单命令，数量: {}", commands.size());
+                process(commands);
+            }
+        } catch (Exception e) {
+            log.error("接管未确认的下单命令失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private void consume(String consumer) {
+        while (running) {
+            try {
+                consumeBatch(consumer);
+            } catch (Exception e) {
+                log.error("消费下单命令失败: {}", e.getMessage(), e);
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 读取一批新消息并处理，最多阻塞 block-ms。
+     *
+     * @return 读到的消息数
+     */
+    int consumeBatch(String consumer) {
+        List<OrderCommand> commands = orderCommandQueue.read(consumer, batchSize, Duration.ofMillis(blockMs));
+        if (!commands.isEmpty()) {
+            process(commands);
+        }
+        return commands.size();
+    }
+
+    private void process(List<OrderCommand> commands) {
+        Map<Integer, List<OrderCommand>> valid = new TreeMap<>();
+        List<OrderCommand> done = new ArrayList<>(commands.size());
+        for (OrderCommand command : commands) {
+            if (command.request() == null) {
+                failed(command, "下单命令无法解析");
+                done.add(command);
+            } else {
+                valid.computeIfAbsent(shardRouter.shardOfUser(command.request().getUserId()), k -> new ArrayList<>())
+                        .add(command);
+            }
+        }
+
+        // 事务开启时才取连接，分片必须在事务外设置
+        for (Map.Entry<Integer, List<OrderCommand>> group : valid.entrySet()) {
+            ShardContext.run(group.getKey(), () -> processShard(group.getValue(), done));
+        }
+        orderCommandQueue.ack(done);
+    }
+
+    private void processShard(List<OrderCommand> valid, List<OrderCommand> done) {
+        try {
+            List<Order> orders = transactionTemplate.execute(status -> {
+                List<Order> created = new ArrayList<>(valid.size());
+                for (OrderCommand command : valid) {
+                    created.add(orderService.createReservedOrder(command.token(), command.request()));
+                }
+                return created;
+            });
+            for (int i = 0; i < valid.size(); i++) {
+                created(valid.get(i), orders.get(i));
+            }
+            done.addAll(valid);
+        } catch (Exception e) {
+            log.warn("批量落库失败，逐条重试: {}", e.getMessage());
+            for (OrderCommand command : valid) {
+                if (processOne(command)) {
+                    done.add(command);
+                }
+            }
+        }
+    }
+
+    // 返回 true 表示已有最终结果，可以确认消息
+    private boolean processOne(OrderCommand command) {
+        try {
+            Order order = transactionTemplate.execute(status ->
+                    orderService.createReservedOrder(command.token(), command.request()));
+            created(command, order);
+            return true;
+        } catch (DuplicateKeyException e) {
+            // 重复投递：订单此前已落库
+            Order order = orderService.getOrderByNumber(command.token()).orElse(null);
+            if (order == null) {
+                return false;
+            }
+            created(command, order);
+            return true;
+        } catch (InsufficientStockException | IllegalArgumentException e) {
+            // 库存不足、商品不存在：重试也不会成功
+            failed(command, e.getMessage());
+            return true;
+        } catch (Exception e) {
+            log.error("下单命令落库失败，稍后重试，凭证: {}, 原因: {}", command.token(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void created(OrderCommand command, Order order) {
+        stockReservationService.confirm(command.token());
+        orderCommandQueue.putStatus(new AsyncOrderStatus(command.token(), AsyncOrderStatus.CREATED, order.getId(), null));
+    }
+
+    private void failed(OrderCommand command, String message) {
+        stockReservationService.release(command.token());
+        orderCommandQueue.putStatus(new AsyncOrderStatus(command.token(), AsyncOrderStatus.FAILED, null, message));
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.demo.job;
+
+import com.example.demo.service.OrderService;
+import com.example.demo.service.OrderTimeoutQueue;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * 订单超时消费者：从到期队列批量取出订单ID，一个事务内批量取消（已支付、已取消的订单被条件更新跳过）。
+ * 取消失败的订单放回队列重试。
+ */
+@Component
+@Slf4j
+public class OrderTimeoutConsumer {
+
+    private final OrderTimeoutQueue orderTimeoutQueue;
+    private final OrderService orderService;
+    private final Executor orderTimeoutExecutor;
+
+    @Value("${order.timeout.batch-size:100}")
+    private int batchSize;
+
+    private volatile boolean running;
+
+    public OrderTimeoutConsumer(OrderTimeoutQueue orderTimeoutQueue,
+                                OrderService orderService,
+                                @Qualifier("orderTimeoutExecutor") Executor orderTimeoutExecutor) {
+        this.orderTimeoutQueue = orderTimeoutQueue;
+        this.orderService = orderService;
+        this.orderTimeoutExecutor = orderTimeoutExecutor;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!orderTimeoutQueue.isEnabled()) {
+            return;
+        }
+        running = true;
+        orderTimeoutExecutor.execute(this::consume);
+        log.info("订单超时消费者已启动");
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+    }
+
+    private void consume() {
+        while (running) {
+            try {
+                if (consumeBatch(Duration.ofSeconds(1)) < 0) {
+                    Thread.sleep(1000);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 取出一批到期订单并取消，最多等待 timeout。
+     *
+     * @return 实际取消的订单数（已支付、已取消的不计）；失败时已取出的订单放回队列，返回 -1
+     */
+    int consumeBatch(Duration timeout) throws InterruptedException {
+        List<Long> orderIds = List.of();
+        try {
+            orderIds = orderTimeoutQueue.take(batchSize, timeout);
+            if (orderIds.isEmpty()) {
+                return 0;
+            }
+            int cancelled = orderService.cancelOrders(orderIds);
+            log.info("取消超时未支付订单，到期: {}, 取消: {}", orderIds.size(), cancelled);
+            return cancelled;
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("取消超时订单失败，稍后重试: {}", e.getMessage(), e);
+            retry(orderIds);
+            return -1;
+        }
+    }
+
+    // 放回失败时只能交给超时清理任务兜底
+    private void retry(List<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        try {
+            orderTimeoutQueue.retry(orderIds);
+        } catch (Exception e) {
+            log.warn("超时订单放回队列失败，数量: {}, 原因: {}", orderIds.size(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.demo.job;
+
+import com.example.demo.service.OrderService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+// 超时未支付订单兜底清理：超时任务由 OrderTimeoutQueue 按订单触发，这里只处理投递或消费失败而漏掉的订单。
+// 分批取消并归还库存，每批一个事务；集群内同一时间只有一个节点执行
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OrderTimeoutJob {
+    private static final String SWEEP_LOCK_KEY = "order_timeout_lock";
+
+    private final OrderService orderService;
+    private final RedissonClient redissonClient;
+
+    @Value("${order.timeout.enabled:true}")
+    private boolean enabled;
+    @Value("${order.timeout.pending-ttl:30m}")
+    private Duration pendingTtl;
+    // 给延时队列留出的处理时间，超过 pending-ttl + sweep-grace 仍未取消才由本任务处理
+    @Value("${order.timeout.sweep-grace:10m}")
+    private Duration sweepGrace;
+    @Value("${order.timeout.chunk-size:500}")
+    private int chunkSize;
+
+    @Scheduled(fixedDelayString = "${order.timeout.sweep-interval-ms:600000}")
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+        RLock lock = redissonClient.getLock(SWEEP_LOCK_KEY);
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            LocalDateTime createdBefore = LocalDateTime.now().minus(pendingTtl).minus(sweepGrace);
+            int total = 0;
+            int cancelled;
+            do {
+                cancelled = orderService.cancelExpiredOrders(createdBefore, chunkSize);
+                total += cancelled;
+                // 每个分片各取 chunk-size 个，总数达到 chunk-size 说明可能还有剩余
+            } while (cancelled >= chunkSize);
+            if (total > 0) {
+                log.warn("兜底取消超时未支付订单，数量: {}", total);
+            }
+        } catch (Exception e) {
+            log.error("取消超时订单失败: {}", e.getMessage(), e);
+        } finally {
+            // 清理耗时超过锁的租期时锁可能已被释放并由其他节点持有
+            if (lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+}
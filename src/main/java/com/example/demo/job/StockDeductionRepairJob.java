@@ -0,0 +1,76 @@
+package com.example.demo.job;
+
+import com.example.demo.entity.StockDeduction;
+import com.example.demo.service.OrderService;
+import com.example.demo.service.StockDeductionLedger;
+import com.example.demo.shard.ShardRouter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// 跨分片扣减修复：商品分片上的扣减已提交、节点在订单事务结束前崩溃时，扣减记录会一直留着。
+// 超过 repair-after 的记录按订单是否落库处理：已落库只删除记录，未落库加回库存。只在启用分片时执行，
+// 集群内同一时间只有一个节点执行
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StockDeductionRepairJob {
+    private static final String REPAIR_LOCK_KEY = "stock_deduction_repair_lock";
+
+    private final StockDeductionLedger stockDeductionLedger;
+    private final OrderService orderService;
+    private final ShardRouter shardRouter;
+    private final RedissonClient redissonClient;
+
+    // 必须大于下单事务的最长耗时，否则可能把仍在提交中的订单的库存加回
+    @Value("${order.stock-deduction.repair-after:5m}")
+    private Duration repairAfter;
+    @Value("${order.stock-deduction.batch-size:100}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${order.stock-deduction.repair-interval-ms:60000}")
+    public void repair() {
+        if (shardRouter.shardCount() <= 1) {
+            return;
+        }
+        RLock lock = redissonClient.getLock(REPAIR_LOCK_KEY);
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            repairStale(LocalDateTime.now().minus(repairAfter));
+        } catch (Exception e) {
+            log.error("修复跨分片扣减记录失败: {}", e.getMessage(), e);
+        } finally {
+            if (lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    // 处理创建时间早于 before 的扣减记录，返回加回库存的扣减数
+    int repairStale(LocalDateTime before) {
+        int restored = 0;
+        List<StockDeduction> stale;
+        do {
+            stale = stockDeductionLedger.findStale(before, batchSize);
+            for (StockDeduction deduction : stale) {
+                if (orderService.getOrderByNumber(deduction.getOrderNumber()).isPresent()) {
+                    stockDeductionLedger.settle(deduction.getDeductionId());
+                } else if (stockDeductionLedger.restore(deduction.getDeductionId())) {
+                    log.warn("订单 {} 未落库，加回商品分片上的库存扣减 {}", deduction.getOrderNumber(), deduction.getDeductionId());
+                    restored++;
+                }
+            }
+        } while (stale.size() == batchSize);
+        return restored;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.demo.job;
+
+import com.example.demo.service.StockReservationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Redis 预扣库存对账任务，集群内同一时间只有一个节点执行
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StockReconcileJob {
+    private static final String RECONCILE_LOCK_KEY = "stock_reconcile_lock";
+
+    private final StockReservationService stockReservationService;
+    private final RedissonClient redissonClient;
+
+    @Scheduled(fixedDelayString = "${stock.reservation.reconcile-interval-ms:30000}")
+    public void reconcile() {
+        RLock lock = redissonClient.getLock(RECONCILE_LOCK_KEY);
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            stockReservationService.reconcile();
+        } catch (Exception e) {
+            log.error("库存对账失败: {}", e.getMessage(), e);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
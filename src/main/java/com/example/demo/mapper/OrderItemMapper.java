@@ -4,6 +4,7 @@ package com.example.demo.mapper;
 import com.example.demo.entity.OrderItem;
 import org.apache.ibatis.annotations.*;
 
+import java.util.Collection;
 import java.util.List;
 
 @Mapper
@@ -14,18 +15,22 @@ public interface OrderItemMapper {
     @Options(useGeneratedKeys = true, keyProperty = "id")
     int insert(OrderItem orderItem);
 
-    @Select("SELECT oi.*, p.name as product_name, p.description as product_description " +
-            "FROM order_items oi " +
-            "LEFT JOIN products p ON oi.product_id = p.id " +
-            "WHERE oi.order_id = #{orderId}")
-    @Results({
-            @Result(property = "id", column = "id"),
-            @Result(property = "productId", column = "product_id"),
-            @Result(property = "product.name", column = "product_name"),
-            @Result(property = "product.description", column = "product_description")
-    })
-    List<OrderItem> findByOrderId(Long orderId);
+    @Insert("<script>" +
+            "INSERT INTO order_items (order_id, product_id, quantity, price, subtotal) VALUES " +
+            "<foreach collection='items' item='item' separator=','>" +
+            "(#{item.orderId}, #{item.productId}, #{item.quantity}, #{item.price}, #{item.subtotal})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("items") List<OrderItem> items);
 
     @Select("SELECT * FROM order_items WHERE order_id = #{orderId}")
     List<OrderItem> findSimpleByOrderId(Long orderId);
+
+    // 一条 IN 查询取出一批订单的订单项（商品信息由调用方从缓存补充）
+    @Select("<script>" +
+            "SELECT * FROM order_items WHERE order_id IN " +
+            "<foreach collection='orderIds' item='orderId' open='(' separator=',' close=')'>#{orderId}</foreach>" +
+            " ORDER BY order_id, id" +
+            "</script>")
+    List<OrderItem> findSimpleByOrderIds(@Param("orderIds") Collection<Long> orderIds);
 }
@@ -3,7 +3,10 @@ package com.example.demo.mapper;
 
 import com.example.demo.entity.Order;
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.cursor.Cursor;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,17 +18,57 @@ public interface OrderMapper {
     @Options(useGeneratedKeys = true, keyProperty = "id")
     int insert(Order order);
 
+    // 订单项由 OrderGraphLoader 批量加载，这里不做嵌套查询
     @Select("SELECT * FROM orders WHERE id = #{id}")
-    @Results({
-            @Result(property = "id", column = "id"),
-            @Result(property = "orderItems", column = "id",
-                    many = @Many(select = "com.example.eshop.mapper.OrderItemMapper.findByOrderId"))
-    })
     Optional<Order> findById(Long id);
 
-    @Select("SELECT * FROM orders WHERE user_id = #{userId} ORDER BY created_time DESC")
-    List<Order> findByUserId(Long userId);
+    @Select("SELECT * FROM orders WHERE order_number = #{orderNumber}")
+    Optional<Order> findByOrderNumber(String orderNumber);
+
+    // 按 (created_time, id) 倒序的键集分页，依赖索引 (user_id, created_time, id)；afterId 为空时取第一页
+    @Select("<script>" +
+            "SELECT * FROM orders WHERE user_id = #{userId} " +
+            "<if test='afterId != null'>" +
+            "AND (created_time &lt; #{afterCreatedTime} OR (created_time = #{afterCreatedTime} AND id &lt; #{afterId})) " +
+            "</if>" +
+            "ORDER BY created_time DESC, id DESC LIMIT #{limit}" +
+            "</script>")
+    List<Order> findPageByUserId(@Param("userId") Long userId,
+                                 @Param("afterCreatedTime") LocalDateTime afterCreatedTime,
+                                 @Param("afterId") Long afterId,
+                                 @Param("limit") int limit);
+
+    // 游标流式读取用户全部订单（MySQL 需在连接串开启 useCursorFetch），必须在事务内消费
+    @Select("SELECT * FROM orders WHERE user_id = #{userId} ORDER BY created_time DESC, id DESC")
+    @Options(fetchSize = 500)
+    Cursor<Order> scanByUserId(Long userId);
 
     @Update("UPDATE orders SET status = #{status} WHERE id = #{orderId}")
     int updateStatus(@Param("orderId") Long orderId, @Param("status") String status);
+
+    // 某状态下最近创建的订单，依赖索引 (status, created_time)
+    @Select("SELECT * FROM orders WHERE status = #{status} ORDER BY created_time DESC, id DESC LIMIT #{limit}")
+    List<Order> findRecentByStatus(@Param("status") String status, @Param("limit") int limit);
+
+    // 某状态下创建时间早于 before 的订单（超时未支付），依赖索引 (status, created_time)
+    @Select("SELECT id FROM orders WHERE status = #{status} AND created_time < #{before} " +
+            "ORDER BY created_time, id LIMIT #{limit}")
+    List<Long> findIdsByStatusCreatedBefore(@Param("status") String status,
+                                            @Param("before") LocalDateTime before,
+                                            @Param("limit") int limit);
+
+    // 锁住仍处于该状态的订单，并发的支付、取消等待本事务结束
+    @Select("<script>" +
+            "SELECT id FROM orders WHERE status = #{status} AND id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            " ORDER BY id FOR UPDATE" +
+            "</script>")
+    List<Long> lockByIdsAndStatus(@Param("ids") Collection<Long> ids, @Param("status") String status);
+
+    // 条件更新：只修改仍处于 from 状态的订单，返回实际修改的行数
+    @Update("<script>" +
+            "UPDATE orders SET status = #{to}, updated_time = CURRENT_TIMESTAMP WHERE status = #{from} AND id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int updateStatusBatch(@Param("ids") Collection<Long> ids, @Param("from") String from, @Param("to") String to);
 }
@@ -2,8 +2,11 @@ package com.example.demo.mapper;
 
 import com.example.demo.entity.Product;
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.cursor.Cursor;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Mapper
@@ -16,17 +19,79 @@ public interface ProductMapper {
     @Select("SELECT * FROM products WHERE id = #{id}")
     Optional<Product> findById(Long id);
 
-    @Select("SELECT * FROM products")
-    List<Product> findAll();
+    // 按主键的键集分页
+    @Select("SELECT * FROM products WHERE id > #{afterId} ORDER BY id LIMIT #{limit}")
+    List<Product> findPageAfter(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    @Select("<script>" +
+            "SELECT * FROM products WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<Product> findByIds(@Param("ids") Collection<Long> ids);
+
+    // 游标流式读取全部商品ID（MySQL 需在连接串开启 useCursorFetch），必须在事务内消费
+    @Select("SELECT id FROM products")
+    @Options(fetchSize = 1000)
+    Cursor<Long> scanIds();
+
+    @Select("SELECT id FROM products WHERE id > #{afterId}")
+    List<Long> findIdsAfter(Long afterId);
+
+    @Select("SELECT COUNT(*) FROM products")
+    long count();
 
     @Update("UPDATE products SET stock = stock - #{quantity} WHERE id = #{productId} AND stock >= #{quantity}")
     int deductStock(@Param("productId") Long productId, @Param("quantity") Integer quantity);
 
+    // 一条语句扣减多个商品库存，任一商品库存不足时影响行数小于商品数
+    @Update("<script>" +
+            "UPDATE products SET stock = stock - CASE id " +
+            "<foreach collection='quantities' index='productId' item='quantity'>WHEN #{productId} THEN #{quantity} </foreach>" +
+            "END WHERE id IN " +
+            "<foreach collection='quantities' index='productId' open='(' separator=',' close=')'>#{productId}</foreach>" +
+            " AND stock &gt;= CASE id " +
+            "<foreach collection='quantities' index='productId' item='quantity'>WHEN #{productId} THEN #{quantity} </foreach>" +
+            "END" +
+            "</script>")
+    int deductStockBatch(@Param("quantities") Map<Long, Integer> quantities);
+
     @Update("UPDATE products SET stock = stock + #{quantity} WHERE id = #{productId}")
     int increaseStock(@Param("productId") Long productId, @Param("quantity") Integer quantity);
 
-    @Select("SELECT stock FROM products WHERE id = #{productId}")
-    Integer getStock(Long productId);
+    // 一条语句给多个商品加库存（批量取消订单）
+    @Update("<script>" +
+            "UPDATE products SET stock = stock + CASE id " +
+            "<foreach collection='quantities' index='productId' item='quantity'>WHEN #{productId} THEN #{quantity} </foreach>" +
+            "END WHERE id IN " +
+            "<foreach collection='quantities' index='productId' open='(' separator=',' close=')'>#{productId}</foreach>" +
+            "</script>")
+    int increaseStockBatch(@Param("quantities") Map<Long, Integer> quantities);
+
+    // 无条件把净变化量合并到库存，只用于合并 stock_journal
+    @Update("<script>" +
+            "UPDATE products SET stock = stock + CASE id " +
+            "<foreach collection='deltas' index='productId' item='delta'>WHEN #{productId} THEN #{delta} </foreach>" +
+            "END, updated_time = CURRENT_TIMESTAMP WHERE id IN " +
+            "<foreach collection='deltas' index='productId' open='(' separator=',' close=')'>#{productId}</foreach>" +
+            "</script>")
+    int applyStockDeltas(@Param("deltas") Map<Long, Integer> deltas);
+
+    // 实际库存 = 表中库存 + stock_journal 中尚未合并的变化量；journal 为 false（未开启 write-behind）时不访问 stock_journal，
+    // 未建该表的库也能查询
+    @Select("<script>" +
+            "SELECT p.stock" +
+            "<if test='journal'> + COALESCE((SELECT SUM(j.delta) FROM stock_journal j WHERE j.product_id = p.id), 0)</if> " +
+            "FROM products p WHERE p.id = #{productId}" +
+            "</script>")
+    Integer getStock(@Param("productId") Long productId, @Param("journal") boolean journal);
+
+    @Select("<script>" +
+            "SELECT p.id, p.stock" +
+            "<if test='journal'> + COALESCE((SELECT SUM(j.delta) FROM stock_journal j WHERE j.product_id = p.id), 0)</if> AS stock " +
+            "FROM products p WHERE p.id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<Product> findStockByIds(@Param("ids") Collection<Long> ids, @Param("journal") boolean journal);
 
     @Select("SELECT COUNT(*) FROM products WHERE name = #{name}")
     boolean existsByName(String name);
@@ -0,0 +1,42 @@
+package com.example.demo.mapper;
+
+import com.example.demo.entity.ProductOutboxEntry;
+import org.apache.ibatis.annotations.*;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 商品变更 outbox，与 products 在同一个库（分片时在商品分片）：
+ * <pre>
+ * CREATE TABLE product_outbox (
+ *     id           BIGINT AUTO_INCREMENT PRIMARY KEY,
+ *     product_id   BIGINT      NOT NULL,
+ *     change_type  VARCHAR(16) NOT NULL,
+ *     created_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+ * );
+ * </pre>
+ */
+@Mapper
+public interface ProductOutboxMapper {
+
+    @Insert("<script>" +
+            "INSERT INTO product_outbox (product_id, change_type) VALUES " +
+            "<foreach collection='productIds' item='productId' separator=','>(#{productId}, #{changeType})</foreach>" +
+            "</script>")
+    int insertBatch(@Param("productIds") Collection<Long> productIds, @Param("changeType") String changeType);
+
+    // 按写入顺序取一批待同步的记录。不加 FOR UPDATE：间隙锁会挡住下单事务的插入，同步节点由分布式锁保证唯一
+    @Select("SELECT * FROM product_outbox ORDER BY id LIMIT #{limit}")
+    List<ProductOutboxEntry> findOldest(int limit);
+
+    // 按 ID 删除已同步的记录；不能按范围删，ID 较小的记录可能属于尚未提交的事务
+    @Delete("<script>" +
+            "DELETE FROM product_outbox WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
+    @Select("SELECT COUNT(*) FROM product_outbox")
+    long count();
+}
@@ -0,0 +1,48 @@
+package com.example.demo.mapper;
+
+import com.example.demo.entity.StockDeduction;
+import org.apache.ibatis.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 跨分片扣减记录，只在商品分片上（只有启用分片时使用）：
+ * <pre>
+ * CREATE TABLE stock_deduction (
+ *     id           BIGINT AUTO_INCREMENT PRIMARY KEY,
+ *     deduction_id VARCHAR(36) NOT NULL,
+ *     order_number VARCHAR(64) NOT NULL,
+ *     product_id   BIGINT      NOT NULL,
+ *     quantity     INT         NOT NULL,
+ *     created_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+ *     KEY idx_stock_deduction_id (deduction_id),
+ *     KEY idx_stock_deduction_created (created_time)
+ * );
+ * </pre>
+ */
+@Mapper
+public interface StockDeductionMapper {
+
+    @Insert("<script>" +
+            "INSERT INTO stock_deduction (deduction_id, order_number, product_id, quantity) VALUES " +
+            "<foreach collection='quantities' index='productId' item='quantity' separator=','>" +
+            "(#{deductionId}, #{orderNumber}, #{productId}, #{quantity})</foreach>" +
+            "</script>")
+    int insertBatch(@Param("deductionId") String deductionId,
+                    @Param("orderNumber") String orderNumber,
+                    @Param("quantities") Map<Long, Integer> quantities);
+
+    // 加锁读取一次扣减的全部记录，补偿和修复任务同时处理时只有一方能拿到
+    @Select("SELECT * FROM stock_deduction WHERE deduction_id = #{deductionId} FOR UPDATE")
+    List<StockDeduction> lockByDeductionId(String deductionId);
+
+    @Delete("DELETE FROM stock_deduction WHERE deduction_id = #{deductionId}")
+    int deleteByDeductionId(String deductionId);
+
+    // 创建时间早于 before 仍未确认的扣减，每次扣减一行
+    @Select("SELECT DISTINCT deduction_id, order_number FROM stock_deduction " +
+            "WHERE created_time < #{before} LIMIT #{limit}")
+    List<StockDeduction> findStale(@Param("before") LocalDateTime before, @Param("limit") int limit);
+}
@@ -0,0 +1,49 @@
+package com.example.demo.mapper;
+
+import com.example.demo.entity.StockJournalEntry;
+import org.apache.ibatis.annotations.*;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 库存变化日志（write-behind 缓冲的持久化部分）：
+ * <pre>
+ * CREATE TABLE stock_journal (
+ *     id           BIGINT AUTO_INCREMENT PRIMARY KEY,
+ *     product_id   BIGINT NOT NULL,
+ *     delta        INT    NOT NULL,
+ *     created_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+ *     KEY idx_stock_journal_product (product_id)
+ * );
+ * </pre>
+ */
+@Mapper
+public interface StockJournalMapper {
+
+    @Insert("<script>" +
+            "INSERT INTO stock_journal (product_id, delta) VALUES " +
+            "<foreach collection='deltas' index='productId' item='delta' separator=','>(#{productId}, #{delta})</foreach>" +
+            "</script>")
+    int insertBatch(@Param("deltas") Map<Long, Integer> deltas);
+
+    // 按写入顺序取一批待合并的记录并加锁，防止合并期间被重复处理
+    @Select("SELECT * FROM stock_journal ORDER BY id LIMIT #{limit} FOR UPDATE")
+    List<StockJournalEntry> lockOldest(int limit);
+
+    // 按 ID 删除已合并的记录；不能按范围删，ID 较小的记录可能属于尚未提交的事务
+    @Delete("<script>" +
+            "DELETE FROM stock_journal WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
+    // 按商品汇总尚未合并的净变化量，净变化量绝对值大的在前；只用于观察，不加锁
+    @Select("SELECT product_id, SUM(delta) AS delta FROM stock_journal " +
+            "GROUP BY product_id ORDER BY ABS(SUM(delta)) DESC, product_id LIMIT #{limit}")
+    List<StockJournalEntry> sumByProduct(int limit);
+
+    @Select("SELECT COUNT(*) FROM stock_journal")
+    long count();
+}
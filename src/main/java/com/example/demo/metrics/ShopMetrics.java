@@ -0,0 +1,121 @@
+package com.example.demo.metrics;
+
+import com.example.demo.exception.InsufficientStockException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 下单、库存、商品缓存热点路径上的指标，通过 /actuator/prometheus 导出。
+ * 计时器都带百分位直方图，Prometheus 端用 histogram_quantile 计算 p50/p99。
+ * 计量器在构造时注册好，热点路径上不再按名称和标签查找。
+ */
+@Component
+public class ShopMetrics {
+    public static final String STAGE_ADMISSION = "admission";
+    public static final String STAGE_RESERVATION = "reservation";
+    public static final String STAGE_DATABASE = "database";
+
+    private final Timer orderCreateSuccess;
+    private final Timer orderCreateRejected;
+    private final Timer orderCreateError;
+    private final Timer stockDeductSingle;
+    private final Timer stockDeductBatch;
+    private final Timer cacheGetHit;
+    private final Timer cacheGetMiss;
+    private final Timer cacheRebuildHot;
+    private final Timer cacheRebuildNormal;
+    private final Timer lockWaitAcquired;
+    private final Timer lockWaitNotified;
+    private final Timer lockWaitTimeout;
+    private final Counter nullMarkerHits;
+    private final Counter rejectedAtAdmission;
+    private final Counter rejectedAtReservation;
+    private final Counter rejectedAtDatabase;
+
+    public ShopMetrics(MeterRegistry registry) {
+        orderCreateSuccess = timer(registry, "order.create", "result", "success");
+        orderCreateRejected = timer(registry, "order.create", "result", "rejected");
+        orderCreateError = timer(registry, "order.create", "result", "error");
+        stockDeductSingle = timer(registry, "stock.deduct", "mode", "single");
+        stockDeductBatch = timer(registry, "stock.deduct", "mode", "batch");
+        cacheGetHit = timer(registry, "product.cache.get", "result", "hit");
+        cacheGetMiss = timer(registry, "product.cache.get", "result", "miss");
+        cacheRebuildHot = timer(registry, "product.cache.rebuild", "path", "hot");
+        cacheRebuildNormal = timer(registry, "product.cache.rebuild", "path", "normal");
+        // 热点商品重建：抢锁成功、等到其他节点重建完成的通知、等待超时
+        lockWaitAcquired = timer(registry, "product.cache.lock.wait", "outcome", "acquired");
+        lockWaitNotified = timer(registry, "product.cache.lock.wait", "outcome", "notified");
+        lockWaitTimeout = timer(registry, "product.cache.lock.wait", "outcome", "timeout");
+        nullMarkerHits = Counter.builder("product.cache.null.hits")
+                .description("命中空值缓存（商品不存在）的次数")
+                .register(registry);
+        rejectedAtAdmission = rejections(registry, STAGE_ADMISSION);
+        rejectedAtReservation = rejections(registry, STAGE_RESERVATION);
+        rejectedAtDatabase = rejections(registry, STAGE_DATABASE);
+    }
+
+    // 库存不足记为 rejected，其他异常记为 error
+    public <T> T timeCreateOrder(Supplier<T> action) {
+        long start = System.nanoTime();
+        Timer timer = orderCreateError;
+        try {
+            T result = action.get();
+            timer = orderCreateSuccess;
+            return result;
+        } catch (InsufficientStockException e) {
+            timer = orderCreateRejected;
+            throw e;
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public <T> T timeStockDeduct(boolean batch, Supplier<T> action) {
+        return (batch ? stockDeductBatch : stockDeductSingle).record(action);
+    }
+
+    public void recordCacheGet(boolean hit, long nanos) {
+        (hit ? cacheGetHit : cacheGetMiss).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public <T> T timeCacheRebuild(boolean hot, Supplier<T> action) {
+        return (hot ? cacheRebuildHot : cacheRebuildNormal).record(action);
+    }
+
+    public void recordLockWait(boolean acquired, boolean notified, long nanos) {
+        Timer timer = acquired ? lockWaitAcquired : notified ? lockWaitNotified : lockWaitTimeout;
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void nullMarkerHit() {
+        nullMarkerHits.increment();
+    }
+
+    // 防超卖拒绝：本地闸门、Redis 预扣、数据库条件更新（Redis 放行但数据库库存不足）
+    public void stockRejected(String stage) {
+        switch (stage) {
+            case STAGE_ADMISSION -> rejectedAtAdmission.increment();
+            case STAGE_RESERVATION -> rejectedAtReservation.increment();
+            default -> rejectedAtDatabase.increment();
+        }
+    }
+
+    private static Timer timer(MeterRegistry registry, String name, String tag, String value) {
+        return Timer.builder(name)
+                .tag(tag, value)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static Counter rejections(MeterRegistry registry, String stage) {
+        return Counter.builder("stock.oversell.rejections")
+                .description("库存不足被拒绝的下单请求")
+                .tag("stage", stage)
+                .register(registry);
+    }
+}
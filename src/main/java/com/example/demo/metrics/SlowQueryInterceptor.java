@@ -0,0 +1,90 @@
+package com.example.demo.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 替代 StdOutImpl 逐条打印 SQL：每条语句按 MappedStatement ID 计时，
+ * 超过阈值的记 WARN，其余按采样率记 DEBUG。
+ * 游标查询只统计打开游标的耗时，逐行读取的时间不计入。
+ */
+@Slf4j
+@Component
+@Intercepts({
+        @Signature(type = Executor.class, method = "update",
+                args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class,
+                        CacheKey.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "queryCursor",
+                args = {MappedStatement.class, Object.class, RowBounds.class})
+})
+public class SlowQueryInterceptor implements Interceptor {
+    private final MeterRegistry meterRegistry;
+    private final long thresholdNanos;
+    private final double sampleRate;
+    // 语句数量有限（等于 Mapper 方法数），计时器按 ID 缓存
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public SlowQueryInterceptor(MeterRegistry meterRegistry,
+                                @Value("${mybatis.slow-query.threshold-ms:200}") long thresholdMs,
+                                @Value("${mybatis.slow-query.sample-rate:0}") double sampleRate) {
+        this.meterRegistry = meterRegistry;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        long start = System.nanoTime();
+        try {
+            return invocation.proceed();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            Object[] args = invocation.getArgs();
+            MappedStatement statement = (MappedStatement) args[0];
+            timers.computeIfAbsent(statement.getId(), this::timer).record(elapsed, TimeUnit.NANOSECONDS);
+            if (elapsed >= thresholdNanos) {
+                log.warn("慢 SQL，耗时: {}ms, 语句: {}, SQL: {}", TimeUnit.NANOSECONDS.toMillis(elapsed),
+                        statement.getId(), sql(statement, args));
+            } else if (sampleRate > 0 && log.isDebugEnabled()
+                    && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+                log.debug("SQL 采样，耗时: {}μs, 语句: {}, SQL: {}", TimeUnit.NANOSECONDS.toMicros(elapsed),
+                        statement.getId(), sql(statement, args));
+            }
+        }
+    }
+
+    private Timer timer(String statementId) {
+        return Timer.builder("mybatis.statement")
+                .description("MyBatis 语句执行耗时")
+                .tag("statement", statementId)
+                .register(meterRegistry);
+    }
+
+    // 只记录带占位符的 SQL，不打印参数值
+    private static String sql(MappedStatement statement, Object[] args) {
+        BoundSql boundSql = args.length == 6 ? (BoundSql) args[5] : statement.getBoundSql(args[1]);
+        return boundSql.getSql().replaceAll("\\s+", " ").trim();
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.demo.money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 金额，以分为单位保存在 long 里（对应数据库 DECIMAL(?, 2)）。
+ * 下单时单价、小计、总额都用整数运算，只在写入实体时转换一次 BigDecimal；溢出抛 ArithmeticException，不会回绕。
+ */
+public record Money(long cents) implements Comparable<Money> {
+    public static final int SCALE = 2;
+    public static final Money ZERO = new Money(0);
+
+    public static Money ofCents(long cents) {
+        return new Money(cents);
+    }
+
+    // 小数位超过两位时抛 ArithmeticException，不做舍入
+    public static Money of(BigDecimal amount) {
+        return new Money(amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact());
+    }
+
+    public Money plus(Money other) {
+        return new Money(Math.addExact(cents, other.cents));
+    }
+
+    public Money times(int quantity) {
+        return new Money(Math.multiplyExact(cents, quantity));
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.demo.replica;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+
+// 一个连接池的配置（分片主库、从库共用）
+@Data
+public class DataSourcePool {
+    private String url;
+    private String username;
+    private String password;
+    private String driverClassName = "com.mysql.cj.jdbc.Driver";
+    private int maximumPoolSize = 2;
+    private long connectionTimeout = 500;
+
+    // 连接池指标（hikaricp.connections.acquire、pending 等）按 pool 标签区分；
+    // 这些连接池不是 Spring 管理的 DataSource，Spring Boot 不会自动绑定指标
+    public HikariDataSource create(String poolName, MeterRegistry meterRegistry) {
+        return create(poolName, meterRegistry, null);
+    }
+
+    // connectionInitSql 在每个新建的物理连接上执行一次
+    public HikariDataSource create(String poolName, MeterRegistry meterRegistry, String connectionInitSql) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(poolName);
+        config.setJdbcUrl(url);
+        config.setUsername(username);
+        config.setPassword(password);
+        config.setDriverClassName(driverClassName);
+        config.setMaximumPoolSize(maximumPoolSize);
+        config.setConnectionTimeout(connectionTimeout);
+        config.setMetricRegistry(meterRegistry);
+        config.setConnectionInitSql(connectionInitSql);
+        return new HikariDataSource(config);
+    }
+}
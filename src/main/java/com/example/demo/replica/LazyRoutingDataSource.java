@@ -0,0 +1,28 @@
+package com.example.demo.replica;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+/**
+ * 执行第一条语句时才向下层取真实连接，此时事务的只读标记已经设置好，下层的路由数据源才能据此选择主从。
+ * 关闭时一并关闭下层连接池。
+ */
+public class LazyRoutingDataSource extends LazyConnectionDataSourceProxy implements AutoCloseable {
+
+    public LazyRoutingDataSource(DataSource target) {
+        // 显式给出默认值（MySQL 默认），启动时不必为探测默认值去取连接
+        setDefaultAutoCommit(true);
+        setDefaultTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        setTargetDataSource(target);
+        afterPropertiesSet();
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (getTargetDataSource() instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+}
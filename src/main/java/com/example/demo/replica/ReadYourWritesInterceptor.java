@@ -0,0 +1,65 @@
+package com.example.demo.replica;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.time.Duration;
+
+/**
+ * 跨请求的读己之写：写事务提交后在响应里写入 Cookie（主库粘滞截止时间），
+ * 同一客户端之后的请求在截止时间前读主库，不会读到复制延迟内的旧数据。
+ * <p>
+ * Cookie 由客户端回传、可被篡改，截止时间最多按当前时间加 sticky-window 生效，伪造的远期值不能让读请求一直压在主库上。
+ */
+public class ReadYourWritesInterceptor implements HandlerInterceptor {
+    static final String COOKIE = "rw_primary_until";
+
+    private final long stickyWindowMs;
+
+    public ReadYourWritesInterceptor(Duration stickyWindow) {
+        this.stickyWindowMs = stickyWindow.toMillis();
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (COOKIE.equals(cookie.getName())) {
+                    try {
+                        long until = Long.parseLong(cookie.getValue());
+                        ReplicaContext.stickToPrimaryUntil(Math.min(until, System.currentTimeMillis() + stickyWindowMs));
+                    } catch (NumberFormatException ignored) {
+                        // 非法值按没有 Cookie 处理
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        ReplicaContext.clear();
+    }
+
+    // 在当前请求的响应上写入截止时间；不在请求线程上（异步消费者等）时不处理
+    static void propagate(long until) {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return;
+        }
+        HttpServletResponse response = attributes.getResponse();
+        if (response == null || response.isCommitted()) {
+            return;
+        }
+        Cookie cookie = new Cookie(COOKIE, Long.toString(until));
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge((int) Math.max(1, (until - System.currentTimeMillis() + 999) / 1000));
+        response.addCookie(cookie);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.demo.replica;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Supplier;
+
+/**
+ * 当前线程的读写路由意图，由 {@link ReplicaRoutingDataSource} 在真正取连接时读取。
+ * <p>
+ * 只读事务（@Transactional(readOnly = true)）和 {@link #read} 标记的事务外查询可以走从库；
+ * 读写事务内的查询始终走主库。本线程或本次请求刚提交过写事务时，在粘滞窗口内也走主库（读己之写）。
+ */
+public final class ReplicaContext {
+    private static final ThreadLocal<Boolean> READ = new ThreadLocal<>();
+    // 在该时间点（毫秒）之前都走主库
+    private static final ThreadLocal<Long> PRIMARY_UNTIL = new ThreadLocal<>();
+
+    private ReplicaContext() {
+    }
+
+    // 标记一段事务外的查询可以读从库，可以嵌套
+    public static <T> T read(Supplier<T> action) {
+        Boolean previous = READ.get();
+        READ.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                READ.remove();
+            } else {
+                READ.set(previous);
+            }
+        }
+    }
+
+    public static boolean isReadOnly() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        }
+        return READ.get() != null;
+    }
+
+    public static void stickToPrimaryUntil(long epochMillis) {
+        Long current = PRIMARY_UNTIL.get();
+        if (current == null || current < epochMillis) {
+            PRIMARY_UNTIL.set(epochMillis);
+        }
+    }
+
+    public static boolean isStickToPrimary(long now) {
+        Long until = PRIMARY_UNTIL.get();
+        return until != null && until > now;
+    }
+
+    // 请求结束时清理，线程池线程不带到下一个请求
+    public static void clear() {
+        PRIMARY_UNTIL.remove();
+    }
+}
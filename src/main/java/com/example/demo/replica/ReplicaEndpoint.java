@@ -0,0 +1,22 @@
+package com.example.demo.replica;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// GET /actuator/replicas 查看主从各连接池的连接数、路由次数、回落次数和从库复制延迟
+@Component
+@Endpoint(id = "replicas")
+@RequiredArgsConstructor
+public class ReplicaEndpoint {
+
+    private final ReplicaLagMonitor replicaLagMonitor;
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        return replicaLagMonitor.stats();
+    }
+}
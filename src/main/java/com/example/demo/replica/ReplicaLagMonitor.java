@@ -0,0 +1,137 @@
+package com.example.demo.replica;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 从库复制延迟探测：定期在每个从库上执行 SHOW REPLICA STATUS（旧版本 MySQL 为 SHOW SLAVE STATUS），
+ * 延迟超过 max-lag、复制线程停止、探测失败或探测结果过期的从库不参与路由，读请求回落到主库。
+ */
+@Component
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private final Map<String, DataSource> replicas = new ConcurrentHashMap<>();
+    private final Map<String, ReplicaState> states = new ConcurrentHashMap<>();
+    private final List<ReplicaRoutingDataSource> routers = new CopyOnWriteArrayList<>();
+    private final long maxLagSeconds;
+    // 超过该时长没有成功探测视为不健康
+    private final long staleAfterMs;
+
+    public ReplicaLagMonitor(@Value("${datasource.replica.max-lag:2s}") Duration maxLag,
+                             @Value("${datasource.replica.check-interval-ms:1000}") long checkIntervalMs) {
+        this.maxLagSeconds = maxLag.toSeconds();
+        this.staleAfterMs = checkIntervalMs * 3;
+    }
+
+    public void register(ReplicaRoutingDataSource router) {
+        routers.add(router);
+        replicas.putAll(router.getReplicas());
+    }
+
+    public List<ReplicaRoutingDataSource> getRouters() {
+        return routers;
+    }
+
+    public boolean isHealthy(String replica) {
+        ReplicaState state = states.get(replica);
+        return state != null && state.error == null && state.lagSeconds != null
+                && state.lagSeconds <= maxLagSeconds
+                && System.currentTimeMillis() - state.checkedAt <= staleAfterMs;
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.replica.check-interval-ms:1000}")
+    public void check() {
+        replicas.forEach((name, dataSource) -> {
+            try {
+                record(name, probe(dataSource), null);
+            } catch (SQLException | RuntimeException e) {
+                record(name, null, e.getMessage());
+            }
+        });
+    }
+
+    void record(String replica, Long lagSeconds, String error) {
+        ReplicaState previous = states.get(replica);
+        ReplicaState current = new ReplicaState(lagSeconds, error, System.currentTimeMillis());
+        states.put(replica, current);
+        boolean wasHealthy = previous != null && previous.healthy(maxLagSeconds);
+        if (wasHealthy != current.healthy(maxLagSeconds)) {
+            if (wasHealthy) {
+                log.warn("从库 {} 暂停使用，复制延迟: {}s, 错误: {}", replica, lagSeconds, error);
+            } else {
+                log.info("从库 {} 恢复使用，复制延迟: {}s", replica, lagSeconds);
+            }
+        }
+    }
+
+    // 返回复制延迟秒数；复制线程停止时为 null；不是从库或复制未开启（没有复制状态）时抛出，该从库不参与路由
+    private static Long probe(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            ResultSet status;
+            String column;
+            try {
+                status = statement.executeQuery("SHOW REPLICA STATUS");
+                column = "Seconds_Behind_Source";
+            } catch (SQLException e) {
+                // MySQL 8.0.22 之前
+                status = statement.executeQuery("SHOW SLAVE STATUS");
+                column = "Seconds_Behind_Master";
+            }
+            try (ResultSet rs = status) {
+                if (!rs.next()) {
+                    throw new SQLException("没有复制状态，不是从库或复制未开启");
+                }
+                long lag = rs.getLong(column);
+                return rs.wasNull() ? null : lag;
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxLagSeconds", maxLagSeconds);
+        List<Map<String, Object>> pools = new ArrayList<>();
+        for (ReplicaRoutingDataSource router : routers) {
+            pools.addAll(router.stats());
+        }
+        stats.put("pools", pools);
+        return stats;
+    }
+
+    Map<String, Object> replicaStats(String replica) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        ReplicaState state = states.get(replica);
+        stats.put("healthy", isHealthy(replica));
+        if (state != null) {
+            stats.put("lagSeconds", state.lagSeconds);
+            stats.put("lastCheckMsAgo", System.currentTimeMillis() - state.checkedAt);
+            if (state.error != null) {
+                stats.put("error", state.error);
+            }
+        }
+        return stats;
+    }
+
+    private record ReplicaState(Long lagSeconds, String error, long checkedAt) {
+        boolean healthy(long maxLagSeconds) {
+            return error == null && lagSeconds != null && lagSeconds <= maxLagSeconds;
+        }
+    }
+}
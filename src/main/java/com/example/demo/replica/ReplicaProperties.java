@@ -0,0 +1,23 @@
+package com.example.demo.replica;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 读写分离配置。未分片时从库在 replicas 中配置，主库为 spring.datasource；
+ * 分片时每个分片的从库在 sharding.shards[i].replicas 中配置。
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "datasource.replica")
+public class ReplicaProperties {
+    private boolean enabled;
+    // 写事务提交后继续读主库的时长，应大于 max-lag
+    private Duration stickyWindow = Duration.ofSeconds(5);
+    private List<DataSourcePool> replicas = new ArrayList<>();
+}
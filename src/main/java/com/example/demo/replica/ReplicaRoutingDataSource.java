@@ -0,0 +1,175 @@
+package com.example.demo.replica;
+
+import com.example.demo.concurrency.ConnectionLimiter;
+import com.example.demo.concurrency.ConnectionLimitingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 读写分离：一个主库和若干从库，只读查询轮询分配到健康的从库，没有健康从库时回落到主库。
+ * <p>
+ * 事务在开始时就取连接，而只读标记在取连接之后才设置，所以外层必须包一层
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}，执行第一条语句时才路由。
+ * 读写事务提交后，本线程（和通过 Cookie 关联的后续请求）在 sticky-window 内继续读主库。
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+    private static final String PRIMARY = "primary";
+    // 同一个事务只登记一次写提交回调
+    private static final Object WRITE_MARK = new Object();
+
+    private final String name;
+    private final DataSource primary;
+    private final Map<String, DataSource> replicas;
+    private final List<String> replicaNames;
+    private final ReplicaLagMonitor monitor;
+    private final long stickyWindowMs;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Map<String, LongAdder> routed = new HashMap<>();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder sticky = new LongAdder();
+
+    public ReplicaRoutingDataSource(String name, DataSource primary, Map<String, DataSource> replicas,
+                                    ReplicaLagMonitor monitor, Duration stickyWindow) {
+        this.name = name;
+        this.primary = primary;
+        this.replicas = replicas;
+        this.replicaNames = new ArrayList<>(replicas.keySet());
+        this.monitor = monitor;
+        this.stickyWindowMs = stickyWindow.toMillis();
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        targets.keySet().forEach(key -> routed.put((String) key, new LongAdder()));
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+        monitor.register(this);
+    }
+
+    // 为每个从库配置建一个连接池（各自一个并发闸门），连接池名为 name-replica-i
+    public static ReplicaRoutingDataSource create(String name, DataSource primary, List<DataSourcePool> replicaPools,
+                                                  ReplicaLagMonitor monitor, Duration stickyWindow,
+                                                  ConnectionLimiter connectionLimiter, MeterRegistry meterRegistry) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (DataSourcePool pool : replicaPools) {
+            String replica = name + "-replica-" + replicas.size();
+            replicas.put(replica, connectionLimiter.wrap(replica, pool.create(replica, meterRegistry),
+                    pool.getMaximumPoolSize()));
+        }
+        return new ReplicaRoutingDataSource(name, primary, replicas, monitor, stickyWindow);
+    }
+
+    public Map<String, DataSource> getReplicas() {
+        return replicas;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String target = route();
+        routed.get(target).increment();
+        return target;
+    }
+
+    private String route() {
+        if (!ReplicaContext.isReadOnly()) {
+            markWriteTransaction();
+            return PRIMARY;
+        }
+        if (ReplicaContext.isStickToPrimary(System.currentTimeMillis())) {
+            sticky.increment();
+            return PRIMARY;
+        }
+        int size = replicaNames.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            String replica = replicaNames.get((start + i) % size);
+            if (monitor.isHealthy(replica)) {
+                return replica;
+            }
+        }
+        fallbacks.increment();
+        return PRIMARY;
+    }
+
+    // 读写事务提交后开启读己之写窗口；事务外的单条写语句不做标记
+    private void markWriteTransaction() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(WRITE_MARK)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(WRITE_MARK, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                long until = System.currentTimeMillis() + stickyWindowMs;
+                ReplicaContext.stickToPrimaryUntil(until);
+                ReadYourWritesInterceptor.propagate(until);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(WRITE_MARK);
+            }
+        });
+    }
+
+    // 每个连接池一条：主库和各从库的连接使用情况、路由次数、从库延迟
+    public List<Map<String, Object>> stats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        Map<String, Object> primaryStats = poolStats(PRIMARY, primary);
+        primaryStats.put("fallbacks", fallbacks.sum());
+        primaryStats.put("sticky", sticky.sum());
+        stats.add(primaryStats);
+        for (String replica : replicaNames) {
+            Map<String, Object> replicaStats = poolStats(replica, replicas.get(replica));
+            replicaStats.putAll(monitor.replicaStats(replica));
+            stats.add(replicaStats);
+        }
+        return stats;
+    }
+
+    private Map<String, Object> poolStats(String key, DataSource dataSource) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("router", name);
+        stats.put("pool", key);
+        stats.put("routed", routed.get(key).sum());
+        if (dataSource instanceof ConnectionLimitingDataSource gate) {
+            stats.put("gateWaiting", gate.getQueueLength());
+            dataSource = gate.getTargetDataSource();
+        }
+        if (dataSource instanceof HikariDataSource hikari && hikari.getHikariPoolMXBean() != null) {
+            HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+            stats.put("active", pool.getActiveConnections());
+            stats.put("idle", pool.getIdleConnections());
+            stats.put("waiting", pool.getThreadsAwaitingConnection());
+            stats.put("total", pool.getTotalConnections());
+        }
+        return stats;
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (DataSource replica : replicas.values()) {
+            if (replica instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+        if (primary instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+}
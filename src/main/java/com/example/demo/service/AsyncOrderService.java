@@ -0,0 +1,18 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.AsyncOrderStatus;
+import com.example.demo.dto.PurchaseRequest;
+
+import java.util.Optional;
+
+/**
+ * 异步下单：请求线程只在 Redis 预扣库存并把下单命令写入 Redis Stream，立即返回订单凭证，
+ * 由后台消费者批量落库。客户端通过凭证查询下单状态。
+ */
+public interface AsyncOrderService {
+
+    // 返回订单凭证（即订单号）
+    AsyncOrderStatus submit(PurchaseRequest purchaseRequest);
+
+    Optional<AsyncOrderStatus> getStatus(String token);
+}
@@ -0,0 +1,44 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.AsyncOrderStatus;
+import com.example.demo.dto.PurchaseRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AsyncOrderServiceImpl implements AsyncOrderService {
+
+    private final StockReservationService stockReservationService;
+    private final OrderCommandQueue orderCommandQueue;
+    private final OrderNumberGenerator orderNumberGenerator;
+
+    @Override
+    public AsyncOrderStatus submit(PurchaseRequest purchaseRequest) {
+        String token = orderNumberGenerator.next(purchaseRequest.getUserId());
+
+        // 预扣库存，库存不足直接拒绝
+        stockReservationService.reserve(token, purchaseRequest.quantitiesByProduct());
+
+        AsyncOrderStatus status = new AsyncOrderStatus(token, AsyncOrderStatus.ACCEPTED, null, null);
+        try {
+            // 先写状态再入队，避免覆盖消费者写入的结果
+            orderCommandQueue.putStatus(status);
+            orderCommandQueue.publish(token, purchaseRequest);
+        } catch (RuntimeException e) {
+            stockReservationService.release(token);
+            throw e;
+        }
+        log.debug("异步下单已受理，凭证: {}", token);
+        return status;
+    }
+
+    @Override
+    public Optional<AsyncOrderStatus> getStatus(String token) {
+        return orderCommandQueue.getStatus(token);
+    }
+}
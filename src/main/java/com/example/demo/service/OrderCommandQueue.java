@@ -0,0 +1,126 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.AsyncOrderStatus;
+import com.example.demo.dto.PurchaseRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.AutoClaimResult;
+import org.redisson.api.RBucket;
+import org.redisson.api.RStream;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.StreamMessageId;
+import org.redisson.api.stream.StreamAddArgs;
+import org.redisson.api.stream.StreamCreateGroupArgs;
+import org.redisson.api.stream.StreamReadGroupArgs;
+import org.redisson.client.RedisException;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 下单命令队列（Redis Stream，消费组持久化未确认消息），以及按凭证保存的异步下单状态。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OrderCommandQueue {
+    private static final String STREAM_KEY = "order:commands";
+    private static final String GROUP = "order-writers";
+    private static final String FIELD_TOKEN = "token";
+    private static final String FIELD_PAYLOAD = "payload";
+    private static final String STATUS_KEY_PREFIX = "order:status:";
+    private static final Duration STATUS_TTL = Duration.ofDays(1);
+
+    private final RedissonClient redissonClient;
+    private final ObjectMapper objectMapper;
+
+    public record OrderCommand(StreamMessageId id, String token, PurchaseRequest request) {
+    }
+
+    public void publish(String token, PurchaseRequest request) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(request);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("下单命令序列化失败", e);
+        }
+        stream().add(StreamAddArgs.entries(Map.of(FIELD_TOKEN, token, FIELD_PAYLOAD, payload)));
+    }
+
+    // 创建消费组（已存在则忽略）
+    public void ensureGroup() {
+        try {
+            stream().createGroup(StreamCreateGroupArgs.name(GROUP).id(StreamMessageId.ALL).makeStream());
+        } catch (RedisException e) {
+            if (e.getMessage() == null || !e.getMessage().contains("BUSYGROUP")) {
+                throw e;
+            }
+        }
+    }
+
+    // 阻塞读取新消息，最多等待 timeout
+    public List<OrderCommand> read(String consumer, int count, Duration timeout) {
+        Map<StreamMessageId, Map<String, String>> messages = stream().readGroup(GROUP, consumer,
+                StreamReadGroupArgs.neverDelivered().count(count).timeout(timeout));
+        return toCommands(messages);
+    }
+
+    // 接管空闲超过 idle 仍未确认的消息（消费者崩溃后遗留）
+    public List<OrderCommand> claimStale(String consumer, Duration idle, int count) {
+        AutoClaimResult<String, String> result = stream().autoClaim(GROUP, consumer,
+                idle.toMillis(), TimeUnit.MILLISECONDS, StreamMessageId.ALL, count);
+        return toCommands(result.getMessages());
+    }
+
+    // 确认并删除已处理的消息
+    public void ack(List<OrderCommand> commands) {
+        if (commands.isEmpty()) {
+            return;
+        }
+        StreamMessageId[] ids = commands.stream().map(OrderCommand::id).toArray(StreamMessageId[]::new);
+        stream().ack(GROUP, ids);
+        stream().remove(ids);
+    }
+
+    public void putStatus(AsyncOrderStatus status) {
+        statusBucket(status.getToken()).set(status, STATUS_TTL);
+    }
+
+    public Optional<AsyncOrderStatus> getStatus(String token) {
+        return Optional.ofNullable(statusBucket(token).get());
+    }
+
+    private List<OrderCommand> toCommands(Map<StreamMessageId, Map<String, String>> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return List.of();
+        }
+        List<OrderCommand> commands = new ArrayList<>(messages.size());
+        for (Map.Entry<StreamMessageId, Map<String, String>> message : messages.entrySet()) {
+            Map<String, String> fields = message.getValue();
+            PurchaseRequest request = null;
+            try {
+                request = objectMapper.readValue(fields.get(FIELD_PAYLOAD), PurchaseRequest.class);
+            } catch (Exception e) {
+                log.error("无法解析的下单命令，ID: {}, 原因: {}", message.getKey(), e.getMessage());
+            }
+            commands.add(new OrderCommand(message.getKey(), fields.get(FIELD_TOKEN), request));
+        }
+        return commands;
+    }
+
+    private RStream<String, String> stream() {
+        return redissonClient.getStream(STREAM_KEY, StringCodec.INSTANCE);
+    }
+
+    private RBucket<AsyncOrderStatus> statusBucket(String token) {
+        return redissonClient.getBucket(STATUS_KEY_PREFIX + token);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.OrderFetch;
+import com.example.demo.entity.Order;
+import com.example.demo.entity.OrderItem;
+import com.example.demo.entity.Product;
+import com.example.demo.mapper.OrderItemMapper;
+import com.example.demo.shard.ShardContext;
+import com.example.demo.shard.ShardRouter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 订单对象图组装，避免 N+1 查询：一批订单的订单项用一条 IN 查询取出，
+ * 商品名称和描述从商品缓存批量读取（未命中的一次 IN 查询），不再逐单 JOIN products，然后在内存中拼装。
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderGraphLoader {
+    // IN 列表过长时分批查询
+    private static final int BATCH_SIZE = 500;
+
+    private final OrderItemMapper orderItemMapper;
+    private final ProductService productService;
+
+    public void load(Collection<Order> orders, OrderFetch fetch) {
+        if (fetch == OrderFetch.NONE || orders.isEmpty()) {
+            return;
+        }
+        Map<Long, List<OrderItem>> itemsByOrder = new HashMap<>();
+        List<Long> orderIds = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            itemsByOrder.put(order.getId(), new ArrayList<>());
+            orderIds.add(order.getId());
+        }
+        List<OrderItem> items = new ArrayList<>();
+        for (int from = 0; from < orderIds.size(); from += BATCH_SIZE) {
+            items.addAll(orderItemMapper.findSimpleByOrderIds(
+                    orderIds.subList(from, Math.min(from + BATCH_SIZE, orderIds.size()))));
+        }
+        for (OrderItem item : items) {
+            itemsByOrder.get(item.getOrderId()).add(item);
+        }
+        for (Order order : orders) {
+            order.setOrderItems(itemsByOrder.get(order.getId()));
+        }
+
+        if (fetch == OrderFetch.PRODUCTS && !items.isEmpty()) {
+            // 订单所在分片上没有商品表，商品走 0 号分片
+            List<Long> productIds = items.stream().map(OrderItem::getProductId).toList();
+            Map<Long, Product> products = ShardContext.call(ShardRouter.PRODUCT_SHARD,
+                    () -> productService.getProductsByIds(productIds));
+            for (OrderItem item : items) {
+                Product product = products.get(item.getProductId());
+                if (product != null) {
+                    // 只带展示用的字段，库存等易变字段不随订单返回
+                    item.setProduct(Product.builder()
+                            .id(product.getId())
+                            .name(product.getName())
+                            .description(product.getDescription())
+                            .build());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.demo.service;
+
+import com.example.demo.id.Base32;
+import com.example.demo.id.IdGenerator;
+import com.example.demo.shard.ShardRouter;
+import org.springframework.stereotype.Component;
+
+/**
+ * 订单号生成，同步下单和异步下单共用。
+ * 格式为 ORD + 2 位 Base32 分片号 + 13 位 Base32 编码的 Snowflake ID，同一分片内按时间递增，
+ * order_number 唯一索引顺序插入；按订单号查询时直接从订单号取出分片。
+ */
+@Component
+public class OrderNumberGenerator {
+    private static final String PREFIX = "ORD";
+    private static final int SHARD_LENGTH = 2;
+    private static final int LENGTH = PREFIX.length() + SHARD_LENGTH + Base32.LENGTH;
+
+    private final IdGenerator idGenerator;
+    private final ShardRouter shardRouter;
+    // 各分片的订单号前缀
+    private final String[] prefixes;
+
+    public OrderNumberGenerator(IdGenerator idGenerator, ShardRouter shardRouter) {
+        this.idGenerator = idGenerator;
+        this.shardRouter = shardRouter;
+        this.prefixes = new String[shardRouter.shardCount()];
+        for (int shard = 0; shard < prefixes.length; shard++) {
+            prefixes[shard] = PREFIX + Base32.encode(shard, SHARD_LENGTH);
+        }
+    }
+
+    // 订单落在下单用户所在的分片
+    public String next(Long userId) {
+        return Base32.encode(prefixes[shardRouter.shardOfUser(userId)], idGenerator.nextId());
+    }
+
+    // 分片前的旧订单号（不含分片号）都在 0 号分片
+    public static int shardOf(String orderNumber) {
+        if (orderNumber.length() != LENGTH || !orderNumber.startsWith(PREFIX)) {
+            return ShardRouter.PRODUCT_SHARD;
+        }
+        return (int) Base32.decode(orderNumber, PREFIX.length(), PREFIX.length() + SHARD_LENGTH);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Product;
+import com.example.demo.money.Money;
+import com.example.demo.shard.ShardContext;
+import com.example.demo.shard.ShardRouter;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 下单时的价格快照：购物车内所有商品的价格从商品缓存批量读取，未命中的一次 IN 查询，不再逐个商品查库。
+ * 商品表在 0 号分片，当前事务在其他分片上时（异步下单消费者），查询放到商品分片的独立只读事务里。
+ */
+@Component
+public class OrderPricing {
+
+    private final ProductService productService;
+    private final TransactionTemplate productShardRead;
+
+    public OrderPricing(ProductService productService, PlatformTransactionManager transactionManager) {
+        this.productService = productService;
+        this.productShardRead = new TransactionTemplate(transactionManager);
+        this.productShardRead.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.productShardRead.setReadOnly(true);
+    }
+
+    /**
+     * @return 商品ID到当前单价的映射
+     * @throws IllegalArgumentException 商品不存在
+     */
+    public Map<Long, Money> resolve(Collection<Long> productIds) {
+        Integer current = ShardContext.current();
+        boolean otherShard = TransactionSynchronizationManager.isActualTransactionActive()
+                && current != null && current != ShardRouter.PRODUCT_SHARD;
+        Map<Long, Product> products = ShardContext.call(ShardRouter.PRODUCT_SHARD, () -> otherShard
+                ? productShardRead.execute(status -> productService.getProductsByIds(productIds))
+                : productService.getProductsByIds(productIds));
+        Map<Long, Money> prices = new HashMap<>(productIds.size() * 2);
+        for (Long productId : productIds) {
+            Product product = products.get(productId);
+            if (product == null || product.getPrice() == null) {
+                throw new IllegalArgumentException("商品不存在: " + productId);
+            }
+            prices.put(productId, Money.of(product.getPrice()));
+        }
+        return prices;
+    }
+}
@@ -1,18 +1,62 @@
 package com.example.demo.service;
 
 
+import com.example.demo.dto.OrderFetch;
+import com.example.demo.dto.OrderPage;
 import com.example.demo.dto.PurchaseRequest;
 import com.example.demo.entity.Order;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface OrderService {
     Order createOrder(PurchaseRequest purchaseRequest);
 
-    Optional<Order> getOrderById(Long orderId);
+    // 使用调用方预先分配的订单号下单（幂等下单），订单号重复时因唯一键失败
+    Order createOrder(String orderNumber, PurchaseRequest purchaseRequest);
 
-    List<Order> getOrdersByUserId(Long userId);
+    // 库存已在 Redis 预扣（异步下单），只负责落库；同一订单号重复调用会因唯一键失败
+    Order createReservedOrder(String orderNumber, PurchaseRequest purchaseRequest);
+
+    Optional<Order> getOrderByNumber(String orderNumber);
+
+    // 按订单号读主库，并按 fetch 加载订单项；用于刚下单后回读，不能读到复制延迟内的从库
+    Optional<Order> getOrderByNumber(String orderNumber, OrderFetch fetch);
+
+    Optional<Order> getOrderById(Long orderId, OrderFetch fetch);
+
+    /**
+     * 用户订单分页（按创建时间倒序）
+     *
+     * @param cursor 上一页返回的 nextCursor，第一页传 null
+     * @param size   每页条数，超过上限按上限处理
+     * @param fetch  订单项的加载范围，整页批量加载
+     * @throws IllegalArgumentException 游标格式错误
+     */
+    OrderPage getOrdersByUserId(Long userId, String cursor, int size, OrderFetch fetch);
+
+    // 流式读取用户全部订单（不含订单项），在只读事务内逐条回调，内存占用与订单数量无关
+    void exportOrdersByUserId(Long userId, Consumer<Order> consumer);
+
+    // 各分片最近创建的某状态订单（不含订单项），合并后按创建时间倒序取前 limit 条
+    List<Order> getRecentOrdersByStatus(String status, int limit);
+
+    // 待支付订单标记为已支付（超时取消任务到期后会跳过已支付订单）；订单不是待支付状态时返回 false
+    boolean payOrder(Long orderId);
 
     boolean cancelOrder(Long orderId);
+
+    /**
+     * 批量取消待支付订单：锁住仍为 PENDING 的订单，按商品合并后一次加回库存，一条条件更新修改状态
+     *
+     * @return 实际取消的订单数，已支付或已取消的订单被跳过
+     * @throws IllegalArgumentException 订单数超过单批上限
+     */
+    int cancelOrders(Collection<Long> orderIds);
+
+    // 取消创建时间早于 createdBefore 的待支付订单，最多 limit 个，返回实际取消数
+    int cancelExpiredOrders(LocalDateTime createdBefore, int limit);
 }
@@ -1,128 +1,408 @@
 package com.example.demo.service;
 
 
+import com.example.demo.dto.OrderFetch;
+import com.example.demo.dto.OrderPage;
 import com.example.demo.dto.PurchaseRequest;
 import com.example.demo.entity.Order;
 import com.example.demo.entity.OrderItem;
 import com.example.demo.exception.InsufficientStockException;
 import com.example.demo.mapper.OrderItemMapper;
 import com.example.demo.mapper.OrderMapper;
+import com.example.demo.metrics.ShopMetrics;
+import com.example.demo.money.Money;
+import com.example.demo.replica.ReplicaContext;
+import com.example.demo.shard.ShardContext;
+import com.example.demo.shard.ShardRouter;
+import com.example.demo.shard.ShardScatterGather;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.BigDecimal;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+/**
+ * 订单服务。订单和订单项按用户分片（见 {@link ShardRouter}），事务在设置好分片之后才开启，
+ * 因此这里用 TransactionTemplate 而不是 @Transactional。订单不在商品分片上时，库存在商品分片的独立事务里扣减，
+ * 扣减先于订单提交：扣减和扣减记录一起提交（{@link StockDeductionLedger}），订单事务回滚后按记录加回；
+ * 两次提交之间节点崩溃留下的记录由修复任务按订单是否落库加回或删除，期间库存只会少算，不会超卖。
+ */
 @Service
+@Slf4j
 public class OrderServiceImpl implements OrderService {
 
     private final OrderMapper orderMapper;
     private final OrderItemMapper orderItemMapper;
     private final ProductService productService;
+    private final StockReservationService stockReservationService;
+    private final OrderNumberGenerator orderNumberGenerator;
+    private final OrderGraphLoader orderGraphLoader;
+    private final OrderTimeoutQueue orderTimeoutQueue;
+    private final OrderPricing orderPricing;
+    private final ShardRouter shardRouter;
+    private final ShardScatterGather shardScatterGather;
+    private final StockDeductionLedger stockDeductionLedger;
+    private final ShopMetrics shopMetrics;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    // 商品分片上的独立事务，挂起当前分片的订单事务
+    private final TransactionTemplate productShardTransaction;
+
+    @Value("${order.history.max-page-size:100}")
+    private int maxPageSize;
+
+    @Value("${order.cancel.max-batch-size:500}")
+    private int maxCancelBatchSize;
 
     public OrderServiceImpl(OrderMapper orderMapper, OrderItemMapper orderItemMapper,
-                            ProductService productService) {
+                            ProductService productService, StockReservationService stockReservationService,
+                            OrderNumberGenerator orderNumberGenerator, OrderGraphLoader orderGraphLoader,
+                            OrderTimeoutQueue orderTimeoutQueue, OrderPricing orderPricing, ShardRouter shardRouter,
+                            ShardScatterGather shardScatterGather, StockDeductionLedger stockDeductionLedger,
+                            PlatformTransactionManager transactionManager, ShopMetrics shopMetrics) {
         this.orderMapper = orderMapper;
         this.orderItemMapper = orderItemMapper;
         this.productService = productService;
+        this.stockReservationService = stockReservationService;
+        this.orderNumberGenerator = orderNumberGenerator;
+        this.orderGraphLoader = orderGraphLoader;
+        this.orderTimeoutQueue = orderTimeoutQueue;
+        this.orderPricing = orderPricing;
+        this.shardRouter = shardRouter;
+        this.shardScatterGather = shardScatterGather;
+        this.stockDeductionLedger = stockDeductionLedger;
+        this.shopMetrics = shopMetrics;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.productShardTransaction = new TransactionTemplate(transactionManager);
+        this.productShardTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
     }
 
     @Override
-    @Transactional
     public Order createOrder(PurchaseRequest purchaseRequest) {
-        // 生成订单号
-        String orderNumber = generateOrderNumber();
+        return createOrder(orderNumberGenerator.next(purchaseRequest.getUserId()), purchaseRequest);
+    }
+
+    @Override
+    public Order createOrder(String orderNumber, PurchaseRequest purchaseRequest) {
+        return shopMetrics.timeCreateOrder(() -> createOrderTimed(orderNumber, purchaseRequest));
+    }
+
+    private Order createOrderTimed(String orderNumber, PurchaseRequest purchaseRequest) {
+        Map<Long, Integer> quantities = purchaseRequest.quantitiesByProduct();
+        // 价格在事务外一次批量读取（多数命中缓存），不延长持有连接的时间
+        Map<Long, Money> prices = orderPricing.resolve(quantities.keySet());
+        // 先在 Redis 中预扣库存，库存不足直接拒绝，不占用数据库连接
+        stockReservationService.reserve(orderNumber, quantities);
+        try {
+            return inShard(shardRouter.shardOfUser(purchaseRequest.getUserId()), () -> transactionTemplate.execute(status -> {
+                // 事务提交后确认预扣，回滚后归还
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (status == STATUS_COMMITTED) {
+                            stockReservationService.confirm(orderNumber);
+                        } else {
+                            stockReservationService.release(orderNumber);
+                        }
+                    }
+                });
+                return persistOrder(orderNumber, purchaseRequest.getUserId(), quantities, prices);
+            }));
+        } catch (RuntimeException e) {
+            // 事务未能开启时不会触发回调；重复归还没有副作用
+            stockReservationService.release(orderNumber);
+            throw e;
+        }
+    }
+
+    @Override
+    public Order createReservedOrder(String orderNumber, PurchaseRequest purchaseRequest) {
+        // 调用方（异步下单消费者）已按分片分组并开启事务
+        Map<Long, Integer> quantities = purchaseRequest.quantitiesByProduct();
+        return inShard(shardRouter.shardOfUser(purchaseRequest.getUserId()), () -> {
+            Map<Long, Money> prices = orderPricing.resolve(quantities.keySet());
+            return transactionTemplate.execute(status ->
+                    persistOrder(orderNumber, purchaseRequest.getUserId(), quantities, prices));
+        });
+    }
+
+    // 订单落库：批量扣减库存、插入订单、批量插入订单项；prices 为下单时的价格快照
+    private Order persistOrder(String orderNumber, Long userId, Map<Long, Integer> quantities, Map<Long, Money> prices) {
+        // 扣减库存：一条条件更新覆盖购物车内所有商品（Redis 已预扣，这里兜底防止超卖）
+        if (shardRouter.isProductShard(shardRouter.shardOfUser(userId))) {
+            if (!productService.deductStockBatch(quantities)) {
+                shopMetrics.stockRejected(ShopMetrics.STAGE_DATABASE);
+                throw new InsufficientStockException("商品库存扣减失败");
+            }
+        } else {
+            deductOnProductShard(orderNumber, quantities);
+        }
+
+        // 创建订单项：单价、小计按分做整数运算
+        List<OrderItem> orderItems = new ArrayList<>(quantities.size());
+        long totalCents = 0;
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            Integer quantity = entry.getValue();
+            Money price = prices.get(entry.getKey());
+            Money subtotal = price.times(quantity);
+            OrderItem orderItem = new OrderItem();
+            orderItem.setProductId(entry.getKey());
+            orderItem.setQuantity(quantity);
+            orderItem.setPrice(price.toBigDecimal());
+            orderItem.setSubtotal(subtotal.toBigDecimal());
+            totalCents = Math.addExact(totalCents, subtotal.cents());
+            orderItems.add(orderItem);
+        }
 
         Order order = new Order();
         order.setOrderNumber(orderNumber);
-        order.setUserId(purchaseRequest.getUserId());
+        order.setUserId(userId);
         order.setStatus("PENDING");
-        order.setTotalAmount(BigDecimal.ZERO);
+        // 总金额在插入前算好，不再需要单独的更新语句
+        order.setTotalAmount(Money.ofCents(totalCents).toBigDecimal());
 
         // 插入订单
         orderMapper.insert(order);
+        // 主键算不回当前分片时（自增步长未生效、新主键落在分片前的范围内），之后按主键的查询、支付、取消都会找错分片
+        int shard = shardRouter.shardOfUser(userId);
+        if (shardRouter.shardOfOrderId(order.getId()) != shard) {
+            log.error("订单主键 {} 不属于分片 {}，检查该分片 orders 表的自增步长、起始值和 legacy-max-order-id", order.getId(), shard);
+            throw new IllegalStateException("订单主键与分片不匹配: " + order.getId());
+        }
 
-        BigDecimal totalAmount = BigDecimal.ZERO;
+        // 一条多行 INSERT 写入全部订单项
+        for (OrderItem orderItem : orderItems) {
+            orderItem.setOrderId(order.getId());
+        }
+        orderItemMapper.insertBatch(orderItems);
+        order.setOrderItems(orderItems);
 
-        // 处理每个商品
-        for (PurchaseRequest.PurchaseItem item : purchaseRequest.getItems()) {
-            Long productId = item.getProductId();
-            Integer quantity = item.getQuantity();
+        // 提交后开始计时，pending-ttl 内未支付自动取消
+        orderTimeoutQueue.scheduleAfterCommit(order.getId());
+        return order;
+    }
 
-            // 检查库存
-            Integer currentStock = productService.getProductStock(productId);
-            if (currentStock == null || currentStock < quantity) {
-                throw new InsufficientStockException("商品ID: " + productId + " 库存不足");
+    // 订单不在商品分片：库存在商品分片的独立事务里扣减并记账，订单事务提交后删除记录，未提交时按记录加回
+    private void deductOnProductShard(String orderNumber, Map<Long, Integer> quantities) {
+        String deductionId = stockDeductionLedger.deduct(orderNumber, quantities);
+        if (deductionId == null) {
+            shopMetrics.stockRejected(ShopMetrics.STAGE_DATABASE);
+            throw new InsufficientStockException("商品库存扣减失败");
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                // 失败时记录留在表里，由修复任务处理
+                try {
+                    if (status == STATUS_COMMITTED) {
+                        stockDeductionLedger.settle(deductionId);
+                    } else {
+                        stockDeductionLedger.restore(deductionId);
+                    }
+                } catch (RuntimeException e) {
+                    log.error("处理商品分片扣减记录失败，等待修复任务: {}, 原因: {}", deductionId, e.getMessage(), e);
+                }
             }
+        });
+    }
 
-            // 扣减库存
-            if (!productService.deductStock(productId, quantity)) {
-                throw new InsufficientStockException("商品ID: " + productId + " 库存扣减失败");
-            }
+    // 取消跨分片订单后在商品分片加回库存；失败只会少算库存
+    private void restoreOnProductShard(Map<Long, Integer> quantities) {
+        try {
+            ShardContext.run(ShardRouter.PRODUCT_SHARD, () -> productShardTransaction.executeWithoutResult(status ->
+                    productService.increaseStockBatch(quantities)));
+        } catch (RuntimeException e) {
+            log.error("商品分片加回库存失败，需人工核对: {}, 原因: {}", quantities, e.getMessage(), e);
+        }
+    }
 
-            // 创建订单项
-            OrderItem orderItem = new OrderItem();
-            orderItem.setOrderId(order.getId());
-            orderItem.setProductId(productId);
-            orderItem.setQuantity(quantity);
+    @Override
+    public Optional<Order> getOrderById(Long orderId, OrderFetch fetch) {
+        return inShard(shardRouter.shardOfOrderId(orderId), () -> ReplicaContext.read(() -> {
+            Optional<Order> order = orderMapper.findById(orderId);
+            order.ifPresent(o -> orderGraphLoader.load(List.of(o), fetch));
+            return order;
+        }));
+    }
 
-            // 这里应该查询商品价格，简化处理
-            BigDecimal price = BigDecimal.valueOf(100); // 实际应该从数据库获取
-            orderItem.setPrice(price);
+    @Override
+    public Optional<Order> getOrderByNumber(String orderNumber) {
+        return getOrderByNumber(orderNumber, OrderFetch.NONE);
+    }
 
-            BigDecimal subtotal = price.multiply(BigDecimal.valueOf(quantity));
-            orderItem.setSubtotal(subtotal);
-            totalAmount = totalAmount.add(subtotal);
+    @Override
+    public Optional<Order> getOrderByNumber(String orderNumber, OrderFetch fetch) {
+        // 幂等下单、重复投递时用来确认订单是否已落库，必须读主库（订单项也一样）
+        return inShard(OrderNumberGenerator.shardOf(orderNumber), () -> {
+            Optional<Order> order = orderMapper.findByOrderNumber(orderNumber);
+            order.ifPresent(o -> orderGraphLoader.load(List.of(o), fetch));
+            return order;
+        });
+    }
 
-            orderItemMapper.insert(orderItem);
+    @Override
+    public OrderPage getOrdersByUserId(Long userId, String cursor, int size, OrderFetch fetch) {
+        int limit = Math.max(1, Math.min(size, maxPageSize));
+        LocalDateTime afterCreatedTime = null;
+        Long afterId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            // 游标为 "创建时间|订单ID" 的 URL 安全 Base64，对客户端不透明
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+                afterCreatedTime = LocalDateTime.parse(parts[0]);
+                afterId = Long.parseLong(parts[1]);
+            } catch (IllegalArgumentException | DateTimeParseException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("非法的分页游标: " + cursor, e);
+            }
         }
+        LocalDateTime pageAfterCreatedTime = afterCreatedTime;
+        Long pageAfterId = afterId;
+        // 同一用户的订单都在一个分片上
+        return inShard(shardRouter.shardOfUser(userId), () -> ReplicaContext.read(() -> {
+            // 多取一条判断是否还有下一页
+            List<Order> orders = orderMapper.findPageByUserId(userId, pageAfterCreatedTime, pageAfterId, limit + 1);
+            String nextCursor = null;
+            if (orders.size() > limit) {
+                orders = orders.subList(0, limit);
+                Order last = orders.get(limit - 1);
+                nextCursor = encodeCursor(last.getCreatedTime(), last.getId());
+            }
+            List<Order> page = new ArrayList<>(orders);
+            orderGraphLoader.load(page, fetch);
+            return new OrderPage(page, nextCursor);
+        }));
+    }
 
-        // 更新订单总金额
-        order.setTotalAmount(totalAmount);
-        // 实际应该有一个update方法来更新订单金额
+    @Override
+    public void exportOrdersByUserId(Long userId, Consumer<Order> consumer) {
+        inShard(shardRouter.shardOfUser(userId), () -> readOnlyTransaction.execute(status -> {
+            try (Cursor<Order> orders = orderMapper.scanByUserId(userId)) {
+                orders.forEach(consumer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        }));
+    }
 
-        return order;
+    @Override
+    public List<Order> getRecentOrdersByStatus(String status, int limit) {
+        int size = Math.max(1, Math.min(limit, maxPageSize));
+        // 每个分片各取前 size 条，合并后再取前 size 条
+        List<Order> orders = shardScatterGather.gather(shard ->
+                ReplicaContext.read(() -> orderMapper.findRecentByStatus(status, size)));
+        orders.sort(Comparator.comparing(Order::getCreatedTime).thenComparing(Order::getId).reversed());
+        return orders.size() > size ? new ArrayList<>(orders.subList(0, size)) : orders;
     }
 
     @Override
-    public Optional<Order> getOrderById(Long orderId) {
-        return orderMapper.findById(orderId);
+    public boolean cancelOrder(Long orderId) {
+        return cancelOrders(List.of(orderId)) == 1;
     }
 
     @Override
-    public List<Order> getOrdersByUserId(Long userId) {
-        return orderMapper.findByUserId(userId);
+    public boolean payOrder(Long orderId) {
+        return inShard(shardRouter.shardOfOrderId(orderId), () -> transactionTemplate.execute(status -> {
+            // 条件更新与批量取消的行锁互斥，同一订单不会既支付又取消；超时任务留在队列里，到期后被跳过
+            return orderMapper.updateStatusBatch(List.of(orderId), "PENDING", "PAID") == 1;
+        }));
     }
 
     @Override
-    @Transactional
-    public boolean cancelOrder(Long orderId) {
-        Optional<Order> orderOpt = orderMapper.findById(orderId);
-        if (orderOpt.isEmpty()) {
-            return false;
+    public int cancelOrders(Collection<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return 0;
         }
+        if (orderIds.size() > maxCancelBatchSize) {
+            throw new IllegalArgumentException("单次最多取消 " + maxCancelBatchSize + " 个订单");
+        }
+        // 每个分片一个事务
+        int cancelled = 0;
+        for (Map.Entry<Integer, List<Long>> group : shardRouter.groupOrderIds(orderIds).entrySet()) {
+            int shard = group.getKey();
+            cancelled += inShard(shard, () -> transactionTemplate.execute(status -> cancelInShard(shard, group.getValue())));
+        }
+        return cancelled;
+    }
 
-        Order order = orderOpt.get();
-        if (!"PENDING".equals(order.getStatus())) {
-            return false;
+    private int cancelInShard(int shard, List<Long> orderIds) {
+        // 按主键顺序加锁，并发的批量取消不会互相死锁
+        List<Long> ids = orderMapper.lockByIdsAndStatus(new TreeSet<>(orderIds), "PENDING");
+        if (ids.isEmpty()) {
+            return 0;
         }
+        int cancelled = orderMapper.updateStatusBatch(ids, "PENDING", "CANCELLED");
 
-        // 恢复库存
-        List<OrderItem> items = orderItemMapper.findSimpleByOrderId(orderId);
-        for (OrderItem item : items) {
-            productService.increaseStock(item.getProductId(), item.getQuantity());
+        // 恢复库存：整批订单按商品合并后一条语句加回
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (OrderItem item : orderItemMapper.findSimpleByOrderIds(ids)) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        boolean productShard = shardRouter.isProductShard(shard);
+        if (productShard) {
+            productService.increaseStockBatch(quantities);
         }
+        // 事务提交后把库存加回 Redis（订单不在商品分片时，数据库库存也在提交后加回）
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                if (!productShard) {
+                    restoreOnProductShard(quantities);
+                }
+                stockReservationService.restore(quantities);
+            }
+        });
+        return cancelled;
+    }
 
-        // 更新订单状态为已取消
-        orderMapper.updateStatus(orderId, "CANCELLED");
-        return true;
+    @Override
+    public int cancelExpiredOrders(LocalDateTime createdBefore, int limit) {
+        int batchSize = Math.min(limit, maxCancelBatchSize);
+        int cancelled = 0;
+        for (int shard : shardRouter.shards()) {
+            List<Long> ids = inShard(shard, () -> orderMapper.findIdsByStatusCreatedBefore("PENDING", createdBefore, batchSize));
+            cancelled += cancelOrders(ids);
+        }
+        return cancelled;
+    }
+
+    /**
+     * 在指定分片上执行。已有事务时连接已经绑定，只能留在同一个分片。
+     */
+    private <T> T inShard(int shard, Supplier<T> action) {
+        Integer current = ShardContext.current();
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && shard != (current == null ? ShardRouter.PRODUCT_SHARD : current)) {
+            throw new IllegalStateException("当前事务在分片 " + current + " 上，不能访问分片 " + shard);
+        }
+        return ShardContext.call(shard, action);
     }
 
-    private String generateOrderNumber() {
-        return "ORD" + LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMddHHmmss"))
-                + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+    private static String encodeCursor(LocalDateTime createdTime, Long id) {
+        String raw = createdTime + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
     }
 }
@@ -0,0 +1,97 @@
+package com.example.demo.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBlockingQueue;
+import org.redisson.api.RDelayedQueue;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.LongCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 未支付订单超时队列（Redisson RDelayedQueue）：下单后投递订单ID，pending-ttl 到期后转入
+ * order:timeouts 阻塞队列，由消费者取消订单。延时数据保存在 Redis，节点重启不丢失。
+ * 支付后不从延时队列移除（RDelayedQueue.remove 要遍历整个队列，每次支付 O(n)）：
+ * 取消是 PENDING -> CANCELLED 的条件更新，已支付订单到期后被消费者直接跳过。
+ */
+@Component
+@Slf4j
+public class OrderTimeoutQueue {
+    private static final String QUEUE_KEY = "order:timeouts";
+
+    private final RBlockingQueue<Long> expiredQueue;
+    private final RDelayedQueue<Long> delayedQueue;
+    private final Duration pendingTtl;
+    private final boolean enabled;
+
+    public OrderTimeoutQueue(RedissonClient redissonClient,
+                             @Value("${order.timeout.pending-ttl:30m}") Duration pendingTtl,
+                             @Value("${order.timeout.enabled:true}") boolean enabled) {
+        this.pendingTtl = pendingTtl;
+        this.enabled = enabled;
+        if (enabled) {
+            // 创建 RDelayedQueue 即在本节点启动到期转移任务，每个节点都会创建，任一节点存活即可转移
+            this.expiredQueue = redissonClient.getBlockingQueue(QUEUE_KEY, LongCodec.INSTANCE);
+            this.delayedQueue = redissonClient.getDelayedQueue(expiredQueue);
+        } else {
+            this.expiredQueue = null;
+            this.delayedQueue = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // 事务提交后投递；投递失败只记日志，由超时清理任务兜底
+    public void scheduleAfterCommit(Long orderId) {
+        if (!enabled) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    delayedQueue.offer(orderId, pendingTtl.toMillis(), TimeUnit.MILLISECONDS);
+                } catch (Exception e) {
+                    log.warn("投递订单超时任务失败，订单ID: {}, 原因: {}", orderId, e.getMessage());
+                }
+            }
+        });
+    }
+
+    // 阻塞等待到期的订单，最多等待 timeout，拿到一个后再顺带取出已到期的其余订单，最多 max 个
+    public List<Long> take(int max, Duration timeout) throws InterruptedException {
+        Long first = expiredQueue.poll(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return List.of();
+        }
+        List<Long> orderIds = new ArrayList<>(max);
+        orderIds.add(first);
+        if (max > 1) {
+            orderIds.addAll(expiredQueue.poll(max - 1));
+        }
+        return orderIds;
+    }
+
+    // 取消失败的订单放回到期队列重试
+    public void retry(Collection<Long> orderIds) {
+        expiredQueue.addAll(orderIds);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (delayedQueue != null) {
+            delayedQueue.destroy();
+        }
+    }
+}
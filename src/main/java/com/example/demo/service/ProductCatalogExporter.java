@@ -0,0 +1,157 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Product;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * 商品目录流式导出（NDJSON / CSV），按主键分页边读边写，直接写入响应输出流。
+ * <p>
+ * 每写 FLUSH_EVERY 行 flush 一次，把数据推给客户端；客户端读得慢时 write 会阻塞，
+ * 下一页随之推迟读取，服务端缓冲不会无限增长（背压）。每页查询完即归还连接，写出期间不占用数据库连接；
+ * 客户端断开时写出失败，导出随之结束。
+ */
+@Component
+@Slf4j
+public class ProductCatalogExporter {
+    private static final int FLUSH_EVERY = 500;
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final String CSV_HEADER = "id,name,price,stock,description,created_time,updated_time";
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv;charset=UTF-8", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("format 只支持 ndjson/csv: " + value);
+            }
+        }
+    }
+
+    private final ProductService productService;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter rowWriter;
+
+    public ProductCatalogExporter(ProductService productService, ObjectMapper objectMapper) {
+        this.productService = productService;
+        this.objectMapper = objectMapper;
+        this.rowWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    // 返回导出的商品数；不关闭 out
+    public long export(OutputStream out, Format format) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        long[] rows = {0};
+        try {
+            if (format == Format.NDJSON) {
+                JsonGenerator generator = objectMapper.getFactory().createGenerator(writer);
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                productService.scanProducts(product -> {
+                    try {
+                        rowWriter.writeValue(generator, product);
+                        generator.writeRaw('\n');
+                        if (++rows[0] % FLUSH_EVERY == 0) {
+                            generator.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.flush();
+            } else {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+                productService.scanProducts(product -> {
+                    try {
+                        writeCsvRow(writer, product);
+                        if (++rows[0] % FLUSH_EVERY == 0) {
+                            writer.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            writer.flush();
+        } catch (UncheckedIOException e) {
+            log.warn("商品目录导出中断，已写出 {} 行: {}", rows[0], e.getCause().getMessage());
+            throw e.getCause();
+        }
+        log.info("商品目录导出完成，格式: {}, 行数: {}", format, rows[0]);
+        return rows[0];
+    }
+
+    private static void writeCsvRow(Writer writer, Product product) throws IOException {
+        writer.write(String.valueOf(product.getId()));
+        writer.write(',');
+        writeCsvField(writer, product.getName());
+        writer.write(',');
+        writeCsvField(writer, product.getPrice() == null ? null : product.getPrice().toPlainString());
+        writer.write(',');
+        writeCsvField(writer, product.getStock() == null ? null : product.getStock().toString());
+        writer.write(',');
+        writeCsvField(writer, product.getDescription());
+        writer.write(',');
+        writeCsvField(writer, product.getCreatedTime() == null ? null : product.getCreatedTime().toString());
+        writer.write(',');
+        writeCsvField(writer, product.getUpdatedTime() == null ? null : product.getUpdatedTime().toString());
+        writer.write('\n');
+    }
+
+    // RFC 4180：含逗号、引号或换行的字段加双引号，引号转义为两个引号
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.demo.service;
+
+import com.example.demo.cache.HotKeyDetector;
+import com.example.demo.cache.ProductCache;
+import com.example.demo.cache.ProductCacheProperties;
+import com.example.demo.entity.Product;
+import com.example.demo.entity.ProductOutboxEntry;
+import com.example.demo.mapper.ProductMapper;
+import com.example.demo.mapper.ProductOutboxMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 商品变更 outbox：新增、修改商品和库存变化在业务事务内追加 product_outbox 记录（随事务提交或回滚），
+ * 后台定期按写入顺序批量读取，同一批内同一商品的多次变化合并为一次缓存更新，处理完删除记录。
+ * <p>
+ * 提交即保证缓存最终会被更新，不再依赖提交后回调（节点在提交后、清缓存前崩溃也不会漏掉）。
+ * 所有变更的商品都从主库读取新值覆盖 L2（热点商品用热点策略），并通知所有节点清理 L1：
+ * 只删 L2 的话，下一次未命中会从从库重建，复制延迟内可能把旧库存写回缓存。
+ * 读取记录、更新缓存都在事务外进行，不在 Redis 往返期间持有 outbox 表的锁；缓存更新成功后才删除记录。
+ * 缓存最多落后一个轮询间隔，轮询间隔也就是合并窗口。
+ * 关闭时商品增改沿用原来的做法（事务内和提交后各清一次缓存）；库存变化在提交后记入本节点的待刷新集合，
+ * 每个轮询间隔合并一次、用主库新值覆盖缓存，热点商品的每次扣减不再各自清缓存、引发集中回源。
+ * 这种方式下节点在提交后、刷新前崩溃会漏掉刷新，缓存最多旧到 L2 过期。
+ */
+@Component
+@Slf4j
+public class ProductOutbox {
+    public static final String CREATED = "CREATED";
+    public static final String UPDATED = "UPDATED";
+    public static final String STOCK = "STOCK";
+    private static final String RELAY_LOCK_KEY = "product:outbox:relay_lock";
+
+    private final ProductOutboxMapper productOutboxMapper;
+    private final ProductMapper productMapper;
+    private final ProductCache productCache;
+    private final HotKeyDetector hotKeyDetector;
+    private final ProductCacheProperties cacheProperties;
+    private final RedissonClient redissonClient;
+    private final boolean enabled;
+    private final int batchSize;
+
+    private final LongAdder relayedEntries = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    // 关闭 outbox 时，已提交、尚未刷新缓存的库存变化
+    private final Set<Long> pendingStock = ConcurrentHashMap.newKeySet();
+
+    public ProductOutbox(ProductOutboxMapper productOutboxMapper,
+                         ProductMapper productMapper,
+                         ProductCache productCache,
+                         HotKeyDetector hotKeyDetector,
+                         ProductCacheProperties cacheProperties,
+                         RedissonClient redissonClient,
+                         @Value("${product.outbox.enabled:false}") boolean enabled,
+                         @Value("${product.outbox.batch-size:500}") int batchSize) {
+        this.productOutboxMapper = productOutboxMapper;
+        this.productMapper = productMapper;
+        this.productCache = productCache;
+        this.hotKeyDetector = hotKeyDetector;
+        this.cacheProperties = cacheProperties;
+        this.redissonClient = redissonClient;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 在当前事务内记录商品变更，同一次调用内的重复商品只记一条
+     */
+    public void record(Collection<Long> productIds, String changeType) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        if (!enabled) {
+            if (STOCK.equals(changeType)) {
+                markStockAfterCommit(List.copyOf(productIds));
+            } else {
+                productIds.forEach(productCache::evictAfterCommit);
+            }
+            return;
+        }
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("商品变更必须在事务内记录");
+        }
+        productOutboxMapper.insertBatch(new LinkedHashSet<>(productIds), changeType);
+    }
+
+    @Scheduled(fixedDelayString = "${product.outbox.poll-interval-ms:200}")
+    public void poll() {
+        if (!enabled) {
+            refreshPendingStock();
+            return;
+        }
+        try {
+            relayAll();
+        } catch (Exception e) {
+            // 记录未删除，下一轮重试
+            log.error("同步商品变更到缓存失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 处理全部已提交的变更，返回处理的记录数。集群内同一时间只有一个节点处理。
+     */
+    public int relayAll() {
+        RLock lock = redissonClient.getLock(RELAY_LOCK_KEY);
+        if (!lock.tryLock()) {
+            return 0;
+        }
+        try {
+            int total = 0;
+            int relayed;
+            do {
+                relayed = relayBatch();
+                total += relayed;
+            } while (relayed == batchSize);
+            return total;
+        } finally {
+            if (lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    // 库存变化提交后才记入待刷新集合，刷新时从主库读到的一定是提交后的值
+    private void markStockAfterCommit(List<Long> productIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            pendingStock.addAll(productIds);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                pendingStock.addAll(productIds);
+            }
+        });
+    }
+
+    /**
+     * 刷新关闭 outbox 时积累的库存变化，返回刷新的商品数；失败的商品放回集合，下一轮重试
+     */
+    public int refreshPendingStock() {
+        if (pendingStock.isEmpty()) {
+            return 0;
+        }
+        List<Long> productIds = new ArrayList<>(pendingStock);
+        // 取出之后再次提交的变化会重新加入集合，下一轮再刷新一次
+        pendingStock.removeAll(productIds);
+        try {
+            refreshFromPrimary(productIds);
+            return productIds.size();
+        } catch (Exception e) {
+            pendingStock.addAll(productIds);
+            log.error("刷新商品库存缓存失败，商品数: {}, 原因: {}", productIds.size(), e.getMessage());
+            return 0;
+        }
+    }
+
+    // 取一批记录、按商品合并后更新缓存、删除记录；缓存更新失败则记录保留给下一轮（至少一次）
+    private int relayBatch() {
+        List<ProductOutboxEntry> entries = productOutboxMapper.findOldest(batchSize);
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        Set<Long> productIds = new LinkedHashSet<>();
+        List<Long> ids = new ArrayList<>(entries.size());
+        for (ProductOutboxEntry entry : entries) {
+            productIds.add(entry.getProductId());
+            ids.add(entry.getId());
+        }
+        refreshFromPrimary(productIds);
+        productOutboxMapper.deleteByIds(ids);
+        relayedEntries.add(entries.size());
+        return entries.size();
+    }
+
+    private void refreshFromPrimary(Collection<Long> productIds) {
+        Map<Long, Product> products = loadFromPrimary(productIds);
+        productCache.refreshAll(products, id -> cacheProperties.policy(policyOf(id, products.get(id))));
+        refreshes.add(products.size());
+    }
+
+    private String policyOf(Long productId, Product product) {
+        if (product == null) {
+            return ProductCacheProperties.MISSING;
+        }
+        return hotKeyDetector.isHot(productId) ? ProductCacheProperties.HOT : ProductCacheProperties.DEFAULT;
+    }
+
+    // 不经过从库：复制延迟内读到的旧值会被写回缓存；已删除的商品写入空值缓存
+    private Map<Long, Product> loadFromPrimary(Collection<Long> productIds) {
+        Map<Long, Product> products = new HashMap<>();
+        productIds.forEach(id -> products.put(id, null));
+        for (Product product : productMapper.findByIds(productIds)) {
+            products.put(product.getId(), product);
+        }
+        return products;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        if (enabled) {
+            stats.put("backlog", productOutboxMapper.count());
+        } else {
+            stats.put("pendingStock", pendingStock.size());
+        }
+        stats.put("relayedEntries", relayedEntries.sum());
+        stats.put("refreshes", refreshes.sum());
+        return stats;
+    }
+}
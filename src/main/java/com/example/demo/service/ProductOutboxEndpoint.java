@@ -0,0 +1,22 @@
+package com.example.demo.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// GET /actuator/productoutbox 查看商品变更积压和缓存失效、刷新计数
+@Component
+@Endpoint(id = "productoutbox")
+@RequiredArgsConstructor
+public class ProductOutboxEndpoint {
+
+    private final ProductOutbox productOutbox;
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        return productOutbox.stats();
+    }
+}
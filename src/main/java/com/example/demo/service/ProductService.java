@@ -2,22 +2,36 @@ package com.example.demo.service;
 
 
 
+import com.example.demo.dto.ProductPage;
 import com.example.demo.entity.Product;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public interface ProductService {
     @Transactional
     Product createProduct(Product product);
 
-    List<Product> getAllProducts();
+    // 按主键分页读取全部商品并逐条回调，不在事务内，内存占用与商品数量无关
+    void scanProducts(Consumer<Product> consumer);
+
+    // 按 id 升序的键集分页，afterId 为上一页返回的 nextAfterId，第一页传 null
+    ProductPage getProductPage(Long afterId, int size);
     boolean deductStock(Long productId, Integer quantity);
+    // 批量扣减库存，全部扣减成功才返回true
+    boolean deductStockBatch(Map<Long, Integer> quantities);
     void increaseStock(Long productId, Integer quantity);
+    // 一条语句给多个商品加库存
+    void increaseStockBatch(Map<Long, Integer> quantities);
     Integer getProductStock(Long productId);
 
     Product getProductDetail(Long id);
 
+    // 批量读取商品（走两级缓存，未命中的一次 IN 查询），不存在的商品不在返回结果中
+    Map<Long, Product> getProductsByIds(Collection<Long> ids);
+
     Product updateProductSelective(Long id, Product product);
 
 }
\ No newline at end of file
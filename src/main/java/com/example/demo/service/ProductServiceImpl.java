@@ -1,50 +1,78 @@
 package com.example.demo.service;
 
+import com.example.demo.cache.CacheEntry;
+import com.example.demo.cache.HotKeyDetector;
+import com.example.demo.cache.ProductBloomFilter;
+import com.example.demo.cache.ProductCache;
+import com.example.demo.cache.ProductCacheProperties;
+import com.example.demo.cache.SingleFlight;
+import com.example.demo.dto.ProductPage;
 import com.example.demo.entity.Product;
 import com.example.demo.mapper.ProductMapper;
+import com.example.demo.metrics.ShopMetrics;
+import com.example.demo.replica.ReplicaContext;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.redisson.api.RBloomFilter;
-import org.redisson.api.RBucket;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ProductServiceImpl implements ProductService {
-    private static final Object NULL_CACHE_MARKER = new Object(); // 使用Object作为标记 解决缓存穿透问题（访问不存在的数据）
-    // 布隆过滤器，用于判断商品是否存在  解决缓存穿透问题（访问不存在的数据）
-    private RBloomFilter<Long> productBloomFilter;
-
-    //    @PostConstruct
-//    public void init() {
-//        productBloomFilter = redissonClient.getBloomFilter("productBloomFilter");
-//        // 初始化布隆过滤器，预计元素数量100000，误判率0.01%
-//        productBloomFilter.tryInit(100000L, 0.0001);
-//
-//        // 预热：将现有商品ID加入布隆过滤器
-//        List<Long> existingIds = productMapper.findAllIds();
-//        for (Long id : existingIds) {
-//            productBloomFilter.add(id);
-//        }
-//    }
     private final ProductMapper productMapper;
+    private final RedissonClient redissonClient;
+    // 两级缓存（Caffeine + Redis），空值也缓存（解决缓存穿透问题）
+    private final ProductCache productCache;
+    // 热点商品探测，热点走加锁重建缓存的保护路径
+    private final HotKeyDetector hotKeyDetector;
+    // 同一商品并发的缓存未命中合并为一次加载
+    private final SingleFlight<Long, Product> rebuildFlight = new SingleFlight<>();
+    // 各类缓存的逻辑过期/硬过期时间
+    private final ProductCacheProperties cacheProperties;
+    // 逻辑过期后在后台刷新缓存
+    @Qualifier("cacheRefreshExecutor")
+    private final Executor cacheRefreshExecutor;
+    // 布隆过滤器，用于判断商品是否存在  解决缓存穿透问题（访问不存在的数据）
+    private final ProductBloomFilter productBloomFilter;
+    // 库存变化先写日志，定期合并写回，减少热点商品行上的 UPDATE
+    private final StockWriteBehindBuffer stockWriteBehindBuffer;
+    // 缓存读取、重建和库存扣减的耗时指标
+    private final ShopMetrics shopMetrics;
+    // 商品变更与业务事务一起写入 outbox，由后台合并后更新缓存
+    private final ProductOutbox productOutbox;
+    // 正在后台刷新的商品，避免重复提交
+    private final Set<Long> refreshing = ConcurrentHashMap.newKeySet();
 
-    @Autowired
-    private RedissonClient redissonClient;
-    private static final Long HOT_PRODUCT_ID = 39600L;  // 你的热点商品ID
-    private static final String HOT_PRODUCT_KEY_PREFIX = "hot_product:";
     private static final String HOT_PRODUCT_KEY_LOCK_PREFIX = "hot_product_lock:";
+    // 全量导出时每页读取的商品数
+    private static final int SCAN_CHUNK_SIZE = 1000;
+
+    // 其他节点持有重建锁时，等待其重建完成通知的最长时间
+    @Value("${product.cache.rebuild-wait-ms:200}")
+    private long rebuildWaitMs;
+
+    @Value("${product.catalog.max-page-size:100}")
+    private int maxPageSize;
 
     @Override
     @Transactional
@@ -76,97 +104,284 @@ public class ProductServiceImpl implements ProductService {
 
         // 插入商品
         productMapper.insert(product);
+        productBloomFilter.add(product.getId());
+        // 布隆过滤器误判时可能已缓存空值
+        productOutbox.record(List.of(product.getId()), ProductOutbox.CREATED);
         return product;
     }
 
     @Override
-    public List<Product> getAllProducts() {
-        return productMapper.findAll();
+    public void scanProducts(Consumer<Product> consumer) {
+        // 按主键键集分页，每页一条短查询，连接在两页之间归还，客户端读得慢也不会一直占着连接
+        long afterId = 0;
+        List<Product> page;
+        do {
+            long from = afterId;
+            page = ReplicaContext.read(() -> productMapper.findPageAfter(from, SCAN_CHUNK_SIZE));
+            page.forEach(consumer);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == SCAN_CHUNK_SIZE);
+    }
+
+    @Override
+    public ProductPage getProductPage(Long afterId, int size) {
+        int limit = Math.max(1, Math.min(size, maxPageSize));
+        // 多取一条判断是否还有下一页
+        List<Product> products = ReplicaContext.read(() -> productMapper.findPageAfter(afterId == null ? 0 : afterId, limit + 1));
+        Long nextAfterId = null;
+        if (products.size() > limit) {
+            products = new ArrayList<>(products.subList(0, limit));
+            nextAfterId = products.get(limit - 1).getId();
+        }
+        return new ProductPage(products, nextAfterId);
     }
 
     @Override
     @Transactional
     public boolean deductStock(Long productId, Integer quantity) {
-        int affectedRows = productMapper.deductStock(productId, quantity);
+        if (stockWriteBehindBuffer.buffersDeductions()) {
+            stockWriteBehindBuffer.record(Map.of(productId, -quantity));
+            return true;
+        }
+        int affectedRows = shopMetrics.timeStockDeduct(false, () -> productMapper.deductStock(productId, quantity));
+        if (affectedRows > 0) {
+            productOutbox.record(List.of(productId), ProductOutbox.STOCK);
+        }
         return affectedRows > 0;
     }
 
+    @Override
+    @Transactional
+    public boolean deductStockBatch(Map<Long, Integer> quantities) {
+        // 非严格模式：已由 Redis 预扣保证不超卖，这里只记录变化量
+        if (stockWriteBehindBuffer.buffersDeductions()) {
+            Map<Long, Integer> deltas = new HashMap<>();
+            quantities.forEach((productId, quantity) -> deltas.put(productId, -quantity));
+            stockWriteBehindBuffer.record(deltas);
+            return true;
+        }
+        int affectedRows = shopMetrics.timeStockDeduct(true, () -> productMapper.deductStockBatch(quantities));
+        productOutbox.record(quantities.keySet(), ProductOutbox.STOCK);
+        return affectedRows == quantities.size();
+    }
+
     @Override
     @Transactional
     public void increaseStock(Long productId, Integer quantity) {
+        if (stockWriteBehindBuffer.isEnabled()) {
+            stockWriteBehindBuffer.record(Map.of(productId, quantity));
+            return;
+        }
         productMapper.increaseStock(productId, quantity);
+        productOutbox.record(List.of(productId), ProductOutbox.STOCK);
+    }
+
+    @Override
+    @Transactional
+    public void increaseStockBatch(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        if (stockWriteBehindBuffer.isEnabled()) {
+            stockWriteBehindBuffer.record(quantities);
+            return;
+        }
+        productMapper.increaseStockBatch(quantities);
+        productOutbox.record(quantities.keySet(), ProductOutbox.STOCK);
     }
 
     @Override
     public Integer getProductStock(Long productId) {
-        return productMapper.getStock(productId);
+        // 只用于展示；预扣库存的初始化直接读主库
+        return ReplicaContext.read(() -> productMapper.getStock(productId, stockWriteBehindBuffer.isEnabled()));
     }
 
     @Override
     public Product getProductDetail(Long id) {
-//        // 使用布隆过滤器快速判断商品是否存在
-//        if (!productBloomFilter.contains(id)) {
-//            log.warn("商品ID不存在于布隆过滤器中，直接返回null，ID: {}", id);
-//            return null;
-//        }
+        // 使用布隆过滤器快速判断商品是否存在
+        if (!productBloomFilter.mightContain(id)) {
+            log.debug("商品ID不存在于布隆过滤器中，直接返回null，ID: {}", id);
+            return null;
+        }
 
-        if (HOT_PRODUCT_ID.equals(id)) {
-            String key = HOT_PRODUCT_KEY_PREFIX + id;
-            RBucket<Object> bucket = redissonClient.getBucket(key);
+        hotKeyDetector.record(id);
 
-            // 先从 Redis 读缓存
-            Object product = bucket.get();
-            if (product != null) {
-                if (product == NULL_CACHE_MARKER) {
-                    log.info("命中空值缓存，商品不存在，ID: {}", id);
-                    return null;
+        // 先查两级缓存
+        long start = System.nanoTime();
+        CacheEntry cached = productCache.get(id);
+        shopMetrics.recordCacheGet(cached != null, System.nanoTime() - start);
+        if (cached != null) {
+            // 逻辑过期：先返回旧值，后台刷新
+            if (cached.isStale(System.currentTimeMillis())) {
+                refreshAsync(id);
+            }
+            if (cached.getProduct() == null) {
+                shopMetrics.nullMarkerHit();
+                log.debug("命中空值缓存，商品不存在，ID: {}", id);
+                return null;
+            }
+            log.debug("从缓存读取商品数据，ID: {}", id);
+            return cached.getProduct();
+        }
+
+        // 缓存未命中：本节点内同一商品只有一个线程去加载，其余线程等待结果
+        return rebuildFlight.execute(id, () -> hotKeyDetector.isHot(id)
+                ? shopMetrics.timeCacheRebuild(true, () -> rebuildHotProduct(id))
+                : shopMetrics.timeCacheRebuild(false, () -> loadAndCache(id)));
+    }
+
+    @Override
+    public Map<Long, Product> getProductsByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        Set<Long> distinctIds = new LinkedHashSet<>(ids);
+        Map<Long, CacheEntry> cached = productCache.getAll(distinctIds);
+        Map<Long, Product> products = new HashMap<>();
+        List<Long> misses = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (Long id : distinctIds) {
+            CacheEntry entry = cached.get(id);
+            if (entry == null) {
+                misses.add(id);
+                continue;
+            }
+            if (entry.isStale(now)) {
+                refreshAsync(id);
+            }
+            if (entry.getProduct() != null) {
+                products.put(id, entry.getProduct());
+            }
+        }
+        if (misses.isEmpty()) {
+            return products;
+        }
+
+        // 未命中的商品一次查库，并批量回填缓存（不存在的写入空值缓存）
+        Map<Long, Product> loaded = new HashMap<>();
+        misses.forEach(id -> loaded.put(id, null));
+        for (Product product : ReplicaContext.read(() -> productMapper.findByIds(misses))) {
+            loaded.put(product.getId(), product);
+            products.put(product.getId(), product);
+        }
+        productCache.putAll(loaded, id -> policyFor(id, loaded.get(id)));
+        return products;
+    }
+
+    // 热点商品加分布式锁重建，集群内同一商品只有一个节点查库，防止缓存击穿
+    private Product rebuildHotProduct(Long id) {
+        CacheEntry cached = productCache.get(id);
+        if (cached != null) {
+            return cached.getProduct();
+        }
+        String productLockKey = HOT_PRODUCT_KEY_LOCK_PREFIX + id;
+        RLock lock = redissonClient.getLock(productLockKey);
+        boolean locked = false;
+        long waitStart = System.nanoTime();
+        try {
+            locked = lock.tryLock(0, 5, TimeUnit.SECONDS);
+            if (locked) {
+                shopMetrics.recordLockWait(true, false, System.nanoTime() - waitStart);
+                cached = productCache.get(id);
+                if (cached != null) {
+                    return cached.getProduct();
+                }
+                log.debug("重建热点商品缓存，ID: {}", id);
+                // 缓存没命中，从数据库查
+                Product product = loadProduct(id);
+                if (product == null) {
+                    log.warn("数据库不存在该商品，缓存空值防止穿透，商品ID: {}", id);
                 }
-                log.info("从缓存读取商品数据，ID: {}", id);
-                return (Product) product; // 类型转换
+                // 写入缓存，空值也缓存（应对缓存穿透）
+                productCache.put(id, product, policyFor(id, product));
+                productCache.publishRebuilt(id);
+                return product;
             }
-            String productLockKey = HOT_PRODUCT_KEY_LOCK_PREFIX + id;
-            RLock lock = redissonClient.getLock(productLockKey);
-            try {
-                if (lock.tryLock(1, 5, TimeUnit.SECONDS)) {
-                    product = bucket.get();
-                    if (product != null) {
-                        if (product == NULL_CACHE_MARKER) {
-                            return null;
-                        }
-                        return (Product) product;
-                    }
-                    log.info("重建缓存");
-                    // 缓存没命中，从数据库查
-                    product = productMapper.findById(id).orElse(null);
-                    if (product != null) {
-                        // 写入 Redis，设置10s过期时间
-                        bucket.set(product, 10 + new Random().nextInt(5), TimeUnit.SECONDS);
-                    } else {
-                        // 7. 应对缓存穿透：缓存空值
-                        bucket.set(NULL_CACHE_MARKER, 5, TimeUnit.MINUTES);
-                        log.warn("数据库不存在该商品，缓存空值防止穿透，商品ID: {}", id);
-                    }
-                    return (Product) product;
-                } else {
-                    Thread.sleep(50);
-                    product = bucket.get();
-                    if (product != null) {
-                        if (product == NULL_CACHE_MARKER) {
-                            return null;
-                        }
-                        return (Product) product;
-                    }
-                    return productMapper.findById(id).orElse(null);
+            // 其他节点正在重建：等待通知，不轮询
+            cached = productCache.awaitRebuilt(id, rebuildWaitMs);
+            shopMetrics.recordLockWait(false, cached != null, System.nanoTime() - waitStart);
+            if (cached != null) {
+                return cached.getProduct();
+            }
+            log.warn("等待缓存重建超时，直接查询数据库，商品ID: {}", id);
+            return loadProduct(id);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("获取锁过程被中断，直接查询数据库，商品ID: {}", id);
+            return loadProduct(id);
+        } finally {
+            if (locked && lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    // 普通商品：查库后回填两级缓存
+    private Product loadAndCache(Long id) {
+        CacheEntry cached = productCache.get(id);
+        if (cached != null) {
+            return cached.getProduct();
+        }
+        Product product = loadProduct(id);
+        productCache.put(id, product, policyFor(id, product));
+        return product;
+    }
+
+    // 同一商品同时只提交一个刷新任务；线程池满时放弃本次刷新，继续返回旧值
+    private void refreshAsync(Long id) {
+        if (!refreshing.add(id)) {
+            return;
+        }
+        try {
+            cacheRefreshExecutor.execute(() -> {
+                try {
+                    refresh(id);
+                } catch (Exception e) {
+                    log.warn("后台刷新商品缓存失败，商品ID: {}, 原因: {}", id, e.getMessage());
+                } finally {
+                    refreshing.remove(id);
                 }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                log.error("获取锁过程被中断，直接查询数据库，商品ID: {}", id);
-                return productMapper.findById(id).orElse(null);
-            } finally {
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(id);
+        }
+    }
+
+    // 集群内同一商品只有一个节点刷新，其他节点继续返回旧值
+    private void refresh(Long id) {
+        RLock lock = redissonClient.getLock(HOT_PRODUCT_KEY_LOCK_PREFIX + id);
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            // 其他节点可能已经刷新过 Redis，本地只是旧副本
+            CacheEntry remote = productCache.getFromRedis(id);
+            if (remote != null && !remote.isStale(System.currentTimeMillis())) {
+                return;
+            }
+            Product product = loadProduct(id);
+            productCache.put(id, product, policyFor(id, product));
+            log.debug("后台刷新商品缓存，ID: {}", id);
+        } finally {
+            if (lock.isHeldByCurrentThread()) {
                 lock.unlock();
             }
         }
-        return productMapper.findById(id).orElse(null);
+    }
+
+    // 缓存未命中时读从库，复制延迟超过阈值的从库不会被选中
+    private Product loadProduct(Long id) {
+        return ReplicaContext.read(() -> productMapper.findById(id).orElse(null));
+    }
+
+    private ProductCacheProperties.Policy policyFor(Long id, Product product) {
+        if (product == null) {
+            return cacheProperties.policy(ProductCacheProperties.MISSING);
+        }
+        return cacheProperties.policy(hotKeyDetector.isHot(id)
+                ? ProductCacheProperties.HOT : ProductCacheProperties.DEFAULT);
     }
 
     @Override
@@ -208,21 +423,11 @@ public class ProductServiceImpl implements ProductService {
 
         log.info("商品选择性更新成功，影响行数: {}", affectedRows);
 
-        // 7. 清除缓存
-        clearProductCache(id);
+        // 7. 记录变更，由 outbox 更新所有节点的缓存
+        productOutbox.record(List.of(id), ProductOutbox.UPDATED);
 
-        return getProductDetail(id);
-    }
-
-    // 清除商品缓存
-    private void clearProductCache(Long productId) {
-        try {
-            String cacheKey = HOT_PRODUCT_KEY_PREFIX + productId;
-            redissonClient.getBucket(cacheKey).delete();
-            log.debug("已清除商品缓存: {}", productId);
-        } catch (Exception e) {
-            log.warn("清除商品缓存失败: {}", e.getMessage());
-        }
+        // 缓存要到 outbox 处理后才更新，直接返回主库上的最新值
+        return productMapper.findById(id).orElse(null);
     }
 
 }
@@ -0,0 +1,221 @@
+package com.example.demo.service;
+
+import com.example.demo.cache.SingleFlight;
+import com.example.demo.dto.OrderFetch;
+import com.example.demo.dto.PurchaseRequest;
+import com.example.demo.entity.Order;
+import com.example.demo.exception.DuplicateRequestException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 下单幂等：同一个 Idempotency-Key 只下一次单，重复提交直接返回原订单。
+ * <p>
+ * 本地 Caffeine 缓存已完成的结果；本节点并发的重复请求通过 SingleFlight 等待同一次执行；
+ * 跨节点用 Redis SETNX 占用幂等键，值为请求指纹和预先分配的订单号。其他节点只需等待该订单号的订单落库，
+ * 不会重复执行下单。下单失败时释放幂等键，允许客户端重试。
+ * <p>
+ * 占用的幂等键只保留 pending-ttl，下单期间每隔 pending-ttl 的三分之一续期一次，下单再慢也不会被其他节点接手；
+ * 持有节点崩溃后续期停止，超时即可被重新占用。下单成功后把占用值按 ttl 重新写入，而不是只延长有效期。
+ */
+@Service
+@Slf4j
+public class PurchaseIdempotencyService {
+    private static final String KEY_PREFIX = "idempotency:purchase:";
+    private static final int MAX_KEY_LENGTH = 64;
+
+    private final OrderService orderService;
+    private final OrderNumberGenerator orderNumberGenerator;
+    private final RedissonClient redissonClient;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration pendingTtl;
+    private final long waitMs;
+
+    // 已完成的请求：幂等键 -> 指纹和订单
+    private final Cache<String, Completed> completed;
+    private final SingleFlight<String, Completed> inFlight = new SingleFlight<>();
+    // 处理中幂等键的续期线程
+    private final ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("idempotency-renewer").daemon().factory());
+
+    private record Completed(String fingerprint, Order order) {
+    }
+
+    public PurchaseIdempotencyService(OrderService orderService,
+                                      OrderNumberGenerator orderNumberGenerator,
+                                      RedissonClient redissonClient,
+                                      ObjectMapper objectMapper,
+                                      @Value("${order.idempotency.ttl:24h}") Duration ttl,
+                                      @Value("${order.idempotency.pending-ttl:30s}") Duration pendingTtl,
+                                      @Value("${order.idempotency.wait-ms:5000}") long waitMs,
+                                      @Value("${order.idempotency.local.maximum-size:10000}") long localMaximumSize,
+                                      @Value("${order.idempotency.local.expire-after-write:10m}") Duration localExpireAfterWrite) {
+        this.orderService = orderService;
+        this.orderNumberGenerator = orderNumberGenerator;
+        this.redissonClient = redissonClient;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.pendingTtl = pendingTtl;
+        this.waitMs = waitMs;
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(localMaximumSize)
+                .expireAfterWrite(localExpireAfterWrite)
+                .build();
+    }
+
+    @PreDestroy
+    public void close() {
+        renewer.shutdownNow();
+    }
+
+    /**
+     * @throws IllegalArgumentException  幂等键为空或过长
+     * @throws DuplicateRequestException 同一个键的请求仍在处理，或该键已用于请求体不同的请求
+     */
+    public Order purchase(String idempotencyKey, PurchaseRequest purchaseRequest) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key 不能为空且不能超过 " + MAX_KEY_LENGTH + " 个字符");
+        }
+        String fingerprint = fingerprint(purchaseRequest);
+        Completed result = completed.getIfPresent(idempotencyKey);
+        if (result == null) {
+            result = inFlight.execute(idempotencyKey, () -> resolve(idempotencyKey, fingerprint, purchaseRequest));
+        }
+        if (!result.fingerprint().equals(fingerprint)) {
+            throw new DuplicateRequestException("Idempotency-Key 已被其他请求使用: " + idempotencyKey);
+        }
+        return result.order();
+    }
+
+    private Completed resolve(String idempotencyKey, String fingerprint, PurchaseRequest purchaseRequest) {
+        RBucket<String> marker = redissonClient.getBucket(KEY_PREFIX + idempotencyKey, StringCodec.INSTANCE);
+        String orderNumber = orderNumberGenerator.next(purchaseRequest.getUserId());
+        String claim = fingerprint + "|" + orderNumber;
+        long deadline = System.currentTimeMillis() + waitMs;
+        long backoffMs = 20;
+        while (true) {
+            // 处理中的标记只保留 pending-ttl，持有节点崩溃后其他请求可以接手
+            if (marker.setIfAbsent(claim, pendingTtl)) {
+                return execute(idempotencyKey, marker, claim, fingerprint, orderNumber, purchaseRequest);
+            }
+            String owner = marker.get();
+            if (owner == null) {
+                // 上一次执行失败已释放，重新占用
+                continue;
+            }
+            int separator = owner.indexOf('|');
+            Completed result = new Completed(owner.substring(0, separator), null);
+            if (!result.fingerprint().equals(fingerprint)) {
+                return result;
+            }
+            Optional<Order> existing = findOrder(owner.substring(separator + 1));
+            if (existing.isPresent()) {
+                return remember(idempotencyKey, new Completed(fingerprint, existing.get()));
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                throw new DuplicateRequestException("请求正在处理中，请稍后重试");
+            }
+            try {
+                Thread.sleep(backoffMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DuplicateRequestException("请求正在处理中，请稍后重试");
+            }
+            backoffMs = Math.min(backoffMs * 2, 200);
+        }
+    }
+
+    private Completed execute(String idempotencyKey, RBucket<String> marker, String claim, String fingerprint,
+                              String orderNumber, PurchaseRequest purchaseRequest) {
+        Renewal renewal = new Renewal(idempotencyKey, marker);
+        Order order;
+        try {
+            order = orderService.createOrder(orderNumber, purchaseRequest);
+        } catch (RuntimeException e) {
+            renewal.stop();
+            // 下单失败（如库存不足）：释放幂等键，允许客户端重试
+            marker.compareAndSet(claim, null);
+            throw e;
+        }
+        renewal.stop();
+        try {
+            // 重新写入而不是 expire：键在下单期间过期时 expire 不会生效，其他节点只能等待超时
+            marker.set(claim, ttl);
+        } catch (Exception e) {
+            log.warn("保存幂等键结果失败: {}, 原因: {}", idempotencyKey, e.getMessage());
+        }
+        return remember(idempotencyKey, new Completed(fingerprint, order));
+    }
+
+    // 下单期间定期把处理中的幂等键续期到 pending-ttl；stop 返回后不会再续期，不会覆盖随后写入的 ttl
+    private final class Renewal {
+        private final String idempotencyKey;
+        private final RBucket<String> marker;
+        private final ScheduledFuture<?> task;
+        private boolean stopped;
+
+        Renewal(String idempotencyKey, RBucket<String> marker) {
+            this.idempotencyKey = idempotencyKey;
+            this.marker = marker;
+            long periodMs = Math.max(1, pendingTtl.toMillis() / 3);
+            this.task = renewer.scheduleAtFixedRate(this::renew, periodMs, periodMs, TimeUnit.MILLISECONDS);
+        }
+
+        private synchronized void renew() {
+            if (stopped) {
+                return;
+            }
+            try {
+                marker.expire(pendingTtl);
+            } catch (Exception e) {
+                log.warn("幂等键续期失败: {}, 原因: {}", idempotencyKey, e.getMessage());
+            }
+        }
+
+        synchronized void stop() {
+            stopped = true;
+            task.cancel(false);
+        }
+    }
+
+    private Completed remember(String idempotencyKey, Completed result) {
+        completed.put(idempotencyKey, result);
+        return result;
+    }
+
+    private Optional<Order> findOrder(String orderNumber) {
+        // 订单刚落库，从库可能还没有，整单都读主库
+        return orderService.getOrderByNumber(orderNumber, OrderFetch.ITEMS);
+    }
+
+    // 请求体的 SHA-256 摘要，用于识别同一幂等键下的不同请求
+    private String fingerprint(PurchaseRequest purchaseRequest) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(purchaseRequest));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("计算请求指纹失败", e);
+        }
+    }
+}
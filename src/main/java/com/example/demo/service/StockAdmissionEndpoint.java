@@ -0,0 +1,22 @@
+package com.example.demo.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// GET /actuator/stockadmission 查看本地准入闸门的放行、拒绝、排队计数和剩余预算最少的商品
+@Component
+@Endpoint(id = "stockadmission")
+@RequiredArgsConstructor
+public class StockAdmissionEndpoint {
+
+    private final StockAdmissionGate stockAdmissionGate;
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        return stockAdmissionGate.stats();
+    }
+}
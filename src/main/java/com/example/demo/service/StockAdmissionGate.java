@@ -0,0 +1,219 @@
+package com.example.demo.service;
+
+import com.example.demo.concurrency.StripedBudget;
+import com.example.demo.exception.InsufficientStockException;
+import com.example.demo.metrics.ShopMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本地库存准入闸门：每个商品在本节点有一份令牌预算（{@link StripedBudget}，无锁、分条带），
+ * 定期按 Redis 中的剩余库存重置。预算耗尽后在本地直接拒绝（或等待下一次补充），不再打到 Redis 预扣脚本和数据库。
+ * <p>
+ * 闸门只是预筛，是否扣减成功仍以 Redis 预扣为准；预算最多滞后一个 refill-interval。
+ * Redis 还没有加载库存的商品直接放行，由预扣脚本从数据库加载。
+ */
+@Component
+@Slf4j
+public class StockAdmissionGate {
+    private static final int REFILL_BATCH_SIZE = 500;
+
+    private final RedissonClient redissonClient;
+    private final ShopMetrics shopMetrics;
+    private final boolean enabled;
+    private final double share;
+    private final int stripes;
+    private final long queueTimeoutNanos;
+    private final int maxProducts;
+    private final long idleMs;
+    private final Map<Long, ProductBudget> budgets = new ConcurrentHashMap<>();
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder queued = new LongAdder();
+
+    public StockAdmissionGate(RedissonClient redissonClient, ShopMetrics shopMetrics,
+                              @Value("${stock.admission.enabled:false}") boolean enabled,
+                              @Value("${stock.admission.share:1.0}") double share,
+                              @Value("${stock.admission.stripes:16}") int stripes,
+                              @Value("${stock.admission.queue-timeout-ms:0}") long queueTimeoutMs,
+                              @Value("${stock.admission.max-products:10000}") int maxProducts,
+                              @Value("${stock.admission.idle-ms:60000}") long idleMs) {
+        this.redissonClient = redissonClient;
+        this.shopMetrics = shopMetrics;
+        this.enabled = enabled;
+        this.share = share;
+        this.stripes = stripes;
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs);
+        this.maxProducts = maxProducts;
+        this.idleMs = idleMs;
+    }
+
+    /**
+     * 为一组商品获取本地令牌，全部成功或全部失败
+     *
+     * @throws InsufficientStockException 任一商品本地预算不足
+     */
+    public void acquire(Map<Long, Integer> quantities) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Map<ProductBudget, Integer> taken = new LinkedHashMap<>();
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            ProductBudget budget = budget(entry.getKey(), now);
+            if (budget == null || !budget.loaded) {
+                continue;
+            }
+            if (!acquire(budget, entry.getValue())) {
+                taken.forEach((b, quantity) -> b.tokens.release(quantity));
+                rejected.increment();
+                shopMetrics.stockRejected(ShopMetrics.STAGE_ADMISSION);
+                throw new InsufficientStockException("商品ID: " + entry.getKey() + " 库存不足");
+            }
+            taken.put(budget, entry.getValue());
+        }
+        admitted.increment();
+    }
+
+    // 准入后下游因库存以外的原因失败（Redis 不可用等），令牌还回去
+    public void release(Map<Long, Integer> quantities) {
+        if (!enabled) {
+            return;
+        }
+        quantities.forEach((productId, quantity) -> {
+            ProductBudget budget = budgets.get(productId);
+            if (budget != null && budget.loaded) {
+                budget.tokens.release(quantity);
+            }
+        });
+    }
+
+    private boolean acquire(ProductBudget budget, int quantity) {
+        if (budget.tokens.tryAcquire(quantity)) {
+            return true;
+        }
+        if (queueTimeoutNanos <= 0) {
+            return false;
+        }
+        // 排队等待下一次补充，超时拒绝
+        queued.increment();
+        long deadline = System.nanoTime() + queueTimeoutNanos;
+        while (true) {
+            int phase = budget.refilled.getPhase();
+            if (budget.tokens.tryAcquire(quantity)) {
+                return true;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            try {
+                budget.refilled.awaitAdvanceInterruptibly(phase, remaining, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                return budget.tokens.tryAcquire(quantity);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    // 商品数达到上限后，新商品不再建预算，直接放行
+    private ProductBudget budget(Long productId, long now) {
+        ProductBudget budget = budgets.get(productId);
+        if (budget == null) {
+            if (budgets.size() >= maxProducts) {
+                return null;
+            }
+            budget = budgets.computeIfAbsent(productId, id -> new ProductBudget(stripes));
+        }
+        budget.lastAccess = now;
+        return budget;
+    }
+
+    // 按 Redis 剩余库存重置各商品预算，长时间没有访问的商品移出闸门
+    @Scheduled(fixedDelayString = "${stock.admission.refill-interval-ms:200}")
+    public void refill() {
+        if (!enabled || budgets.isEmpty()) {
+            return;
+        }
+        long idleBefore = System.currentTimeMillis() - idleMs;
+        budgets.values().removeIf(budget -> budget.lastAccess < idleBefore);
+        List<Long> productIds = new ArrayList<>(budgets.keySet());
+        try {
+            for (int from = 0; from < productIds.size(); from += REFILL_BATCH_SIZE) {
+                List<Long> batch = productIds.subList(from, Math.min(from + REFILL_BATCH_SIZE, productIds.size()));
+                String[] keys = new String[batch.size()];
+                for (int i = 0; i < keys.length; i++) {
+                    keys[i] = StockReservationServiceImpl.STOCK_KEY_PREFIX + batch.get(i);
+                }
+                Map<String, String> stocks = redissonClient.getBuckets(StringCodec.INSTANCE).get(keys);
+                for (int i = 0; i < keys.length; i++) {
+                    ProductBudget budget = budgets.get(batch.get(i));
+                    if (budget != null) {
+                        budget.reset(stocks.get(keys[i]), share);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("补充本地库存预算失败，沿用上一次的预算: {}", e.getMessage());
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("products", budgets.size());
+        stats.put("admitted", admitted.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("queued", queued.sum());
+        Map<Long, Long> available = new LinkedHashMap<>();
+        budgets.entrySet().stream()
+                .filter(entry -> entry.getValue().loaded)
+                .sorted(Map.Entry.comparingByValue((a, b) -> Long.compare(a.tokens.available(), b.tokens.available())))
+                .limit(20)
+                .forEach(entry -> available.put(entry.getKey(), entry.getValue().tokens.available()));
+        // 剩余预算最少的商品
+        stats.put("lowest", available);
+        return stats;
+    }
+
+    private static final class ProductBudget {
+        final StripedBudget tokens;
+        // 每次补充推进一个阶段，唤醒排队的请求
+        final Phaser refilled = new Phaser(1);
+        volatile boolean loaded;
+        volatile long lastAccess;
+
+        ProductBudget(int stripes) {
+            this.tokens = new StripedBudget(stripes);
+        }
+
+        void reset(String stock, double share) {
+            if (stock == null) {
+                // Redis 尚未加载（或对账时删除了）库存
+                loaded = false;
+                return;
+            }
+            long available = Math.max(0, Long.parseLong(stock));
+            // 向上取整：只剩 1 件时每个节点也至少能放行 1 个请求
+            tokens.reset((long) Math.ceil(available * share));
+            loaded = true;
+            refilled.arrive();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.StockDeduction;
+import com.example.demo.mapper.StockDeductionMapper;
+import com.example.demo.shard.ShardContext;
+import com.example.demo.shard.ShardRouter;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 跨分片下单的库存扣减记账。订单不在商品分片时，库存在商品分片的独立事务里扣减，并在同一事务里写入
+ * stock_deduction 记录；订单事务提交后删除记录，回滚后加回库存并删除记录。
+ * <p>
+ * 两次提交之间节点崩溃时记录会留下来，由 {@link com.example.demo.job.StockDeductionRepairJob}
+ * 按订单是否落库删除或加回。加回和删除在一个事务里、以加锁读到记录为前提，补偿和修复不会重复加回。
+ */
+@Component
+public class StockDeductionLedger {
+
+    private final StockDeductionMapper stockDeductionMapper;
+    private final ProductService productService;
+    // 商品分片上的独立事务，挂起当前分片的订单事务
+    private final TransactionTemplate productShardTransaction;
+
+    public StockDeductionLedger(StockDeductionMapper stockDeductionMapper, ProductService productService,
+                                PlatformTransactionManager transactionManager) {
+        this.stockDeductionMapper = stockDeductionMapper;
+        this.productService = productService;
+        this.productShardTransaction = new TransactionTemplate(transactionManager);
+        this.productShardTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * 在商品分片的独立事务里扣减库存并记账，返回本次扣减的标识；库存不足时返回 null，不留记录。
+     */
+    public String deduct(String orderNumber, Map<Long, Integer> quantities) {
+        String deductionId = UUID.randomUUID().toString();
+        Boolean deducted = ShardContext.call(ShardRouter.PRODUCT_SHARD, () -> productShardTransaction.execute(status -> {
+            if (!productService.deductStockBatch(quantities)) {
+                return false;
+            }
+            stockDeductionMapper.insertBatch(deductionId, orderNumber, quantities);
+            return true;
+        }));
+        return Boolean.TRUE.equals(deducted) ? deductionId : null;
+    }
+
+    // 订单已落库：扣减生效，删除记录
+    public void settle(String deductionId) {
+        ShardContext.run(ShardRouter.PRODUCT_SHARD, () -> productShardTransaction.executeWithoutResult(status ->
+                stockDeductionMapper.deleteByDeductionId(deductionId)));
+    }
+
+    /**
+     * 订单未落库：按记录加回库存并删除记录。记录已被处理过时什么都不做，返回 false。
+     */
+    public boolean restore(String deductionId) {
+        Boolean restored = ShardContext.call(ShardRouter.PRODUCT_SHARD, () -> productShardTransaction.execute(status -> {
+            List<StockDeduction> deductions = stockDeductionMapper.lockByDeductionId(deductionId);
+            if (deductions.isEmpty()) {
+                return false;
+            }
+            Map<Long, Integer> quantities = new LinkedHashMap<>();
+            for (StockDeduction deduction : deductions) {
+                quantities.merge(deduction.getProductId(), deduction.getQuantity(), Integer::sum);
+            }
+            productService.increaseStockBatch(quantities);
+            stockDeductionMapper.deleteByDeductionId(deductionId);
+            return true;
+        }));
+        return Boolean.TRUE.equals(restored);
+    }
+
+    // 创建时间早于 before 仍未确认的扣减（只含标识和订单号）
+    public List<StockDeduction> findStale(LocalDateTime before, int limit) {
+        return ShardContext.call(ShardRouter.PRODUCT_SHARD, () -> stockDeductionMapper.findStale(before, limit));
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.demo.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// GET /actuator/stockjournal 查看库存日志积压、本节点待合并的变化量和合并计数
+@Component
+@Endpoint(id = "stockjournal")
+@RequiredArgsConstructor
+public class StockJournalEndpoint {
+
+    private final StockWriteBehindBuffer stockWriteBehindBuffer;
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        return stockWriteBehindBuffer.stats();
+    }
+}
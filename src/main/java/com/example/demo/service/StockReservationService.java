@@ -0,0 +1,31 @@
+package com.example.demo.service;
+
+import java.util.Map;
+
+/**
+ * Redis 预扣库存：下单时先在 Redis 中原子扣减，库存不足直接拒绝，不触达数据库。
+ * 预扣记录在事务提交后确认、回滚后归还，由对账任务异步修复与 MySQL 之间的偏差。
+ */
+public interface StockReservationService {
+
+    /**
+     * 原子预扣一组商品库存（全部成功或全部失败）
+     *
+     * @param token      预扣凭证（订单号）
+     * @param quantities 商品ID -> 数量
+     * @throws com.example.demo.exception.InsufficientStockException 任一商品库存不足
+     */
+    void reserve(String token, Map<Long, Integer> quantities);
+
+    // 订单已落库：预扣转为实际扣减
+    void confirm(String token);
+
+    // 下单失败：归还预扣的库存
+    void release(String token);
+
+    // 已落库的订单被取消：把库存加回 Redis
+    void restore(Map<Long, Integer> quantities);
+
+    // 清理孤儿预扣并以数据库为准修复库存偏差
+    void reconcile();
+}
@@ -0,0 +1,248 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Product;
+import com.example.demo.exception.InsufficientStockException;
+import com.example.demo.mapper.ProductMapper;
+import com.example.demo.metrics.ShopMetrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RScoredSortedSet;
+import org.redisson.api.RScript;
+import org.redisson.api.RSet;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockReservationServiceImpl implements StockReservationService {
+    static final String STOCK_KEY_PREFIX = "stock:";
+    // 已预扣但订单尚未落库的数量：商品ID -> 数量
+    private static final String INFLIGHT_KEY = "stock:inflight";
+    // 未完成的预扣：凭证 -> 预扣时间
+    private static final String RESERVATIONS_KEY = "stock:reservations";
+    // 单次预扣明细：商品ID -> 数量
+    private static final String RESERVATION_KEY_PREFIX = "stock:reservation:";
+    // 已加载到 Redis 的商品，对账时遍历
+    private static final String TRACKED_PRODUCTS_KEY = "stock:products";
+
+    // 返回 0 成功；i 表示第 i 个商品库存不足；-i 表示第 i 个商品库存尚未加载
+    private static final String RESERVE_SCRIPT =
+            "local n = #KEYS - 3 " +
+            "for i = 1, n do " +
+            "  local s = redis.call('get', KEYS[i + 3]) " +
+            "  if s == false then return -i end " +
+            "  if tonumber(s) < tonumber(ARGV[2 + i]) then return i end " +
+            "end " +
+            "for i = 1, n do " +
+            "  redis.call('decrby', KEYS[i + 3], ARGV[2 + i]) " +
+            "  redis.call('hincrby', KEYS[1], ARGV[2 + n + i], ARGV[2 + i]) " +
+            "  redis.call('hset', KEYS[3], ARGV[2 + n + i], ARGV[2 + i]) " +
+            "end " +
+            "redis.call('zadd', KEYS[2], ARGV[2], ARGV[1]) " +
+            "return 0";
+
+    // ARGV[2] 为 1 时把预扣的数量加回库存（回滚），否则只清除在途数量（提交）。
+    // 库存 key 由调用方按预扣明细放在 KEYS[4..]，ARGV[2 + i] 为对应的商品ID；明细已被删除（重复结算）时不做任何修改
+    private static final String SETTLE_SCRIPT =
+            "local settled = 0 " +
+            "for i = 1, #KEYS - 3 do " +
+            "  local q = redis.call('hget', KEYS[3], ARGV[2 + i]) " +
+            "  if q then " +
+            "    redis.call('hincrby', KEYS[1], ARGV[2 + i], -tonumber(q)) " +
+            "    if ARGV[2] == '1' and redis.call('exists', KEYS[i + 3]) == 1 then " +
+            "      redis.call('incrby', KEYS[i + 3], q) " +
+            "    end " +
+            "    settled = settled + 1 " +
+            "  end " +
+            "end " +
+            "redis.call('del', KEYS[3]) " +
+            "redis.call('zrem', KEYS[2], ARGV[1]) " +
+            "return settled";
+
+    private static final String RESTORE_SCRIPT =
+            "for i = 1, #KEYS do " +
+            "  if redis.call('exists', KEYS[i]) == 1 then redis.call('incrby', KEYS[i], ARGV[i]) end " +
+            "end " +
+            "return #KEYS";
+
+    // 以数据库库存减去在途数量作为 Redis 应有库存；ARGV[3] 为 1 时仅在 key 不存在时写入（首次加载）
+    private static final String SYNC_SCRIPT =
+            "local inflight = tonumber(redis.call('hget', KEYS[2], ARGV[1]) or '0') " +
+            "local expected = tonumber(ARGV[2]) - inflight " +
+            "if expected < 0 then expected = 0 end " +
+            "local current = redis.call('get', KEYS[1]) " +
+            "if ARGV[3] == '1' and current ~= false then return 0 end " +
+            "redis.call('set', KEYS[1], expected) " +
+            "redis.call('sadd', KEYS[3], ARGV[1]) " +
+            "if current == false then return 0 end " +
+            "return expected - tonumber(current)";
+
+    private static final int RECONCILE_BATCH_SIZE = 500;
+
+    private final RedissonClient redissonClient;
+    private final ProductMapper productMapper;
+    private final StockAdmissionGate stockAdmissionGate;
+    private final ShopMetrics shopMetrics;
+
+    @Value("${stock.reservation.orphan-timeout-ms:60000}")
+    private long orphanTimeoutMs;
+    // 开启 write-behind 时数据库库存要加上 stock_journal 中未合并的变化量
+    @Value("${stock.write-behind.enabled:false}")
+    private boolean writeBehind;
+
+    @Override
+    public void reserve(String token, Map<Long, Integer> quantities) {
+        // 本地预算不足时直接拒绝，不执行预扣脚本
+        stockAdmissionGate.acquire(quantities);
+        try {
+            reserveInRedis(token, quantities);
+        } catch (InsufficientStockException e) {
+            // 库存确实不足，令牌不归还，等下次补充按 Redis 重置
+            shopMetrics.stockRejected(ShopMetrics.STAGE_RESERVATION);
+            throw e;
+        } catch (RuntimeException e) {
+            stockAdmissionGate.release(quantities);
+            throw e;
+        }
+    }
+
+    private void reserveInRedis(String token, Map<Long, Integer> quantities) {
+        int n = quantities.size();
+        List<Long> productIds = new ArrayList<>(quantities.keySet());
+        List<Object> keys = new ArrayList<>(n + 3);
+        keys.add(INFLIGHT_KEY);
+        keys.add(RESERVATIONS_KEY);
+        keys.add(RESERVATION_KEY_PREFIX + token);
+        Object[] args = new Object[2 + 2 * n];
+        args[0] = token;
+        args[1] = String.valueOf(System.currentTimeMillis());
+        for (int i = 0; i < n; i++) {
+            Long productId = productIds.get(i);
+            keys.add(STOCK_KEY_PREFIX + productId);
+            args[2 + i] = String.valueOf(quantities.get(productId));
+            args[2 + n + i] = String.valueOf(productId);
+        }
+
+        RScript script = redissonClient.getScript(StringCodec.INSTANCE);
+        // 每次最多补加载一个商品的库存，因此最多尝试 n + 1 次
+        for (int attempt = 0; attempt <= n; attempt++) {
+            Long result = script.eval(RScript.Mode.READ_WRITE, RESERVE_SCRIPT,
+                    RScript.ReturnType.INTEGER, keys, args);
+            if (result == 0) {
+                return;
+            }
+            if (result > 0) {
+                throw new InsufficientStockException("商品ID: " + productIds.get(result.intValue() - 1) + " 库存不足");
+            }
+            loadStock(productIds.get(-result.intValue() - 1));
+        }
+        throw new InsufficientStockException("库存预扣失败，请重试");
+    }
+
+    @Override
+    public void confirm(String token) {
+        settle(token, false);
+    }
+
+    @Override
+    public void release(String token) {
+        settle(token, true);
+    }
+
+    @Override
+    public void restore(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        List<Object> keys = new ArrayList<>(quantities.size());
+        Object[] args = new Object[quantities.size()];
+        int i = 0;
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            keys.add(STOCK_KEY_PREFIX + entry.getKey());
+            args[i++] = String.valueOf(entry.getValue());
+        }
+        redissonClient.getScript(StringCodec.INSTANCE)
+                .eval(RScript.Mode.READ_WRITE, RESTORE_SCRIPT, RScript.ReturnType.INTEGER, keys, args);
+    }
+
+    @Override
+    public void reconcile() {
+        // 1. 超时未确认的预扣视为孤儿（进程在提交前后崩溃），只清除在途数量，库存由第 2 步按数据库修正
+        RScoredSortedSet<String> reservations = redissonClient.getScoredSortedSet(RESERVATIONS_KEY, StringCodec.INSTANCE);
+        Collection<String> orphans = reservations.valueRange(0, true,
+                System.currentTimeMillis() - orphanTimeoutMs, true);
+        for (String token : orphans) {
+            log.warn("清理孤儿库存预扣，凭证: {}", token);
+            settle(token, false);
+        }
+
+        // 2. 以数据库为准修复偏差
+        RSet<String> tracked = redissonClient.getSet(TRACKED_PRODUCTS_KEY, StringCodec.INSTANCE);
+        List<Long> productIds = new ArrayList<>();
+        for (String id : tracked.readAll()) {
+            productIds.add(Long.valueOf(id));
+        }
+        for (int from = 0; from < productIds.size(); from += RECONCILE_BATCH_SIZE) {
+            List<Long> batch = productIds.subList(from, Math.min(from + RECONCILE_BATCH_SIZE, productIds.size()));
+            Set<Long> missing = new HashSet<>(batch);
+            for (Product product : productMapper.findStockByIds(batch, writeBehind)) {
+                missing.remove(product.getId());
+                long drift = syncStock(product.getId(), product.getStock(), false);
+                if (drift != 0) {
+                    log.warn("修复库存偏差，商品ID: {}, 偏差: {}", product.getId(), drift);
+                }
+            }
+            for (Long productId : missing) {
+                redissonClient.getBucket(STOCK_KEY_PREFIX + productId, StringCodec.INSTANCE).delete();
+                tracked.remove(String.valueOf(productId));
+            }
+        }
+    }
+
+    private void settle(String token, boolean giveBack) {
+        String reservationKey = RESERVATION_KEY_PREFIX + token;
+        // 先读出预扣明细中的商品，脚本访问的库存 key 都通过 KEYS 传入，不在脚本里拼接
+        Set<String> productIds = redissonClient.<String, String>getMap(reservationKey, StringCodec.INSTANCE).readAllKeySet();
+        List<Object> keys = new ArrayList<>(productIds.size() + 3);
+        keys.add(INFLIGHT_KEY);
+        keys.add(RESERVATIONS_KEY);
+        keys.add(reservationKey);
+        List<Object> args = new ArrayList<>(productIds.size() + 2);
+        args.add(token);
+        args.add(giveBack ? "1" : "0");
+        for (String productId : productIds) {
+            keys.add(STOCK_KEY_PREFIX + productId);
+            args.add(productId);
+        }
+        redissonClient.getScript(StringCodec.INSTANCE).eval(RScript.Mode.READ_WRITE, SETTLE_SCRIPT,
+                RScript.ReturnType.INTEGER, keys, args.toArray());
+    }
+
+    // 首次访问时从数据库加载库存
+    private void loadStock(Long productId) {
+        Integer stock = productMapper.getStock(productId, writeBehind);
+        if (stock == null) {
+            throw new InsufficientStockException("商品ID: " + productId + " 库存不足");
+        }
+        syncStock(productId, stock, true);
+        log.info("加载商品库存到Redis，商品ID: {}, 库存: {}", productId, stock);
+    }
+
+    private long syncStock(Long productId, Integer dbStock, boolean onlyIfAbsent) {
+        List<Object> keys = List.of(STOCK_KEY_PREFIX + productId, INFLIGHT_KEY, TRACKED_PRODUCTS_KEY);
+        Long drift = redissonClient.getScript(StringCodec.INSTANCE).eval(RScript.Mode.READ_WRITE, SYNC_SCRIPT,
+                RScript.ReturnType.INTEGER, keys, String.valueOf(productId), String.valueOf(dbStock),
+                onlyIfAbsent ? "1" : "0");
+        return drift == null ? 0 : drift;
+    }
+}
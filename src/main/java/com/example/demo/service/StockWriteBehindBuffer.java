@@ -0,0 +1,195 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.StockJournalEntry;
+import com.example.demo.mapper.ProductMapper;
+import com.example.demo.mapper.StockJournalMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 库存 write-behind 缓冲：加/扣库存不再各自 UPDATE 热点商品行，而是在业务事务内追加一条 stock_journal 记录
+ * （随业务事务一起提交，提交即持久化），定期按商品合并净变化量，用一条 CASE 语句写回 products.stock。
+ * <p>
+ * 严格模式（默认）只缓冲加库存，扣库存仍是同步的条件更新：products.stock 只会低于实际库存，不会超卖，
+ * 代价是退回的库存要等下一次合并后才能被数据库扣减。非严格模式下扣库存也进入日志，防超卖完全依赖 Redis 预扣。
+ * <p>
+ * 日志在数据库中，节点崩溃不会丢失；启动时先合并遗留的记录。开启时读库存（{@link ProductMapper#getStock}）
+ * 已把未合并的记录算在内；未开启时完全不访问 stock_journal。未合并的量直接从日志表汇总，所有节点看到的是同一份积压。
+ */
+@Component
+@Slf4j
+public class StockWriteBehindBuffer {
+    private static final String FLUSH_LOCK_KEY = "stock:journal:flush_lock";
+    // stats 中列出的未合并商品数上限
+    private static final int PENDING_STATS_LIMIT = 20;
+
+    private final ProductMapper productMapper;
+    private final StockJournalMapper stockJournalMapper;
+    private final ProductOutbox productOutbox;
+    private final RedissonClient redissonClient;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final boolean strict;
+    private final int batchSize;
+
+    private final LongAdder mergedEntries = new LongAdder();
+    private final LongAdder mergedUpdates = new LongAdder();
+
+    public StockWriteBehindBuffer(ProductMapper productMapper,
+                                  StockJournalMapper stockJournalMapper,
+                                  ProductOutbox productOutbox,
+                                  RedissonClient redissonClient,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${stock.write-behind.enabled:false}") boolean enabled,
+                                  @Value("${stock.write-behind.strict:true}") boolean strict,
+                                  @Value("${stock.write-behind.batch-size:1000}") int batchSize) {
+        this.productMapper = productMapper;
+        this.stockJournalMapper = stockJournalMapper;
+        this.productOutbox = productOutbox;
+        this.redissonClient = redissonClient;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.strict = strict;
+        this.batchSize = batchSize;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // 扣库存是否也走缓冲（仅非严格模式）
+    public boolean buffersDeductions() {
+        return enabled && !strict;
+    }
+
+    /**
+     * 在当前事务内记录库存变化量，正数为加库存、负数为扣库存。
+     * 记录随事务提交落库后才算受理，事务回滚则一并撤销。
+     */
+    public void record(Map<Long, Integer> deltas) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("库存变化必须在事务内记录");
+        }
+        Map<Long, Integer> nonZero = new LinkedHashMap<>(deltas);
+        nonZero.values().removeIf(delta -> delta == 0);
+        if (nonZero.isEmpty()) {
+            return;
+        }
+        stockJournalMapper.insertBatch(nonZero);
+    }
+
+    @Scheduled(fixedDelayString = "${stock.write-behind.flush-interval-ms:1000}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            flushAll();
+        } catch (Exception e) {
+            log.error("合并库存日志失败: {}", e.getMessage(), e);
+        }
+    }
+
+    // 合并崩溃前遗留的日志。未开启时不访问 stock_journal（可能没有建表），读库存也不再计入日志
+    @EventListener(ApplicationReadyEvent.class)
+    public void replay() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int merged = flushAll();
+            if (merged > 0) {
+                log.warn("启动时合并遗留的库存日志，记录数: {}", merged);
+            }
+        } catch (Exception e) {
+            // 读库存已包含未合并的记录，不影响正确性，交给定时任务重试
+            log.error("启动时合并库存日志失败: {}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        flush();
+    }
+
+    /**
+     * 合并全部已提交的日志，返回合并的记录数。集群内同一时间只有一个节点合并。
+     */
+    public int flushAll() {
+        RLock lock = redissonClient.getLock(FLUSH_LOCK_KEY);
+        if (!lock.tryLock()) {
+            return 0;
+        }
+        try {
+            int total = 0;
+            int merged;
+            do {
+                merged = flushBatch();
+                total += merged;
+            } while (merged == batchSize);
+            return total;
+        } finally {
+            if (lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    // 一个事务内：取一批日志、按商品合并净变化量写回库存、删除已合并的日志
+    private int flushBatch() {
+        Integer merged = transactionTemplate.execute(status -> {
+            List<StockJournalEntry> entries = stockJournalMapper.lockOldest(batchSize);
+            if (entries.isEmpty()) {
+                return 0;
+            }
+            Map<Long, Integer> deltas = new HashMap<>();
+            List<Long> ids = new ArrayList<>(entries.size());
+            for (StockJournalEntry entry : entries) {
+                deltas.merge(entry.getProductId(), entry.getDelta(), Integer::sum);
+                ids.add(entry.getId());
+            }
+            deltas.values().removeIf(delta -> delta == 0);
+            if (!deltas.isEmpty()) {
+                productMapper.applyStockDeltas(deltas);
+                productOutbox.record(deltas.keySet(), ProductOutbox.STOCK);
+            }
+            stockJournalMapper.deleteByIds(ids);
+            mergedUpdates.add(deltas.size());
+            return entries.size();
+        });
+        mergedEntries.add(merged);
+        return merged;
+    }
+
+    public Map<String, Object> stats() {
+        // 积压从日志表读取，与哪个节点持有合并锁无关
+        Map<Long, Integer> pending = new LinkedHashMap<>();
+        stockJournalMapper.sumByProduct(PENDING_STATS_LIMIT)
+                .forEach(entry -> pending.put(entry.getProductId(), entry.getDelta()));
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("strict", strict);
+        stats.put("backlog", stockJournalMapper.count());
+        stats.put("pending", pending);
+        stats.put("mergedEntries", mergedEntries.sum());
+        stats.put("mergedUpdates", mergedUpdates.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.demo.shard;
+
+import java.util.function.Supplier;
+
+/**
+ * 当前线程要访问的分片，由 {@link ShardRoutingDataSource} 在获取连接时读取。
+ * 事务在开始时就拿到连接，因此必须在开启事务之前设置；未设置时访问默认分片（商品等全局表所在分片）。
+ */
+public final class ShardContext {
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static Integer current() {
+        return CURRENT.get();
+    }
+
+    // 在指定分片上执行，结束后恢复原来的分片，可以嵌套
+    public static <T> T call(int shard, Supplier<T> action) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    public static void run(int shard, Runnable action) {
+        call(shard, () -> {
+            action.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.demo.shard;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 分片路由：订单和订单项按 userId 取模分到 N 个库，同一用户的订单都在一个分片上，按用户查询不跨库。
+ * <p>
+ * 订单主键在各分片上按步长 N、起始值 shard + 1 自增（由 ShardingConfig 在每个连接上设置
+ * auto_increment_increment / auto_increment_offset），全局唯一且可由主键算出分片。商品等全局表只在 0 号分片。
+ * <p>
+ * 分片前的订单都在 0 号分片、主键连续，不满足上面的规律：主键不超过 legacyMaxOrderId 的订单一律路由到 0 号分片，
+ * 各分片新订单的主键必须大于该值（启用分片前把每个分片 orders 表的 AUTO_INCREMENT 调到该值之上）。
+ */
+public class ShardRouter {
+    public static final int PRODUCT_SHARD = 0;
+    // 订单号中分片号占两位 Base32
+    public static final int MAX_SHARDS = 1024;
+
+    private final int shardCount;
+    private final long legacyMaxOrderId;
+
+    public ShardRouter(int shardCount) {
+        this(shardCount, 0);
+    }
+
+    public ShardRouter(int shardCount, long legacyMaxOrderId) {
+        if (shardCount < 1 || shardCount > MAX_SHARDS) {
+            throw new IllegalArgumentException("分片数必须在 1 到 " + MAX_SHARDS + " 之间: " + shardCount);
+        }
+        if (legacyMaxOrderId < 0) {
+            throw new IllegalArgumentException("legacyMaxOrderId 不能为负数: " + legacyMaxOrderId);
+        }
+        this.shardCount = shardCount;
+        this.legacyMaxOrderId = legacyMaxOrderId;
+    }
+
+    public static ShardRouter single() {
+        return new ShardRouter(1);
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    public List<Integer> shards() {
+        List<Integer> shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(i);
+        }
+        return shards;
+    }
+
+    public int shardOfUser(Long userId) {
+        return (int) Math.floorMod(userId, (long) shardCount);
+    }
+
+    public int shardOfOrderId(long orderId) {
+        if (orderId <= legacyMaxOrderId) {
+            return PRODUCT_SHARD;
+        }
+        return (int) Math.floorMod(orderId - 1, (long) shardCount);
+    }
+
+    // 分片 shard 上每个连接执行的 SQL：主键按步长 N、起始值 shard + 1 自增；只有一个分片时不需要
+    public String idSequenceInitSql(int shard) {
+        if (shardCount == 1) {
+            return null;
+        }
+        return "SET SESSION auto_increment_increment = " + shardCount + ", auto_increment_offset = " + (shard + 1);
+    }
+
+    public boolean isProductShard(int shard) {
+        return shard == PRODUCT_SHARD;
+    }
+
+    // 按分片分组订单ID，分片号升序
+    public Map<Integer, List<Long>> groupOrderIds(Collection<Long> orderIds) {
+        Map<Integer, List<Long>> groups = new TreeMap<>();
+        for (Long orderId : orderIds) {
+            groups.computeIfAbsent(shardOfOrderId(orderId), shard -> new ArrayList<>()).add(orderId);
+        }
+        return groups;
+    }
+}
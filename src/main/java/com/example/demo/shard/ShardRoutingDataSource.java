@@ -0,0 +1,42 @@
+package com.example.demo.shard;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 按 ShardContext 选择分片数据源；未设置分片时使用默认分片（0 号）
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private final List<? extends DataSource> shards;
+
+    public ShardRoutingDataSource(List<? extends DataSource> shards) {
+        this.shards = shards;
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            targets.put(i, shards.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(ShardRouter.PRODUCT_SHARD));
+        // 分片号不存在时直接报错，不能悄悄落到默认分片
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.current();
+    }
+
+    // 关闭各分片的连接池
+    @Override
+    public void close() throws Exception {
+        for (DataSource shard : shards) {
+            if (shard instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.demo.shard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.IntFunction;
+
+/**
+ * 跨分片查询（管理后台等）：在每个分片上并行执行同一个查询，合并结果。
+ * 排序、截断由调用方在合并后处理。
+ */
+public class ShardScatterGather {
+
+    private final ShardRouter shardRouter;
+    private final Executor executor;
+
+    public ShardScatterGather(ShardRouter shardRouter, Executor executor) {
+        this.shardRouter = shardRouter;
+        this.executor = executor;
+    }
+
+    public <T> List<T> gather(IntFunction<List<T>> query) {
+        if (shardRouter.shardCount() == 1) {
+            return ShardContext.call(ShardRouter.PRODUCT_SHARD, () -> query.apply(ShardRouter.PRODUCT_SHARD));
+        }
+        List<CompletableFuture<List<T>>> futures = new ArrayList<>(shardRouter.shardCount());
+        for (int shard : shardRouter.shards()) {
+            futures.add(CompletableFuture.supplyAsync(() -> ShardContext.call(shard, () -> query.apply(shard)), executor));
+        }
+        List<T> results = new ArrayList<>();
+        try {
+            for (CompletableFuture<List<T>> future : futures) {
+                results.addAll(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return results;
+    }
+}
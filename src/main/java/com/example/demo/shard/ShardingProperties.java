@@ -0,0 +1,35 @@
+package com.example.demo.shard;
+
+import com.example.demo.replica.DataSourcePool;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分片数据源配置。未开启时只有一个分片，使用 spring.datasource；
+ * 开启后 shards 按顺序为 0..N-1 号分片，0 号分片同时存放商品等全局表。
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "sharding")
+public class ShardingProperties {
+    private boolean enabled;
+    // 分片前已有订单的最大主键，这些订单都在 0 号分片
+    private long legacyMaxOrderId;
+    private List<Shard> shards = new ArrayList<>();
+
+    public int shardCount() {
+        return enabled ? shards.size() : 1;
+    }
+
+    @Data
+    @EqualsAndHashCode(callSuper = true)
+    public static class Shard extends DataSourcePool {
+        // 本分片的从库，datasource.replica.enabled=true 时只读查询路由到这里
+        private List<DataSourcePool> replicas = new ArrayList<>();
+    }
+}
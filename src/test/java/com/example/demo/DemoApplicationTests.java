@@ -1,10 +1,9 @@
 package com.example.demo;
 
+import com.example.demo.support.EmbeddedEnvironmentTest;
 import org.junit.jupiter.api.Test;
-import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
-class DemoApplicationTests {
+class DemoApplicationTests extends EmbeddedEnvironmentTest {
 
     @Test
     void contextLoads() {
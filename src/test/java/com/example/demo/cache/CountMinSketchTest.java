@@ -0,0 +1,61 @@
+package com.example.demo.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CountMinSketchTest {
+
+    private static final int WIDTH = 1024;
+    private static final int DEPTH = 4;
+
+    @Test
+    void estimateNeverUnderCountsAndStaysWithinBound() {
+        CountMinSketch sketch = new CountMinSketch(WIDTH, DEPTH);
+        Map<Long, Long> actual = new HashMap<>();
+        // 偏斜的访问分布：少数商品占大部分访问
+        Random random = new Random(42);
+        int total = 100_000;
+        for (int i = 0; i < total; i++) {
+            long key = (long) Math.pow(10_000, random.nextDouble());
+            sketch.add(key);
+            actual.merge(key, 1L, Long::sum);
+        }
+
+        // 误差超过 e * N / width 的概率不超过 e^-depth
+        double bound = Math.E * total / WIDTH;
+        int violations = 0;
+        for (Map.Entry<Long, Long> entry : actual.entrySet()) {
+            long estimate = sketch.estimate(entry.getKey());
+            assertTrue(estimate >= entry.getValue());
+            if (estimate - entry.getValue() > bound) {
+                violations++;
+            }
+        }
+        assertTrue(violations <= actual.size() * Math.exp(-DEPTH), "超出误差上界的商品数: " + violations);
+    }
+
+    @Test
+    void addReturnsEstimateAndClearResets() {
+        CountMinSketch sketch = new CountMinSketch(WIDTH, DEPTH);
+        assertEquals(0, sketch.estimate(7L));
+        assertEquals(1, sketch.add(7L));
+        assertEquals(2, sketch.add(7L));
+        assertEquals(2, sketch.estimate(7L));
+
+        sketch.clear();
+        assertEquals(0, sketch.estimate(7L));
+    }
+
+    @Test
+    void rejectsUnsupportedDepth() {
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(WIDTH, 0));
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(WIDTH, 9));
+    }
+}
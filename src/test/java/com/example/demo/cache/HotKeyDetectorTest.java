@@ -0,0 +1,94 @@
+package com.example.demo.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HotKeyDetectorTest {
+
+    private static final int SLICES = 3;
+    private static final long PROMOTE = 10;
+    private static final long DEMOTE = 5;
+
+    @Test
+    void promotesAtThresholdAndDecaysOutOfWindow() {
+        HotKeyDetector detector = detector(10);
+        record(detector, 1L, PROMOTE - 1);
+        assertFalse(detector.isHot(1L));
+        detector.record(1L);
+        assertTrue(detector.isHot(1L));
+
+        // 访问量仍在窗口内时保持热点
+        for (int i = 0; i < SLICES - 1; i++) {
+            detector.rotate();
+            assertTrue(detector.isHot(1L));
+            assertEquals(PROMOTE, detector.estimate(1L));
+        }
+        // 记录访问的时间片被清空后降级
+        detector.rotate();
+        assertEquals(0, detector.estimate(1L));
+        assertFalse(detector.isHot(1L));
+    }
+
+    @Test
+    void staysHotBetweenDemoteAndPromoteThresholds() {
+        HotKeyDetector detector = detector(10);
+        record(detector, 1L, PROMOTE);
+        detector.rotate();
+        record(detector, 1L, DEMOTE);
+        detector.rotate();
+        detector.rotate();
+
+        // 最早的时间片已滑出，窗口内只剩 DEMOTE 次访问，未低于降级阈值
+        assertEquals(DEMOTE, detector.estimate(1L));
+        assertTrue(detector.isHot(1L));
+        detector.rotate();
+        assertFalse(detector.isHot(1L));
+    }
+
+    @Test
+    void hotSetIsCappedAtTopK() {
+        HotKeyDetector detector = detector(2);
+        record(detector, 1L, PROMOTE);
+        record(detector, 2L, PROMOTE);
+        record(detector, 3L, PROMOTE * 2);
+
+        assertTrue(detector.isHot(1L));
+        assertTrue(detector.isHot(2L));
+        assertFalse(detector.isHot(3L));
+        assertEquals(2, detector.snapshot().size());
+
+        // 有热点降级后，仍然热的商品在下一次访问时晋升
+        detector.rotate();
+        record(detector, 3L, PROMOTE);
+        detector.rotate();
+        detector.rotate();
+        assertFalse(detector.isHot(1L));
+        assertFalse(detector.isHot(2L));
+        detector.record(3L);
+        assertTrue(detector.isHot(3L));
+    }
+
+    @Test
+    void pinnedIdsAreAlwaysHot() {
+        HotKeyDetector detector = new HotKeyDetector(SLICES, 1024, 4, PROMOTE, DEMOTE, 10, Set.of(42L));
+        assertTrue(detector.isHot(42L));
+        detector.rotate();
+        assertTrue(detector.isHot(42L));
+        assertEquals(1, detector.snapshot().size());
+    }
+
+    private static HotKeyDetector detector(int maxHotKeys) {
+        return new HotKeyDetector(SLICES, 1024, 4, PROMOTE, DEMOTE, maxHotKeys, Set.of());
+    }
+
+    private static void record(HotKeyDetector detector, Long productId, long times) {
+        for (long i = 0; i < times; i++) {
+            detector.record(productId);
+        }
+    }
+}
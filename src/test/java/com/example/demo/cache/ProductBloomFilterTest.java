@@ -0,0 +1,156 @@
+package com.example.demo.cache;
+
+import com.example.demo.entity.Product;
+import com.example.demo.mapper.ProductMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.redisson.api.RBloomFilter;
+import org.redisson.api.RBucket;
+import org.redisson.api.RLock;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.MessageListener;
+import org.redisson.client.RedisConnectionException;
+import org.redisson.client.codec.LongCodec;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@MybatisTest
+class ProductBloomFilterTest {
+
+    @Autowired
+    private ProductMapper productMapper;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // 模拟的 Redis：布隆过滤器按 key 区分，current 指针和切换通知各一个
+    private final RedissonClient redissonClient = mock(RedissonClient.class);
+    private final RBucket<String> pointer = mockBucket();
+    private final RTopic rotatedTopic = mock(RTopic.class);
+    private final Map<String, RBloomFilter<Long>> filters = new HashMap<>();
+
+    ProductBloomFilterTest() {
+        when(redissonClient.<String>getBucket("product:bloom:current", StringCodec.INSTANCE)).thenReturn(pointer);
+        when(redissonClient.getTopic("product:bloom:rotated", StringCodec.INSTANCE)).thenReturn(rotatedTopic);
+        RLock lock = mock(RLock.class);
+        when(lock.tryLock()).thenReturn(true);
+        when(lock.isHeldByCurrentThread()).thenReturn(true);
+        when(redissonClient.getLock("product:bloom:rebuild_lock")).thenReturn(lock);
+        when(redissonClient.<Long>getBloomFilter(anyString(), eq(LongCodec.INSTANCE)))
+                .thenAnswer(invocation -> filter(invocation.getArgument(0)));
+    }
+
+    @Test
+    void rebuildScansOnceAndOtherNodesOnlySwitchReference() {
+        List<Long> ids = List.of(insert("布隆商品1"), insert("布隆商品2"));
+        ProductBloomFilter rebuilder = bloomFilter(productMapper);
+        List<Long> added = new ArrayList<>();
+        when(pointer.get()).thenReturn(null);
+
+        rebuilder.warmUp();
+
+        ArgumentCaptor<String> rotated = ArgumentCaptor.forClass(String.class);
+        verify(pointer).set(rotated.capture());
+        verify(rotatedTopic).publish(rotated.getValue());
+        RBloomFilter<Long> next = filters.get(rotated.getValue());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<Long>> batches = ArgumentCaptor.forClass(Collection.class);
+        verify(next).add(batches.capture());
+        batches.getAllValues().forEach(added::addAll);
+        assertTrue(added.containsAll(ids));
+        when(next.contains(ids.get(0))).thenReturn(true);
+        assertTrue(rebuilder.mightContain(ids.get(0)));
+        assertFalse(rebuilder.mightContain(Long.MAX_VALUE));
+
+        // 另一个节点已使用旧一代，收到切换通知后改用新一代，不扫表
+        ProductMapper otherMapper = mock(ProductMapper.class);
+        String previous = "product:bloom:" + (System.currentTimeMillis() - 1000);
+        when(filter(previous).isExists()).thenReturn(true);
+        when(filter(previous).getExpectedInsertions()).thenReturn(100L);
+        when(pointer.get()).thenReturn(previous);
+        ProductBloomFilter other = bloomFilter(otherMapper);
+        other.warmUp();
+        lastListener().onMessage("product:bloom:rotated", rotated.getValue());
+
+        assertTrue(other.mightContain(ids.get(0)));
+        verifyNoInteractions(otherMapper);
+    }
+
+    @Test
+    void redisOutageFallsBackToMightContain() {
+        ProductBloomFilter bloomFilter = bloomFilter(mock(ProductMapper.class));
+        // 预热前放行
+        assertTrue(bloomFilter.mightContain(1L));
+
+        String current = "product:bloom:" + System.currentTimeMillis();
+        when(filter(current).isExists()).thenReturn(true);
+        when(filter(current).getExpectedInsertions()).thenReturn(100L);
+        when(pointer.get()).thenReturn(current);
+        bloomFilter.warmUp();
+        assertFalse(bloomFilter.mightContain(1L));
+
+        // Redis 不可用时不能把其他节点新增的商品判为不存在
+        when(filter(current).contains(any(Long.class))).thenThrow(new RedisConnectionException("连接断开"));
+        assertTrue(bloomFilter.mightContain(1L));
+    }
+
+    private ProductBloomFilter bloomFilter(ProductMapper mapper) {
+        return new ProductBloomFilter(redissonClient, mapper, transactionManager, 100, 0.01, Duration.ofHours(6));
+    }
+
+    @SuppressWarnings("unchecked")
+    private MessageListener<String> lastListener() {
+        ArgumentCaptor<MessageListener<String>> listener = ArgumentCaptor.forClass(MessageListener.class);
+        verify(rotatedTopic, atLeastOnce()).addListener(eq(String.class), listener.capture());
+        return listener.getValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private RBloomFilter<Long> filter(String name) {
+        return filters.computeIfAbsent(name, key -> {
+            RBloomFilter<Long> filter = mock(RBloomFilter.class);
+            when(filter.getName()).thenReturn(key);
+            return filter;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RBucket<String> mockBucket() {
+        return mock(RBucket.class);
+    }
+
+    private Long insert(String name) {
+        LocalDateTime now = LocalDateTime.now();
+        Product product = Product.builder()
+                .name(name)
+                .price(BigDecimal.ONE)
+                .stock(1)
+                .createdTime(now)
+                .updatedTime(now)
+                .build();
+        productMapper.insert(product);
+        return product.getId();
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.demo.cache;
+
+import com.example.demo.entity.Product;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RBucket;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+
+import java.time.Duration;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProductCacheTest {
+
+    private final RedissonClient redissonClient = mock(RedissonClient.class);
+    @SuppressWarnings("unchecked")
+    private final RBucket<CacheEntry> bucket = mock(RBucket.class);
+
+    ProductCacheTest() {
+        when(redissonClient.<CacheEntry>getBucket(anyString())).thenReturn(bucket);
+        when(redissonClient.getTopic(anyString(), any())).thenReturn(mock(RTopic.class));
+    }
+
+    @Test
+    void redisTtlIsNeverNonPositive() {
+        ProductCache productCache = new ProductCache(redissonClient, 100, 60_000);
+        ProductCacheProperties.Policy policy = new ProductCacheProperties.Policy();
+        policy.setHardTtl(Duration.ZERO);
+        policy.setJitter(Duration.ZERO);
+
+        // 硬过期时间为 0 时剩余时长不为正，仍按最短 TTL 写入，不会变成不过期的键
+        productCache.put(1L, new Product(), policy);
+        verify(bucket).set(any(CacheEntry.class), eq(Duration.ofMillis(1)));
+    }
+}
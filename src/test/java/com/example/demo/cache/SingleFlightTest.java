@@ -0,0 +1,198 @@
+package com.example.demo.cache;
+
+import com.example.demo.entity.Product;
+import com.example.demo.mapper.ProductMapper;
+import com.example.demo.service.ProductServiceImpl;
+import com.example.demo.support.ServiceFixtures;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RBucket;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 通过 ProductServiceImpl.getProductDetail 和真实的 ProductCache 验证缓存未命中的请求合并，
+ * Redis 用按 key 存取的模拟桶代替。
+ */
+class SingleFlightTest {
+
+    private static final int READERS = 1000;
+    private static final int WAITERS = 16;
+    private static final long[] KEYS = {1L, 2L, 3L, 4L};
+
+    private final Map<String, CacheEntry> redis = new ConcurrentHashMap<>();
+    private final RedissonClient redissonClient = mock(RedissonClient.class);
+    private final ProductMapper productMapper = mock(ProductMapper.class);
+    private final ProductCache productCache;
+    private final ProductServiceImpl productService;
+
+    SingleFlightTest() {
+        // 并发读取前先建好每个 key 的模拟桶，读取期间不再做桩
+        Map<String, RBucket<CacheEntry>> buckets = new ConcurrentHashMap<>();
+        for (long key : KEYS) {
+            buckets.put("product:" + key, mockBucket("product:" + key));
+        }
+        when(redissonClient.<CacheEntry>getBucket(anyString())).thenAnswer(invocation -> buckets.get(invocation.<String>getArgument(0)));
+        when(redissonClient.getTopic(anyString(), any())).thenReturn(mock(RTopic.class));
+
+        productCache = new ProductCache(redissonClient, 10_000, 60_000);
+        productCache.subscribe();
+        ProductBloomFilter bloomFilter = mock(ProductBloomFilter.class);
+        when(bloomFilter.mightContain(anyLong())).thenReturn(true);
+        productService = ServiceFixtures.productService(productMapper)
+                .redissonClient(redissonClient)
+                .productCache(productCache)
+                .productBloomFilter(bloomFilter)
+                .build();
+    }
+
+    @Test
+    void oneDatabaseLoadPerKeyPerExpiry() throws Exception {
+        Map<Long, AtomicInteger> dbLoads = new ConcurrentHashMap<>();
+        when(productMapper.findById(anyLong())).thenAnswer(invocation -> {
+            Long id = invocation.getArgument(0);
+            dbLoads.computeIfAbsent(id, k -> new AtomicInteger()).incrementAndGet();
+            Thread.sleep(50);
+            return Optional.of(product(id));
+        });
+
+        runReaders();
+        for (long key : KEYS) {
+            assertEquals(1, dbLoads.get(key).get());
+        }
+
+        // 缓存过期后再来一轮，每个 key 只多加载一次
+        for (long key : KEYS) {
+            productCache.evict(key);
+        }
+        runReaders();
+        for (long key : KEYS) {
+            assertEquals(2, dbLoads.get(key).get());
+        }
+        assertEquals(0, rebuildFlight().inFlightCount());
+    }
+
+    @Test
+    void waitersReceiveLeaderFailure() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(productMapper.findById(1L)).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await();
+            throw new IllegalStateException("db down");
+        });
+
+        FutureTask<Product> leader = start(1L);
+        assertTrue(loading.await(10, TimeUnit.SECONDS));
+
+        // leader 卡在查库时再来 N 个请求，全部挂在 leader 的结果上
+        List<Thread> threads = new ArrayList<>();
+        List<FutureTask<Product>> waiters = new ArrayList<>();
+        for (int i = 0; i < WAITERS; i++) {
+            FutureTask<Product> waiter = new FutureTask<>(() -> productService.getProductDetail(1L));
+            Thread thread = new Thread(waiter);
+            thread.start();
+            threads.add(thread);
+            waiters.add(waiter);
+        }
+        awaitParked(threads);
+        release.countDown();
+
+        assertInstanceOf(IllegalStateException.class, failure(leader));
+        for (FutureTask<Product> waiter : waiters) {
+            assertInstanceOf(IllegalStateException.class, failure(waiter));
+        }
+        verify(productMapper, times(1)).findById(1L);
+        assertEquals(0, rebuildFlight().inFlightCount());
+    }
+
+    private void runReaders() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Product>> results = new ArrayList<>();
+        for (int i = 0; i < READERS; i++) {
+            long key = KEYS[i % KEYS.length];
+            results.add(executor.submit(() -> {
+                start.await();
+                return productService.getProductDetail(key);
+            }));
+        }
+        start.countDown();
+        for (int i = 0; i < READERS; i++) {
+            assertEquals(KEYS[i % KEYS.length], results.get(i).get(10, TimeUnit.SECONDS).getId());
+        }
+        executor.shutdown();
+    }
+
+    private FutureTask<Product> start(long id) {
+        FutureTask<Product> task = new FutureTask<>(() -> productService.getProductDetail(id));
+        new Thread(task).start();
+        return task;
+    }
+
+    // 等待线程都停在 leader 的 future 上
+    private static void awaitParked(List<Thread> threads) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!threads.stream().allMatch(thread -> thread.getState() == Thread.State.WAITING)) {
+            assertTrue(System.nanoTime() < deadline, "等待线程未加入合并");
+            Thread.sleep(5);
+        }
+    }
+
+    private static Throwable failure(FutureTask<Product> task) {
+        return assertThrows(ExecutionException.class, () -> task.get(10, TimeUnit.SECONDS)).getCause();
+    }
+
+    @SuppressWarnings("unchecked")
+    private SingleFlight<Long, Product> rebuildFlight() {
+        return (SingleFlight<Long, Product>) ReflectionTestUtils.getField(productService, "rebuildFlight");
+    }
+
+    @SuppressWarnings("unchecked")
+    private RBucket<CacheEntry> mockBucket(String key) {
+        RBucket<CacheEntry> bucket = mock(RBucket.class);
+        when(bucket.get()).thenAnswer(invocation -> redis.get(key));
+        doAnswer(invocation -> redis.put(key, invocation.getArgument(0)))
+                .when(bucket).set(any(CacheEntry.class), any(Duration.class));
+        when(bucket.delete()).thenAnswer(invocation -> redis.remove(key) != null);
+        return bucket;
+    }
+
+    private static Product product(Long id) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName("product-" + id);
+        product.setPrice(BigDecimal.ONE);
+        product.setStock(1);
+        return product;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.demo.concurrency;
+
+import com.example.demo.replica.LazyRoutingDataSource;
+import com.example.demo.shard.ShardRoutingDataSource;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class ConnectionLimiterTest {
+
+    @Test
+    void routingDataSourcesAreNotGatedAsOnePool() {
+        ConnectionLimiter limiter = new ConnectionLimiter(true, null, 50, 2);
+        // 各分片的连接池在创建时各自加闸门，许可数跟随各自的连接池大小
+        DataSource shard0 = limiter.wrap("shard-0", mock(DataSource.class), 4);
+        DataSource shard1 = limiter.wrap("shard-1", mock(DataSource.class), 8);
+        DataSource sharded = new ShardRoutingDataSource(List.of(shard0, shard1));
+        DataSource lazy = new LazyRoutingDataSource(sharded);
+
+        assertSame(sharded, limiter.limit("dataSource", sharded));
+        assertSame(lazy, limiter.limit("dataSource", lazy));
+        assertEquals(4, ((ConnectionLimitingDataSource) shard0).getMaxConcurrency());
+        assertEquals(8, ((ConnectionLimitingDataSource) shard1).getMaxConcurrency());
+        assertEquals(2, limiter.stats().size());
+    }
+
+    @Test
+    void plainPoolIsGatedWithDefaultSize() {
+        ConnectionLimiter limiter = new ConnectionLimiter(true, null, 50, 2);
+        DataSource limited = limiter.limit("dataSource", mock(DataSource.class));
+
+        assertTrue(limited instanceof ConnectionLimitingDataSource);
+        assertEquals(2, ((ConnectionLimitingDataSource) limited).getMaxConcurrency());
+        assertSame(limited, limiter.limit("dataSource", limited));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> gate = (Map<String, Object>) limiter.stats().get("dataSource");
+        assertEquals(2, gate.get("availablePermits"));
+    }
+
+    @Test
+    void disabledLimiterLeavesPoolsAlone() {
+        ConnectionLimiter limiter = new ConnectionLimiter(false, null, 50, 2);
+        DataSource pool = mock(DataSource.class);
+
+        assertSame(pool, limiter.wrap("shard-0", pool, 4));
+        assertSame(pool, limiter.limit("dataSource", pool));
+    }
+}
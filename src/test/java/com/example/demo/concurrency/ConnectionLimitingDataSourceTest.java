@@ -0,0 +1,48 @@
+package com.example.demo.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConnectionLimitingDataSourceTest {
+
+    @Test
+    void permitIsHeldUntilConnectionIsClosed() throws Exception {
+        DataSource target = mock(DataSource.class);
+        Connection physical = mock(Connection.class);
+        when(target.getConnection()).thenReturn(physical);
+        ConnectionLimitingDataSource dataSource = new ConnectionLimitingDataSource(target, 1, 50);
+
+        Connection first = dataSource.getConnection();
+        assertEquals(0, dataSource.getAvailablePermits());
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+
+        first.close();
+        // 重复 close 只归还一次
+        first.close();
+        verify(physical, times(2)).close();
+        assertEquals(1, dataSource.getAvailablePermits());
+
+        dataSource.getConnection().close();
+        assertEquals(1, dataSource.getAvailablePermits());
+    }
+
+    @Test
+    void permitIsReturnedWhenPoolFails() throws Exception {
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenThrow(new SQLTransientConnectionException("pool exhausted"));
+        ConnectionLimitingDataSource dataSource = new ConnectionLimitingDataSource(target, 1, 50);
+
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        assertEquals(1, dataSource.getAvailablePermits());
+    }
+}
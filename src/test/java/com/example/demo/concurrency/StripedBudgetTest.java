@@ -0,0 +1,74 @@
+package com.example.demo.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StripedBudgetTest {
+
+    @Test
+    void concurrentAcquiresNeverExceedBudget() throws Exception {
+        StripedBudget budget = new StripedBudget(16);
+        budget.reset(10_000);
+        int threads = 64;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                long acquired = 0;
+                for (int i = 0; i < 2_000; i++) {
+                    int permits = ThreadLocalRandom.current().nextInt(1, 4);
+                    if (budget.tryAcquire(permits)) {
+                        acquired += permits;
+                    }
+                }
+                return acquired;
+            }));
+        }
+        start.countDown();
+        long total = 0;
+        for (Future<Long> result : results) {
+            total += result.get();
+        }
+        executor.shutdown();
+
+        // 需求远大于预算：最终恰好分完，剩余不足以满足任何一次 3 个的请求
+        assertTrue(total <= 10_000);
+        assertEquals(10_000, total + budget.available());
+        assertTrue(budget.available() < 3);
+    }
+
+    @Test
+    void acquiresAcrossStripesWhenNoSingleStripeSuffices() {
+        StripedBudget budget = new StripedBudget(4);
+        // 每个条带 2 个
+        budget.reset(8);
+        assertTrue(budget.tryAcquire(7));
+        assertEquals(1, budget.available());
+        // 凑不齐时已拿走的部分会还回去
+        assertFalse(budget.tryAcquire(2));
+        assertEquals(1, budget.available());
+        budget.release(3);
+        assertTrue(budget.tryAcquire(4));
+        assertEquals(0, budget.available());
+    }
+
+    @Test
+    void stripeCountRoundsUpToPowerOfTwo() {
+        assertEquals(1, new StripedBudget(1).stripes());
+        assertEquals(8, new StripedBudget(5).stripes());
+        assertEquals(16, new StripedBudget(16).stripes());
+    }
+}
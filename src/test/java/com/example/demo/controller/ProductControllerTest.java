@@ -0,0 +1,26 @@
+package com.example.demo.controller;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductControllerTest {
+
+    @Test
+    void gzipIsAcceptedOnlyWithPositiveQuality() {
+        assertTrue(ProductController.acceptsGzip("gzip, deflate, br"));
+        assertTrue(ProductController.acceptsGzip("deflate;q=1.0, GZIP;q=0.5"));
+        assertTrue(ProductController.acceptsGzip("*"));
+        assertTrue(ProductController.acceptsGzip("x-gzip"));
+
+        assertFalse(ProductController.acceptsGzip(null));
+        assertFalse(ProductController.acceptsGzip("identity"));
+        assertFalse(ProductController.acceptsGzip("gzip;q=0"));
+        assertFalse(ProductController.acceptsGzip("gzip; q=0.000, deflate"));
+        // 明确拒绝 gzip 时 * 不起作用
+        assertFalse(ProductController.acceptsGzip("gzip;q=0, *;q=1"));
+        assertFalse(ProductController.acceptsGzip("*;q=0"));
+        assertFalse(ProductController.acceptsGzip("gzip;q=abc"));
+    }
+}
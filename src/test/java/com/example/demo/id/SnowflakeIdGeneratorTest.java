@@ -0,0 +1,104 @@
+package com.example.demo.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnowflakeIdGeneratorTest {
+
+    private static final int THREADS = 32;
+    private static final int IDS_PER_THREAD = 50_000;
+
+    @Test
+    void idsAreUniqueAcrossThreadsAndMonotonicWithinThread() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7);
+        Set<Long> ids = ConcurrentHashMap.newKeySet(THREADS * IDS_PER_THREAD);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                long previous = -1;
+                for (int i = 0; i < IDS_PER_THREAD; i++) {
+                    long id = generator.nextId();
+                    assertTrue(id > previous);
+                    ids.add(id);
+                    previous = id;
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+        assertTrue(ids.stream().allMatch(id -> SnowflakeIdGenerator.workerIdOf(id) == 7));
+    }
+
+    @Test
+    void smallClockRollbackKeepsIdsIncreasing() {
+        AtomicLong clock = new AtomicLong(SnowflakeIdGenerator.EPOCH + 10_000);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, 100, clock::get);
+        long before = generator.nextId();
+
+        clock.addAndGet(-50);
+        long after = generator.nextId();
+
+        assertTrue(after > before);
+    }
+
+    @Test
+    void largeClockRollbackIsRejected() {
+        AtomicLong clock = new AtomicLong(SnowflakeIdGenerator.EPOCH + 10_000);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, 100, clock::get);
+        generator.nextId();
+
+        clock.addAndGet(-500);
+        assertThrows(IllegalStateException.class, generator::nextId);
+    }
+
+    @Test
+    void exhaustedSequenceBorrowsNextMillisecond() {
+        AtomicLong clock = new AtomicLong(SnowflakeIdGenerator.EPOCH + 10_000);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, 100, clock::get);
+        long previous = -1;
+        // 时钟不走，单毫秒 4096 个序列号用完后继续递增
+        for (int i = 0; i < 10_000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            previous = id;
+        }
+        assertEquals(clock.get() + 2, SnowflakeIdGenerator.timestampOf(previous));
+    }
+
+    @Test
+    void textFormSortsLikeNumbers() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(3);
+        String previous = "";
+        for (int i = 0; i < 10_000; i++) {
+            long id = generator.nextId();
+            String text = Base32.encode(id);
+            assertEquals(Base32.LENGTH, text.length());
+            assertEquals(id, Base32.decode(text));
+            assertTrue(text.compareTo(previous) > 0);
+            previous = text;
+        }
+    }
+}
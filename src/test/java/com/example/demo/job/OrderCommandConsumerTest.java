@@ -0,0 +1,147 @@
+package com.example.demo.job;
+
+import com.example.demo.dto.AsyncOrderStatus;
+import com.example.demo.dto.PurchaseRequest;
+import com.example.demo.entity.Order;
+import com.example.demo.exception.InsufficientStockException;
+import com.example.demo.service.OrderCommandQueue;
+import com.example.demo.service.OrderCommandQueue.OrderCommand;
+import com.example.demo.service.OrderService;
+import com.example.demo.service.StockReservationService;
+import com.example.demo.shard.ShardRouter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.StreamMessageId;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 下单命令消费：命令队列用模拟对象代替（jedis-mock 不支持消费组），验证批量落库、逐条重试、确认和接管。
+ */
+class OrderCommandConsumerTest {
+
+    private final OrderCommandQueue orderCommandQueue = mock(OrderCommandQueue.class);
+    private final OrderService orderService = mock(OrderService.class);
+    private final StockReservationService stockReservationService = mock(StockReservationService.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private OrderCommandConsumer consumer;
+
+    @BeforeEach
+    void setUp() {
+        // 不启动消费线程，由测试逐批驱动
+        consumer = new OrderCommandConsumer(orderCommandQueue, orderService, stockReservationService,
+                ShardRouter.single(), transactionManager, task -> { });
+        ReflectionTestUtils.setField(consumer, "enabled", true);
+        ReflectionTestUtils.setField(consumer, "batchSize", 10);
+        ReflectionTestUtils.setField(consumer, "blockMs", 100L);
+        ReflectionTestUtils.setField(consumer, "claimIdleMs", 0L);
+        consumer.start();
+    }
+
+    @Test
+    void batchIsWrittenInOneTransactionAndAcked() {
+        OrderCommand first = command(1, "T1");
+        OrderCommand second = command(2, "T2");
+        when(orderCommandQueue.read(anyString(), anyInt(), any())).thenReturn(List.of(first, second));
+        when(orderService.createReservedOrder(eq("T1"), any())).thenReturn(order(1L));
+        when(orderService.createReservedOrder(eq("T2"), any())).thenReturn(order(2L));
+
+        assertEquals(2, consumer.consumeBatch("c1"));
+
+        verify(transactionManager, times(1)).getTransaction(any());
+        verify(orderCommandQueue).ack(List.of(first, second));
+        verify(orderCommandQueue).putStatus(new AsyncOrderStatus("T1", AsyncOrderStatus.CREATED, 1L, null));
+        verify(orderCommandQueue).putStatus(new AsyncOrderStatus("T2", AsyncOrderStatus.CREATED, 2L, null));
+        verify(stockReservationService).confirm("T1");
+        verify(stockReservationService).confirm("T2");
+    }
+
+    @Test
+    void failedCommandStaysUnackedUntilReclaimed() {
+        OrderCommand ok = command(1, "T1");
+        OrderCommand failing = command(2, "T2");
+        when(orderCommandQueue.read(anyString(), anyInt(), any())).thenReturn(List.of(ok, failing));
+        when(orderService.createReservedOrder(eq("T1"), any())).thenReturn(order(1L));
+        when(orderService.createReservedOrder(eq("T2"), any())).thenThrow(new IllegalStateException("连接超时"));
+
+        assertEquals(2, consumer.consumeBatch("c1"));
+
+        // 整批回滚后逐条重试：成功的确认，非业务异常的留在待确认列表等待重新投递
+        verify(orderCommandQueue).ack(List.of(ok));
+        verify(stockReservationService).confirm("T1");
+        verify(stockReservationService, never()).release(anyString());
+
+        doReturn(order(2L)).when(orderService).createReservedOrder(eq("T2"), any());
+        when(orderCommandQueue.claimStale(anyString(), eq(Duration.ZERO), anyInt())).thenReturn(List.of(failing));
+        consumer.reclaim();
+
+        verify(orderCommandQueue).ack(List.of(failing));
+        verify(orderCommandQueue).putStatus(new AsyncOrderStatus("T2", AsyncOrderStatus.CREATED, 2L, null));
+        verify(stockReservationService).confirm("T2");
+    }
+
+    @Test
+    void poisonMessagesAreFailedAndAcked() {
+        // 无法解析的消息和业务上注定失败的命令直接给出最终结果，不反复投递
+        OrderCommand broken = new OrderCommand(new StreamMessageId(1, 0), "T1", null);
+        OrderCommand shortStock = command(2, "T2");
+        when(orderCommandQueue.read(anyString(), anyInt(), any())).thenReturn(List.of(broken, shortStock));
+        when(orderService.createReservedOrder(eq("T2"), any())).thenThrow(new InsufficientStockException("库存不足"));
+
+        assertEquals(2, consumer.consumeBatch("c1"));
+
+        verify(orderCommandQueue).ack(List.of(broken, shortStock));
+        verify(orderCommandQueue).putStatus(new AsyncOrderStatus("T1", AsyncOrderStatus.FAILED, null, "下单命令无法解析"));
+        verify(orderCommandQueue).putStatus(new AsyncOrderStatus("T2", AsyncOrderStatus.FAILED, null, "库存不足"));
+        verify(stockReservationService).release("T1");
+        verify(stockReservationService).release("T2");
+        verify(orderService, never()).createReservedOrder(eq("T1"), any());
+    }
+
+    @Test
+    void redeliveredCommandReusesWrittenOrder() {
+        OrderCommand redelivered = command(1, "T1");
+        when(orderCommandQueue.read(anyString(), anyInt(), any())).thenReturn(List.of(redelivered));
+        when(orderService.createReservedOrder(eq("T1"), any())).thenThrow(new DuplicateKeyException("order_number"));
+        when(orderService.getOrderByNumber("T1")).thenReturn(Optional.of(order(7L)));
+
+        consumer.consumeBatch("c1");
+
+        verify(orderCommandQueue).ack(List.of(redelivered));
+        verify(orderCommandQueue).putStatus(new AsyncOrderStatus("T1", AsyncOrderStatus.CREATED, 7L, null));
+        verify(stockReservationService).confirm("T1");
+    }
+
+    private static OrderCommand command(long sequence, String token) {
+        PurchaseRequest request = new PurchaseRequest();
+        request.setUserId(1L);
+        PurchaseRequest.PurchaseItem item = new PurchaseRequest.PurchaseItem();
+        item.setProductId(1L);
+        item.setQuantity(1);
+        request.setItems(List.of(item));
+        return new OrderCommand(new StreamMessageId(sequence, 0), token, request);
+    }
+
+    private static Order order(Long id) {
+        Order order = new Order();
+        order.setId(id);
+        return order;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.demo.job;
+
+import com.example.demo.dto.PurchaseRequest;
+import com.example.demo.entity.Product;
+import com.example.demo.mapper.OrderItemMapper;
+import com.example.demo.mapper.OrderMapper;
+import com.example.demo.mapper.ProductMapper;
+import com.example.demo.service.OrderService;
+import com.example.demo.service.OrderTimeoutQueue;
+import com.example.demo.service.ProductService;
+import com.example.demo.support.ServiceFixtures;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@MybatisTest
+class OrderTimeoutConsumerTest {
+
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private OrderItemMapper orderItemMapper;
+    @Autowired
+    private ProductMapper productMapper;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final OrderTimeoutQueue orderTimeoutQueue = mock(OrderTimeoutQueue.class);
+    private OrderService orderService;
+    private Long productId;
+
+    @BeforeEach
+    void setUp() {
+        ProductService productService = ServiceFixtures.productService(productMapper).build();
+        orderService = ServiceFixtures.orderService(orderMapper, orderItemMapper, productService, transactionManager)
+                .orderTimeoutQueue(orderTimeoutQueue)
+                .build();
+        LocalDateTime now = LocalDateTime.now();
+        Product product = Product.builder()
+                .name("超时测试商品")
+                .price(new BigDecimal("9.90"))
+                .stock(10)
+                .createdTime(now)
+                .updatedTime(now)
+                .build();
+        productMapper.insert(product);
+        productId = product.getId();
+    }
+
+    @Test
+    void expiredOrdersAreCancelledAndPaidOrdersSkipped() throws InterruptedException {
+        Long pending = orderService.createOrder(purchase(2)).getId();
+        Long paid = orderService.createOrder(purchase(3)).getId();
+        Long cancelled = orderService.createOrder(purchase(1)).getId();
+        assertTrue(orderService.payOrder(paid));
+        assertTrue(orderService.cancelOrder(cancelled));
+        assertEquals(5, productMapper.getStock(productId, false));
+        // 支付后超时任务仍在队列中，与其他到期订单一起被取出
+        when(orderTimeoutQueue.take(anyInt(), any())).thenReturn(List.of(pending, paid, cancelled));
+
+        assertEquals(1, consumer(orderService).consumeBatch(Duration.ZERO));
+
+        assertEquals("CANCELLED", orderMapper.findById(pending).orElseThrow().getStatus());
+        assertEquals("PAID", orderMapper.findById(paid).orElseThrow().getStatus());
+        // 只归还待支付订单的库存，已取消的订单不会重复归还
+        assertEquals(7, productMapper.getStock(productId, false));
+    }
+
+    @Test
+    void failedBatchIsPutBackForRetry() throws InterruptedException {
+        OrderService failing = mock(OrderService.class);
+        when(failing.cancelOrders(any())).thenThrow(new IllegalStateException("数据库不可用"));
+        when(orderTimeoutQueue.take(anyInt(), any())).thenReturn(List.of(1L, 2L));
+
+        assertEquals(-1, consumer(failing).consumeBatch(Duration.ZERO));
+        verify(orderTimeoutQueue).retry(List.of(1L, 2L));
+    }
+
+    private OrderTimeoutConsumer consumer(OrderService service) {
+        OrderTimeoutConsumer consumer = new OrderTimeoutConsumer(orderTimeoutQueue, service, Runnable::run);
+        ReflectionTestUtils.setField(consumer, "batchSize", 100);
+        return consumer;
+    }
+
+    private PurchaseRequest purchase(int quantity) {
+        PurchaseRequest.PurchaseItem item = new PurchaseRequest.PurchaseItem();
+        item.setProductId(productId);
+        item.setQuantity(quantity);
+        PurchaseRequest request = new PurchaseRequest();
+        request.setUserId(1L);
+        request.setItems(List.of(item));
+        return request;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.demo.job;
+
+import com.example.demo.entity.Order;
+import com.example.demo.entity.StockDeduction;
+import com.example.demo.service.OrderService;
+import com.example.demo.service.StockDeductionLedger;
+import com.example.demo.shard.ShardRouter;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RedissonClient;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 跨分片扣减修复：订单已落库的只删除记录，未落库的加回库存；记账本身的事务语义见 ShardRoutingDataSourceTest。
+ */
+class StockDeductionRepairJobTest {
+
+    private final StockDeductionLedger ledger = mock(StockDeductionLedger.class);
+    private final OrderService orderService = mock(OrderService.class);
+
+    @Test
+    void staleDeductionsAreSettledOrRestoredByOrderPresence() {
+        StockDeductionRepairJob job = job(new ShardRouter(2));
+        when(ledger.findStale(any(LocalDateTime.class), anyInt()))
+                .thenReturn(List.of(deduction("D1", "placed"), deduction("D2", "lost")));
+        when(orderService.getOrderByNumber("placed")).thenReturn(Optional.of(new Order()));
+        when(orderService.getOrderByNumber("lost")).thenReturn(Optional.empty());
+        when(ledger.restore("D2")).thenReturn(true);
+
+        assertEquals(1, job.repairStale(LocalDateTime.now()));
+        verify(ledger).settle("D1");
+        verify(ledger, never()).restore("D1");
+        verify(ledger, never()).settle("D2");
+    }
+
+    @Test
+    void skippedWithoutSharding() {
+        job(ShardRouter.single()).repair();
+        verify(ledger, never()).findStale(any(LocalDateTime.class), anyInt());
+    }
+
+    private StockDeductionRepairJob job(ShardRouter router) {
+        StockDeductionRepairJob job = new StockDeductionRepairJob(ledger, orderService, router, mock(RedissonClient.class));
+        // 大于本批数量，一轮即结束
+        ReflectionTestUtils.setField(job, "batchSize", 10);
+        return job;
+    }
+
+    private static StockDeduction deduction(String deductionId, String orderNumber) {
+        return StockDeduction.builder().deductionId(deductionId).orderNumber(orderNumber).build();
+    }
+}
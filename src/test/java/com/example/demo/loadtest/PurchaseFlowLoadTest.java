@@ -0,0 +1,125 @@
+package com.example.demo.loadtest;
+
+import com.example.demo.entity.Product;
+import com.example.demo.support.EmbeddedEnvironmentTest;
+import com.example.demo.support.LoadRunner;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 下单和商品详情接口的多线程压测，输出 p50/p99 和吞吐，并校验不超卖、不少卖：
+ * 请求量远大于库存时，成功订单数恰好等于库存，数据库库存归零，订单项数量之和等于初始库存。
+ */
+@Slf4j
+class PurchaseFlowLoadTest extends EmbeddedEnvironmentTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void hotProductPurchaseNeverOversells() throws Exception {
+        int stock = 100;
+        long productId = createProduct(stock);
+        AtomicInteger unexpected = new AtomicInteger();
+
+        LoadRunner.Report report = LoadRunner.run("抢购单个商品", LoadRunner.threads(32), LoadRunner.requests(stock * 4),
+                i -> purchase(i, Map.of(productId, 1), unexpected));
+        log.info("{}", report);
+
+        assertEquals(0, report.errors());
+        assertEquals(0, unexpected.get());
+        assertEquals(stock, report.succeeded());
+        assertEquals(0, databaseStock(productId));
+        assertEquals(stock, soldQuantity(productId));
+    }
+
+    @Test
+    void cartPurchaseDeductsAllItemsOrNone() throws Exception {
+        long scarce = createProduct(50);
+        long plenty = createProduct(80);
+        AtomicInteger unexpected = new AtomicInteger();
+
+        LoadRunner.Report report = LoadRunner.run("购物车两件商品", LoadRunner.threads(32), LoadRunner.requests(200),
+                i -> purchase(i, Map.of(scarce, 1, plenty, 1), unexpected));
+        log.info("{}", report);
+
+        // 缺货的商品卖完后整单拒绝，另一件商品不能被扣减
+        assertEquals(0, report.errors());
+        assertEquals(0, unexpected.get());
+        assertEquals(50, report.succeeded());
+        assertEquals(0, databaseStock(scarce));
+        assertEquals(30, databaseStock(plenty));
+        assertEquals(50, soldQuantity(scarce));
+        assertEquals(50, soldQuantity(plenty));
+    }
+
+    @Test
+    void productDetailUnderConcurrentReads() throws Exception {
+        List<Long> productIds = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            productIds.add(createProduct(10));
+        }
+
+        // 所有请求都应命中：首次读取重建缓存，之后走两级缓存
+        LoadRunner.Report report = LoadRunner.run("商品详情", LoadRunner.threads(32), LoadRunner.requests(2000),
+                i -> restTemplate.getForEntity("/api/products/{id}", Product.class,
+                        productIds.get(ThreadLocalRandom.current().nextInt(productIds.size())))
+                        .getStatusCode() == HttpStatus.OK);
+        log.info("{}", report);
+
+        assertEquals(0, report.errors());
+        assertEquals(report.requests(), report.succeeded());
+    }
+
+    // 返回是否下单成功；库存不足以外的失败计入 unexpected
+    private boolean purchase(int request, Map<Long, Integer> items, AtomicInteger unexpected) {
+        List<Map<String, Object>> cart = new ArrayList<>();
+        items.forEach((productId, quantity) -> cart.add(Map.of("productId", productId, "quantity", quantity)));
+        ResponseEntity<String> response = restTemplate.postForEntity("/api/orders/purchase",
+                Map.of("userId", 10_000L + request, "items", cart), String.class);
+        if (response.getStatusCode() == HttpStatus.OK) {
+            return true;
+        }
+        if (response.getBody() == null || !response.getBody().contains("库存不足")) {
+            log.warn("非库存原因的下单失败: {} {}", response.getStatusCode(), response.getBody());
+            unexpected.incrementAndGet();
+        }
+        return false;
+    }
+
+    private long createProduct(int stock) {
+        Product product = new Product();
+        product.setName("压测商品-" + UUID.randomUUID());
+        product.setPrice(new BigDecimal("19.99"));
+        product.setStock(stock);
+        ResponseEntity<Product> response = restTemplate.postForEntity("/api/products", product, Product.class);
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        return response.getBody().getId();
+    }
+
+    private int databaseStock(long productId) {
+        return jdbcTemplate.queryForObject("SELECT stock FROM products WHERE id = ?", Integer.class, productId);
+    }
+
+    private int soldQuantity(long productId) {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(quantity), 0) FROM order_items WHERE product_id = ?",
+                Integer.class, productId);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.demo.metrics;
+
+import com.example.demo.exception.InsufficientStockException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ShopMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ShopMetrics metrics = new ShopMetrics(registry);
+
+    @Test
+    void createOrderOutcomesAreTaggedSeparately() {
+        metrics.timeCreateOrder(() -> "ok");
+        assertThrows(InsufficientStockException.class, () -> metrics.timeCreateOrder(() -> {
+            throw new InsufficientStockException("库存不足");
+        }));
+        assertThrows(IllegalStateException.class, () -> metrics.timeCreateOrder(() -> {
+            throw new IllegalStateException("数据库不可用");
+        }));
+
+        assertEquals(1, registry.get("order.create").tag("result", "success").timer().count());
+        assertEquals(1, registry.get("order.create").tag("result", "rejected").timer().count());
+        assertEquals(1, registry.get("order.create").tag("result", "error").timer().count());
+    }
+
+    @Test
+    void oversellRejectionsAreCountedPerStage() {
+        metrics.stockRejected(ShopMetrics.STAGE_ADMISSION);
+        metrics.stockRejected(ShopMetrics.STAGE_ADMISSION);
+        metrics.stockRejected(ShopMetrics.STAGE_DATABASE);
+
+        assertEquals(2, registry.get("stock.oversell.rejections").tag("stage", "admission").counter().count());
+        assertEquals(0, registry.get("stock.oversell.rejections").tag("stage", "reservation").counter().count());
+        assertEquals(1, registry.get("stock.oversell.rejections").tag("stage", "database").counter().count());
+    }
+}
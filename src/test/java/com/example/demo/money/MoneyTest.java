@@ -0,0 +1,27 @@
+package com.example.demo.money;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MoneyTest {
+
+    @Test
+    void convertsExactlyToAndFromDecimal() {
+        assertEquals(1999, Money.of(new BigDecimal("19.99")).cents());
+        assertEquals(1900, Money.of(new BigDecimal("19")).cents());
+        assertEquals(1990, Money.of(new BigDecimal("19.900")).cents());
+        assertEquals(new BigDecimal("59.97"), Money.of(new BigDecimal("19.99")).times(3).toBigDecimal());
+        assertEquals("0.05", Money.ofCents(5).toString());
+    }
+
+    @Test
+    void rejectsSubCentAmountsAndOverflow() {
+        assertThrows(ArithmeticException.class, () -> Money.of(new BigDecimal("0.001")));
+        assertThrows(ArithmeticException.class, () -> Money.ofCents(Long.MAX_VALUE).plus(Money.ofCents(1)));
+        assertThrows(ArithmeticException.class, () -> Money.ofCents(Long.MAX_VALUE / 2).times(3));
+    }
+}
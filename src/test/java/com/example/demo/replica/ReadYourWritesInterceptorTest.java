@@ -0,0 +1,53 @@
+package com.example.demo.replica;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReadYourWritesInterceptorTest {
+
+    private final ReadYourWritesInterceptor interceptor = new ReadYourWritesInterceptor(Duration.ofSeconds(5));
+
+    @AfterEach
+    void tearDown() {
+        ReplicaContext.clear();
+    }
+
+    @Test
+    void cookieWithinWindowSticksToPrimary() {
+        long until = System.currentTimeMillis() + 3_000;
+        handle(Long.toString(until));
+
+        assertTrue(ReplicaContext.isStickToPrimary(until - 1));
+        assertFalse(ReplicaContext.isStickToPrimary(until));
+    }
+
+    @Test
+    void forgedFarFutureCookieIsCappedToStickyWindow() {
+        long now = System.currentTimeMillis();
+        handle(Long.toString(Long.MAX_VALUE));
+
+        assertTrue(ReplicaContext.isStickToPrimary(now));
+        assertFalse(ReplicaContext.isStickToPrimary(now + 60_000));
+    }
+
+    @Test
+    void malformedCookieIsIgnored() {
+        handle("not-a-number");
+
+        assertFalse(ReplicaContext.isStickToPrimary(System.currentTimeMillis()));
+    }
+
+    private void handle(String value) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(ReadYourWritesInterceptor.COOKIE, value));
+        interceptor.preHandle(request, new MockHttpServletResponse(), new Object());
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.demo.replica;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReplicaRoutingDataSourceTest {
+
+    private final ReplicaLagMonitor monitor = new ReplicaLagMonitor(Duration.ofSeconds(2), 60_000);
+    private JdbcTemplate jdbc;
+    private TransactionTemplate writeTransaction;
+    private TransactionTemplate readOnlyTransaction;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("r0", database("r0"));
+        replicas.put("r1", database("r1"));
+        DataSource dataSource = new LazyRoutingDataSource(new ReplicaRoutingDataSource("test", database("primary"),
+                replicas, monitor, Duration.ofSeconds(5)));
+        jdbc = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        writeTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        monitor.record("r0", 0L, null);
+        monitor.record("r1", 1L, null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReplicaContext.clear();
+    }
+
+    @Test
+    void unmarkedQueriesGoToPrimaryAndMarkedReadsRotateOverReplicas() {
+        assertEquals("PRIMARY", database());
+        assertEquals("R0", ReplicaContext.read(this::database));
+        assertEquals("R1", ReplicaContext.read(this::database));
+        assertEquals("R0", readOnlyTransaction.execute(status -> database()));
+    }
+
+    @Test
+    void laggingReplicasAreSkippedAndReadsFallBackToPrimary() {
+        monitor.record("r0", 5L, null);
+        assertEquals("R1", ReplicaContext.read(this::database));
+        assertEquals("R1", ReplicaContext.read(this::database));
+
+        // 复制线程停止
+        monitor.record("r1", null, null);
+        assertEquals("PRIMARY", ReplicaContext.read(this::database));
+    }
+
+    @Test
+    void readsAfterCommittedWriteStayOnPrimary() {
+        // 读写事务内的查询始终走主库，即使标记了可读从库
+        assertEquals("PRIMARY", writeTransaction.execute(status -> ReplicaContext.read(this::database)));
+        assertEquals("PRIMARY", ReplicaContext.read(this::database));
+        assertEquals("PRIMARY", readOnlyTransaction.execute(status -> database()));
+
+        ReplicaContext.clear();
+        assertEquals("R0", ReplicaContext.read(this::database));
+    }
+
+    private String database() {
+        return jdbc.queryForObject("SELECT DATABASE()", String.class);
+    }
+
+    private static DataSource database(String name) {
+        return new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.OrderFetch;
+import com.example.demo.entity.Order;
+import com.example.demo.entity.OrderItem;
+import com.example.demo.entity.Product;
+import com.example.demo.id.SnowflakeIdGenerator;
+import com.example.demo.mapper.OrderItemMapper;
+import com.example.demo.mapper.OrderMapper;
+import com.example.demo.mapper.ProductMapper;
+import com.example.demo.shard.ShardRouter;
+import com.example.demo.support.ServiceFixtures;
+import com.example.demo.support.StatementCountingInterceptor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@MybatisTest
+class OrderGraphLoaderTest {
+
+    private static final int ORDERS = 10;
+    private static final int ITEMS_PER_ORDER = 5;
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        StatementCountingInterceptor statementCountingInterceptor() {
+            return new StatementCountingInterceptor();
+        }
+    }
+
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private OrderItemMapper orderItemMapper;
+    @Autowired
+    private ProductMapper productMapper;
+    @Autowired
+    private StatementCountingInterceptor statementCounter;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private OrderGraphLoader loader;
+    private OrderService orderService;
+    private final List<Order> orders = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // 商品缓存全部未命中，商品信息走一次 IN 查询
+        ProductService productService = ServiceFixtures.productService(productMapper).build();
+        loader = new OrderGraphLoader(orderItemMapper, productService);
+        orderService = ServiceFixtures.orderService(orderMapper, orderItemMapper, productService, transactionManager)
+                .orderGraphLoader(loader)
+                .build();
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> productIds = new ArrayList<>();
+        for (int i = 0; i < ITEMS_PER_ORDER; i++) {
+            Product product = Product.builder()
+                    .name("商品" + i)
+                    .description("描述" + i)
+                    .price(BigDecimal.valueOf(100))
+                    .stock(10)
+                    .createdTime(now)
+                    .updatedTime(now)
+                    .build();
+            productMapper.insert(product);
+            productIds.add(product.getId());
+        }
+        OrderNumberGenerator orderNumbers = new OrderNumberGenerator(new SnowflakeIdGenerator(1), ShardRouter.single());
+        orders.clear();
+        for (int i = 0; i < ORDERS; i++) {
+            Order order = new Order();
+            order.setOrderNumber(orderNumbers.next(1L));
+            order.setUserId(1L);
+            order.setTotalAmount(BigDecimal.valueOf(100L * ITEMS_PER_ORDER));
+            order.setStatus("PENDING");
+            orderMapper.insert(order);
+            List<OrderItem> items = new ArrayList<>();
+            for (Long productId : productIds) {
+                items.add(OrderItem.builder()
+                        .orderId(order.getId())
+                        .productId(productId)
+                        .quantity(1)
+                        .price(BigDecimal.valueOf(100))
+                        .subtotal(BigDecimal.valueOf(100))
+                        .build());
+            }
+            orderItemMapper.insertBatch(items);
+            orders.add(order);
+        }
+        statementCounter.reset();
+    }
+
+    @Test
+    void loadsItemsAndProductsWithConstantQueries() {
+        loader.load(orders, OrderFetch.PRODUCTS);
+
+        // 订单项一次 IN 查询 + 商品一次 IN 查询，与订单数量无关
+        assertEquals(2, statementCounter.getCount());
+        for (Order order : orders) {
+            assertEquals(ITEMS_PER_ORDER, order.getOrderItems().size());
+            for (OrderItem item : order.getOrderItems()) {
+                assertEquals(order.getId(), item.getOrderId());
+                assertNotNull(item.getProduct().getName());
+                assertNotNull(item.getProduct().getDescription());
+            }
+        }
+    }
+
+    @Test
+    void itemsOnlySkipsProducts() {
+        loader.load(orders, OrderFetch.ITEMS);
+
+        assertEquals(1, statementCounter.getCount());
+        orders.forEach(order -> order.getOrderItems().forEach(item -> assertNull(item.getProduct())));
+    }
+
+    @Test
+    void noneIssuesNoQueries() {
+        loader.load(orders, OrderFetch.NONE);
+
+        assertEquals(0, statementCounter.getCount());
+        orders.forEach(order -> assertNull(order.getOrderItems()));
+    }
+
+    @Test
+    void orderDetailUsesThreeQueries() {
+        Order order = orderService.getOrderById(orders.get(0).getId(), OrderFetch.PRODUCTS).orElseThrow();
+
+        // 订单 + 订单项 + 商品
+        assertEquals(3, statementCounter.getCount());
+        assertEquals(ITEMS_PER_ORDER, order.getOrderItems().size());
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.OrderFetch;
+import com.example.demo.dto.OrderPage;
+import com.example.demo.entity.Order;
+import com.example.demo.id.SnowflakeIdGenerator;
+import com.example.demo.mapper.OrderItemMapper;
+import com.example.demo.mapper.OrderMapper;
+import com.example.demo.shard.ShardRouter;
+import com.example.demo.support.ServiceFixtures;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+@MybatisTest
+class OrderHistoryTest {
+
+    private static final long USER_ID = 1L;
+    private static final int ORDER_COUNT = 25;
+
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private OrderItemMapper orderItemMapper;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private OrderService orderService;
+    private final List<Long> orderIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ProductService productService = mock(ProductService.class);
+        orderService = ServiceFixtures.orderService(orderMapper, orderItemMapper, productService, transactionManager).build();
+        OrderNumberGenerator orderNumbers = new OrderNumberGenerator(new SnowflakeIdGenerator(1), ShardRouter.single());
+        orderIds.clear();
+        // 同一秒内插入，created_time 大量相同，翻页依赖 id 区分
+        for (int i = 0; i < ORDER_COUNT; i++) {
+            orderIds.add(insert(USER_ID, orderNumbers.next(USER_ID)));
+            insert(USER_ID + 1, orderNumbers.next(USER_ID + 1));
+        }
+    }
+
+    @Test
+    void pagesCoverAllOrdersOnceInDescendingOrder() {
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            OrderPage page = orderService.getOrdersByUserId(USER_ID, cursor, 10, OrderFetch.NONE);
+            page.getItems().forEach(order -> seen.add(order.getId()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(orderIds.reversed(), seen);
+    }
+
+    @Test
+    void pageSizeIsCapped() {
+        // 上限调到订单数以下，超大的 size 只能取到上限条数
+        ReflectionTestUtils.setField(orderService, "maxPageSize", 10);
+        OrderPage page = orderService.getOrdersByUserId(USER_ID, null, 10_000, OrderFetch.NONE);
+        assertEquals(10, page.getItems().size());
+        assertEquals(orderIds.reversed().subList(0, 10), page.getItems().stream().map(Order::getId).toList());
+        assertNotNull(page.getNextCursor());
+    }
+
+    @Test
+    void rejectsMalformedCursor() {
+        assertThrows(IllegalArgumentException.class, () -> orderService.getOrdersByUserId(USER_ID, "not-a-cursor", 10, OrderFetch.NONE));
+    }
+
+    @Test
+    void exportStreamsEveryOrder() {
+        List<Long> exported = new ArrayList<>();
+        orderService.exportOrdersByUserId(USER_ID, order -> exported.add(order.getId()));
+        assertEquals(orderIds.reversed(), exported);
+    }
+
+    private Long insert(Long userId, String orderNumber) {
+        Order order = new Order();
+        order.setOrderNumber(orderNumber);
+        order.setUserId(userId);
+        order.setTotalAmount(BigDecimal.valueOf(100));
+        order.setStatus("PENDING");
+        orderMapper.insert(order);
+        return order.getId();
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.PurchaseRequest;
+import com.example.demo.entity.Order;
+import com.example.demo.entity.OrderItem;
+import com.example.demo.entity.Product;
+import com.example.demo.exception.InsufficientStockException;
+import com.example.demo.mapper.OrderItemMapper;
+import com.example.demo.mapper.OrderMapper;
+import com.example.demo.mapper.ProductMapper;
+import com.example.demo.support.ServiceFixtures;
+import com.example.demo.support.StatementCountingInterceptor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+@MybatisTest
+class OrderWritePathTest {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        StatementCountingInterceptor statementCountingInterceptor() {
+            return new StatementCountingInterceptor();
+        }
+    }
+
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private OrderItemMapper orderItemMapper;
+    @Autowired
+    private ProductMapper productMapper;
+    @Autowired
+    private StatementCountingInterceptor statementCounter;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private DataSource dataSource;
+
+    private OrderService orderService;
+    private final OrderTimeoutQueue orderTimeoutQueue = mock(OrderTimeoutQueue.class);
+    private final List<Long> productIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ProductService productService = ServiceFixtures.productService(productMapper).build();
+        orderService = ServiceFixtures.orderService(orderMapper, orderItemMapper, productService, transactionManager)
+                .orderTimeoutQueue(orderTimeoutQueue)
+                .build();
+        productIds.clear();
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 20; i++) {
+            Product product = Product.builder()
+                    .name("商品" + i)
+                    .price(price(i))
+                    .stock(10)
+                    .createdTime(now)
+                    .updatedTime(now)
+                    .build();
+            productMapper.insert(product);
+            productIds.add(product.getId());
+        }
+        statementCounter.reset();
+    }
+
+    @Test
+    void twentyLineCartUsesConstantStatements() {
+        Order order = orderService.createOrder(purchase(2));
+
+        // 一次 IN 查询价格（缓存未命中） + 批量扣库存 + 插入订单 + 批量插入订单项
+        assertEquals(4, statementCounter.getCount());
+        BigDecimal expectedTotal = BigDecimal.ZERO;
+        for (int i = 0; i < 20; i++) {
+            expectedTotal = expectedTotal.add(price(i).multiply(BigDecimal.valueOf(2)));
+        }
+        assertEquals(0, expectedTotal.compareTo(order.getTotalAmount()));
+        List<OrderItem> items = orderItemMapper.findSimpleByOrderId(order.getId());
+        assertEquals(20, items.size());
+        for (OrderItem item : items) {
+            // 订单项保存下单时的单价快照
+            BigDecimal price = productMapper.findById(item.getProductId()).orElseThrow().getPrice();
+            assertEquals(0, price.compareTo(item.getPrice()));
+            assertEquals(0, price.multiply(BigDecimal.valueOf(2)).compareTo(item.getSubtotal()));
+        }
+        for (Long productId : productIds) {
+            assertEquals(8, productMapper.getStock(productId, false));
+        }
+    }
+
+    @Test
+    void rejectsCartWhenAnyProductIsShort() {
+        productMapper.deductStock(productIds.get(5), 9);
+
+        assertThrows(InsufficientStockException.class, () -> orderService.createOrder(purchase(2)));
+    }
+
+    @Test
+    void bulkCancelRestoresStockWithConstantStatements() {
+        List<Long> orderIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            orderIds.add(orderService.createOrder(purchase(1)).getId());
+        }
+        statementCounter.reset();
+
+        assertEquals(3, orderService.cancelOrders(orderIds));
+
+        // 锁订单 + 条件更新状态 + 查询订单项 + 批量加库存
+        assertEquals(4, statementCounter.getCount());
+        for (Long productId : productIds) {
+            assertEquals(10, productMapper.getStock(productId, false));
+        }
+        // 已取消的订单不会重复归还库存
+        assertEquals(0, orderService.cancelOrders(orderIds));
+        assertEquals(10, productMapper.getStock(productIds.get(0), false));
+    }
+
+    @Test
+    void paidOrderIsNotCancelledByTimeout() {
+        Order order = orderService.createOrder(purchase(1));
+        verify(orderTimeoutQueue).scheduleAfterCommit(order.getId());
+
+        assertTrue(orderService.payOrder(order.getId()));
+
+        // 超时任务不随支付移除，到期后条件更新跳过已支付的订单
+        assertEquals(0, orderService.cancelOrders(List.of(order.getId())));
+        assertEquals("PAID", orderMapper.findById(order.getId()).orElseThrow().getStatus());
+        assertEquals(9, productMapper.getStock(productIds.get(0), false));
+    }
+
+    @Test
+    void cancelExpiredOrdersOnlyCancelsStalePendingOrders() {
+        Order expired = orderService.createOrder(purchase(1));
+        Order paid = orderService.createOrder(purchase(1));
+        Order fresh = orderService.createOrder(purchase(1));
+        assertTrue(orderService.payOrder(paid.getId()));
+        LocalDateTime createdBefore = LocalDateTime.now().minusMinutes(30);
+        // 已支付的订单同样超时，但不在 PENDING 状态
+        new JdbcTemplate(dataSource).update("UPDATE orders SET created_time = ? WHERE id IN (?, ?)",
+                createdBefore.minusMinutes(1), expired.getId(), paid.getId());
+
+        assertEquals(1, orderService.cancelExpiredOrders(createdBefore, 10));
+
+        assertEquals("CANCELLED", orderMapper.findById(expired.getId()).orElseThrow().getStatus());
+        assertEquals("PAID", orderMapper.findById(paid.getId()).orElseThrow().getStatus());
+        assertEquals("PENDING", orderMapper.findById(fresh.getId()).orElseThrow().getStatus());
+        for (Long productId : productIds) {
+            assertEquals(8, productMapper.getStock(productId, false));
+        }
+        // 再次清理不会重复归还库存
+        assertEquals(0, orderService.cancelExpiredOrders(createdBefore, 10));
+        assertEquals(8, productMapper.getStock(productIds.get(0), false));
+    }
+
+    @Test
+    void rejectsUnknownProductBeforeTouchingStock() {
+        PurchaseRequest request = purchase(1);
+        PurchaseRequest.PurchaseItem unknown = new PurchaseRequest.PurchaseItem();
+        unknown.setProductId(Long.MAX_VALUE);
+        unknown.setQuantity(1);
+        request.getItems().add(unknown);
+
+        assertThrows(IllegalArgumentException.class, () -> orderService.createOrder(request));
+        assertEquals(10, productMapper.getStock(productIds.get(0), false));
+    }
+
+    private static BigDecimal price(int i) {
+        return new BigDecimal("19.99").add(BigDecimal.valueOf(i, 2));
+    }
+
+    private PurchaseRequest purchase(int quantity) {
+        PurchaseRequest request = new PurchaseRequest();
+        request.setUserId(1L);
+        List<PurchaseRequest.PurchaseItem> items = new ArrayList<>();
+        for (Long productId : productIds) {
+            PurchaseRequest.PurchaseItem item = new PurchaseRequest.PurchaseItem();
+            item.setProductId(productId);
+            item.setQuantity(quantity);
+            items.add(item);
+        }
+        request.setItems(items);
+        return request;
+    }
+}
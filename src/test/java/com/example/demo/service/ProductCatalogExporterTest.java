@@ -0,0 +1,94 @@
+package com.example.demo.service;
+
+import com.example.demo.config.JacksonConfig;
+import com.example.demo.dto.ProductPage;
+import com.example.demo.entity.Product;
+import com.example.demo.mapper.ProductMapper;
+import com.example.demo.support.ServiceFixtures;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@MybatisTest
+class ProductCatalogExporterTest {
+
+    private static final int PRODUCTS = 1200;
+
+    @Autowired
+    private ProductMapper productMapper;
+
+    private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+    private ProductService productService;
+    private ProductCatalogExporter exporter;
+    private final List<Long> productIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        productService = ServiceFixtures.productService(productMapper).build();
+        exporter = new ProductCatalogExporter(productService, objectMapper);
+        productIds.clear();
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < PRODUCTS; i++) {
+            Product product = Product.builder()
+                    .name(i == 0 ? "带,逗号\"引号\"\n换行" : "商品" + i)
+                    .price(new BigDecimal("19.90"))
+                    .stock(i)
+                    .createdTime(now)
+                    .updatedTime(now)
+                    .build();
+            productMapper.insert(product);
+            productIds.add(product.getId());
+        }
+    }
+
+    @Test
+    void ndjsonWritesOneObjectPerLine() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = exporter.export(out, ProductCatalogExporter.Format.NDJSON);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(PRODUCTS, rows);
+        assertEquals(PRODUCTS, lines.length);
+        Product first = objectMapper.readValue(lines[0], Product.class);
+        assertEquals(productIds.get(0), first.getId());
+        assertEquals("带,逗号\"引号\"\n换行", first.getName());
+    }
+
+    @Test
+    void csvEscapesSpecialCharacters() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = exporter.export(out, ProductCatalogExporter.Format.CSV);
+
+        String csv = out.toString(StandardCharsets.UTF_8);
+        assertEquals(PRODUCTS, rows);
+        assertTrue(csv.startsWith("id,name,price,stock,description,created_time,updated_time\n"));
+        assertTrue(csv.contains(productIds.get(0) + ",\"带,逗号\"\"引号\"\"\n换行\",19.90,0,,"));
+    }
+
+    @Test
+    void keysetPagesVisitEveryProductOnce() {
+        List<Long> seen = new ArrayList<>();
+        Long afterId = null;
+        do {
+            ProductPage page = productService.getProductPage(afterId, 100);
+            page.getItems().forEach(product -> seen.add(product.getId()));
+            afterId = page.getNextAfterId();
+        } while (afterId != null);
+
+        assertEquals(productIds, seen);
+        assertNull(productService.getProductPage(productIds.get(PRODUCTS - 1), 100).getNextAfterId());
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.demo.service;
+
+import com.example.demo.cache.HotKeyDetector;
+import com.example.demo.cache.ProductCache;
+import com.example.demo.cache.ProductCacheProperties;
+import com.example.demo.entity.Product;
+import com.example.demo.mapper.ProductMapper;
+import com.example.demo.mapper.ProductOutboxMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@MybatisTest
+class ProductOutboxTest {
+
+    @Autowired
+    private ProductMapper productMapper;
+    @Autowired
+    private ProductOutboxMapper productOutboxMapper;
+
+    private final ProductCache productCache = mock(ProductCache.class);
+    private final HotKeyDetector hotKeyDetector = mock(HotKeyDetector.class);
+    private final ProductCacheProperties cacheProperties = new ProductCacheProperties();
+    private Long coldId;
+    private Long hotId;
+
+    @BeforeEach
+    void setUp() {
+        cacheProperties.getPolicies().put(ProductCacheProperties.DEFAULT, new ProductCacheProperties.Policy());
+        cacheProperties.getPolicies().put(ProductCacheProperties.HOT, new ProductCacheProperties.Policy());
+        coldId = insert("普通商品");
+        hotId = insert("热点商品");
+        when(hotKeyDetector.isHot(hotId)).thenReturn(true);
+    }
+
+    @Test
+    void repeatedChangesAreCoalescedIntoOneCacheUpdatePerProduct() {
+        // 合并只发生在同一批内，批大小要容纳全部 4 条记录
+        ProductOutbox outbox = outbox(true, 4);
+        outbox.record(List.of(coldId), ProductOutbox.STOCK);
+        outbox.record(List.of(coldId, hotId, coldId), ProductOutbox.STOCK);
+        outbox.record(List.of(hotId), ProductOutbox.UPDATED);
+        assertEquals(4, productOutboxMapper.count());
+
+        assertEquals(4, outbox.relayAll());
+
+        // 普通商品和热点商品都用主库上的新值覆盖缓存，只是策略不同
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<Long, Product>> refreshed = ArgumentCaptor.forClass(Map.class);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Function<Long, ProductCacheProperties.Policy>> policies = ArgumentCaptor.forClass(Function.class);
+        verify(productCache).refreshAll(refreshed.capture(), policies.capture());
+        assertEquals(Set.of(coldId, hotId), refreshed.getValue().keySet());
+        assertEquals("普通商品", refreshed.getValue().get(coldId).getName());
+        assertEquals("热点商品", refreshed.getValue().get(hotId).getName());
+        assertSame(cacheProperties.policy(ProductCacheProperties.DEFAULT), policies.getValue().apply(coldId));
+        assertSame(cacheProperties.policy(ProductCacheProperties.HOT), policies.getValue().apply(hotId));
+        assertEquals(0, productOutboxMapper.count());
+    }
+
+    @Test
+    void failedCacheUpdateKeepsEntriesForNextPoll() {
+        ProductOutbox outbox = outbox(true);
+        outbox.record(List.of(coldId), ProductOutbox.STOCK);
+        doThrow(new IllegalStateException("Redis 不可用")).when(productCache).refreshAll(anyMap(), any());
+
+        assertThrows(IllegalStateException.class, outbox::relayAll);
+        assertEquals(1, productOutboxMapper.count());
+    }
+
+    @Test
+    void disabledOutboxEvictsAfterCommit() {
+        ProductOutbox outbox = outbox(false);
+        outbox.record(List.of(coldId), ProductOutbox.UPDATED);
+
+        verify(productCache).evictAfterCommit(coldId);
+        assertEquals(0, productOutboxMapper.count());
+    }
+
+    @Test
+    void disabledOutboxCoalescesStockChangesAfterCommit() {
+        ProductOutbox outbox = outbox(false);
+        outbox.record(List.of(hotId), ProductOutbox.STOCK);
+        outbox.record(List.of(hotId, coldId), ProductOutbox.STOCK);
+        productMapper.deductStock(hotId, 2);
+
+        // 提交前不动缓存，也不进入待刷新集合
+        assertEquals(0, outbox.refreshPendingStock());
+        verifyNoInteractions(productCache);
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertEquals(2, outbox.refreshPendingStock());
+
+        // 两次扣减合并为一次刷新，写入主库上的新库存
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<Long, Product>> refreshed = ArgumentCaptor.forClass(Map.class);
+        verify(productCache).refreshAll(refreshed.capture(), any());
+        assertEquals(3, refreshed.getValue().get(hotId).getStock());
+        assertEquals(0, outbox.refreshPendingStock());
+        verify(productCache, never()).evictAfterCommit(any());
+    }
+
+    private ProductOutbox outbox(boolean enabled) {
+        return outbox(enabled, 2);
+    }
+
+    private ProductOutbox outbox(boolean enabled, int batchSize) {
+        RedissonClient redissonClient = mock(RedissonClient.class);
+        RLock lock = mock(RLock.class);
+        when(redissonClient.getLock("product:outbox:relay_lock")).thenReturn(lock);
+        when(lock.tryLock()).thenReturn(true);
+        return new ProductOutbox(productOutboxMapper, productMapper, productCache, hotKeyDetector,
+                cacheProperties, redissonClient, enabled, batchSize);
+    }
+
+    private Long insert(String name) {
+        LocalDateTime now = LocalDateTime.now();
+        Product product = Product.builder()
+                .name(name)
+                .price(BigDecimal.valueOf(100))
+                .stock(5)
+                .createdTime(now)
+                .updatedTime(now)
+                .build();
+        productMapper.insert(product);
+        return product.getId();
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.demo.service;
+
+import com.example.demo.config.JacksonConfig;
+import com.example.demo.dto.PurchaseRequest;
+import com.example.demo.entity.Order;
+import com.example.demo.exception.DuplicateRequestException;
+import com.example.demo.id.SnowflakeIdGenerator;
+import com.example.demo.shard.ShardRouter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.redisson.api.RBucket;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PurchaseIdempotencyServiceTest {
+
+    private static final int RETRIES = 16;
+
+    private final OrderService orderService = mock(OrderService.class);
+    private final RedissonClient redissonClient = mock(RedissonClient.class);
+    @SuppressWarnings("unchecked")
+    private final RBucket<Object> marker = mock(RBucket.class);
+    private PurchaseIdempotencyService service;
+
+    @BeforeEach
+    void setUp() {
+        when(redissonClient.getBucket(anyString(), any(Codec.class))).thenReturn(marker);
+        when(marker.setIfAbsent(anyString(), any(Duration.class))).thenReturn(true);
+        service = service(Duration.ofSeconds(30));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.close();
+    }
+
+    @Test
+    void concurrentRetriesWaitForTheFirstOrder() throws Exception {
+        Order order = new Order();
+        CountDownLatch start = new CountDownLatch(1);
+        when(orderService.createOrder(anyString(), any(PurchaseRequest.class))).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return order;
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(RETRIES);
+        try {
+            List<Future<Order>> results = new ArrayList<>();
+            for (int i = 0; i < RETRIES; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return service.purchase("retry-1", purchase(2));
+                }));
+            }
+            start.countDown();
+            for (Future<Order> result : results) {
+                assertSame(order, result.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // 已完成的请求再次重试直接命中本地缓存
+        assertSame(order, service.purchase("retry-1", purchase(2)));
+        verify(orderService, times(1)).createOrder(anyString(), any(PurchaseRequest.class));
+    }
+
+    @Test
+    void rejectsSameKeyWithDifferentBody() {
+        when(orderService.createOrder(anyString(), any(PurchaseRequest.class))).thenReturn(new Order());
+        service.purchase("retry-2", purchase(2));
+
+        assertThrows(DuplicateRequestException.class, () -> service.purchase("retry-2", purchase(3)));
+    }
+
+    @Test
+    void claimIsRenewedWhileOrderIsInFlightAndResultIsStoredWithTtl() {
+        service.close();
+        service = service(Duration.ofMillis(60));
+        when(orderService.createOrder(anyString(), any(PurchaseRequest.class))).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return new Order();
+        });
+
+        service.purchase("retry-3", purchase(2));
+
+        // 下单耗时超过 pending-ttl，期间持续续期；完成后按 ttl 重新写入占用值
+        verify(marker, atLeast(2)).expire(Duration.ofMillis(60));
+        ArgumentCaptor<Object> claim = ArgumentCaptor.forClass(Object.class);
+        verify(marker).setIfAbsent(claim.capture(), any(Duration.class));
+        verify(marker).set(claim.getValue(), Duration.ofHours(24));
+        verify(marker, never()).expire(Duration.ofHours(24));
+    }
+
+    @Test
+    void claimIsReleasedWhenOrderFails() {
+        when(orderService.createOrder(anyString(), any(PurchaseRequest.class))).thenThrow(new IllegalStateException("db down"));
+
+        assertThrows(IllegalStateException.class, () -> service.purchase("retry-4", purchase(2)));
+        verify(marker).compareAndSet(anyString(), isNull());
+        verify(marker, never()).set(any(), any(Duration.class));
+    }
+
+    private PurchaseIdempotencyService service(Duration pendingTtl) {
+        return new PurchaseIdempotencyService(orderService, new OrderNumberGenerator(new SnowflakeIdGenerator(0), ShardRouter.single()),
+                redissonClient, new JacksonConfig().objectMapper(), Duration.ofHours(24), pendingTtl,
+                5000, 1000, Duration.ofMinutes(10));
+    }
+
+    private PurchaseRequest purchase(int quantity) {
+        PurchaseRequest.PurchaseItem item = new PurchaseRequest.PurchaseItem();
+        item.setProductId(1L);
+        item.setQuantity(quantity);
+        PurchaseRequest request = new PurchaseRequest();
+        request.setUserId(1L);
+        request.setItems(List.of(item));
+        return request;
+    }
+}
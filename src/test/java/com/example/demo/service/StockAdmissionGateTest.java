@@ -0,0 +1,155 @@
+package com.example.demo.service;
+
+import com.example.demo.exception.InsufficientStockException;
+import com.example.demo.metrics.ShopMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RBuckets;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StockAdmissionGateTest {
+
+    // 模拟 Redis 中的剩余库存
+    private final Map<String, String> redisStock = new ConcurrentHashMap<>();
+    private final RedissonClient redissonClient = mock(RedissonClient.class);
+
+    StockAdmissionGateTest() {
+        RBuckets buckets = mock(RBuckets.class);
+        when(redissonClient.getBuckets(StringCodec.INSTANCE)).thenReturn(buckets);
+        when(buckets.get(any(String[].class))).thenAnswer(invocation -> {
+            Map<String, String> values = new HashMap<>();
+            for (Object key : invocation.getArguments()) {
+                String stock = redisStock.get((String) key);
+                if (stock != null) {
+                    values.put((String) key, stock);
+                }
+            }
+            return values;
+        });
+    }
+
+    @Test
+    void unloadedProductsPassThrough() {
+        StockAdmissionGate gate = gate(1.0, 0);
+        assertDoesNotThrow(() -> gate.acquire(Map.of(1L, 100)));
+
+        // Redis 还没有加载库存时补充也不建预算，由预扣脚本决定
+        gate.refill();
+        assertDoesNotThrow(() -> gate.acquire(Map.of(1L, 100)));
+        assertEquals(Map.of(), gate.stats().get("lowest"));
+    }
+
+    @Test
+    void refillResetsBudgetToRedisStock() {
+        StockAdmissionGate gate = gate(1.0, 0);
+        gate.acquire(Map.of(1L, 1));
+        stock(1L, 5);
+        gate.refill();
+
+        gate.acquire(Map.of(1L, 3));
+        assertThrows(InsufficientStockException.class, () -> gate.acquire(Map.of(1L, 3)));
+
+        // 按 Redis 剩余库存重置，不在上一轮剩余的预算上累加
+        stock(1L, 4);
+        gate.refill();
+        gate.acquire(Map.of(1L, 4));
+        assertThrows(InsufficientStockException.class, () -> gate.acquire(Map.of(1L, 1)));
+        assertEquals(2L, gate.stats().get("rejected"));
+
+        // 库存被删除（对账）后恢复放行
+        redisStock.clear();
+        gate.refill();
+        assertDoesNotThrow(() -> gate.acquire(Map.of(1L, 10)));
+    }
+
+    @Test
+    void shareIsRoundedUp() {
+        StockAdmissionGate gate = gate(0.5, 0);
+        gate.acquire(Map.of(1L, 1));
+        stock(1L, 3);
+        gate.refill();
+
+        gate.acquire(Map.of(1L, 2));
+        assertThrows(InsufficientStockException.class, () -> gate.acquire(Map.of(1L, 1)));
+    }
+
+    @Test
+    void cartIsAdmittedAllOrNothing() {
+        StockAdmissionGate gate = gate(1.0, 0);
+        gate.acquire(Map.of(1L, 1, 2L, 1));
+        stock(1L, 5);
+        stock(2L, 1);
+        gate.refill();
+
+        Map<Long, Integer> cart = new LinkedHashMap<>();
+        cart.put(1L, 3);
+        cart.put(2L, 2);
+        assertThrows(InsufficientStockException.class, () -> gate.acquire(cart));
+
+        // 商品 2 不足时，已为商品 1 拿到的令牌全部还回
+        gate.acquire(Map.of(1L, 5, 2L, 1));
+        gate.release(Map.of(1L, 5, 2L, 1));
+        gate.acquire(Map.of(1L, 5, 2L, 1));
+        assertEquals(Map.of(1L, 0L, 2L, 0L), gate.stats().get("lowest"));
+    }
+
+    @Test
+    void queuedRequestTimesOutWithoutRefill() {
+        StockAdmissionGate gate = gate(1.0, 50);
+        gate.acquire(Map.of(1L, 1));
+        stock(1L, 1);
+        gate.refill();
+        gate.acquire(Map.of(1L, 1));
+
+        long start = System.nanoTime();
+        assertThrows(InsufficientStockException.class, () -> gate.acquire(Map.of(1L, 1)));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(1L, gate.stats().get("queued"));
+    }
+
+    @Test
+    void queuedRequestIsAdmittedByNextRefill() throws Exception {
+        StockAdmissionGate gate = gate(1.0, 10_000);
+        gate.acquire(Map.of(1L, 1));
+        stock(1L, 0);
+        gate.refill();
+
+        CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> gate.acquire(Map.of(1L, 1)));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!gate.stats().get("queued").equals(1L)) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+        assertFalse(waiting.isDone());
+
+        stock(1L, 1);
+        gate.refill();
+        waiting.get(10, TimeUnit.SECONDS);
+    }
+
+    private StockAdmissionGate gate(double share, long queueTimeoutMs) {
+        return new StockAdmissionGate(redissonClient, new ShopMetrics(new SimpleMeterRegistry()),
+                true, share, 4, queueTimeoutMs, 100, 60_000);
+    }
+
+    private void stock(Long productId, long stock) {
+        redisStock.put(StockReservationServiceImpl.STOCK_KEY_PREFIX + productId, String.valueOf(stock));
+    }
+}
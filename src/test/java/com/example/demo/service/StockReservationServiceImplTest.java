@@ -0,0 +1,76 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Product;
+import com.example.demo.mapper.ProductMapper;
+import com.example.demo.support.EmbeddedEnvironmentTest;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 预扣结算脚本在 jedis-mock 上执行：回滚加回库存、提交只清在途数量，重复结算不再修改。
+ */
+class StockReservationServiceImplTest extends EmbeddedEnvironmentTest {
+
+    @Autowired
+    private StockReservationService stockReservationService;
+    @Autowired
+    private ProductMapper productMapper;
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Test
+    void releaseGivesStockBackOnceAndConfirmKeepsItDeducted() {
+        long productId = createProduct(10);
+        long other = createProduct(5);
+
+        stockReservationService.reserve("settle-1", Map.of(productId, 3, other, 2));
+        assertEquals(7, redisStock(productId));
+        assertEquals(3, inflight(productId));
+
+        stockReservationService.release("settle-1");
+        stockReservationService.release("settle-1");
+        assertEquals(10, redisStock(productId));
+        assertEquals(5, redisStock(other));
+        assertEquals(0, inflight(productId));
+        assertEquals(0, inflight(other));
+
+        stockReservationService.reserve("settle-2", Map.of(productId, 4));
+        stockReservationService.confirm("settle-2");
+        stockReservationService.release("settle-2");
+        assertEquals(6, redisStock(productId));
+        assertEquals(0, inflight(productId));
+    }
+
+    private long createProduct(int stock) {
+        LocalDateTime now = LocalDateTime.now();
+        Product product = Product.builder()
+                .name("预扣结算-" + System.nanoTime())
+                .price(BigDecimal.ONE)
+                .stock(stock)
+                .createdTime(now)
+                .updatedTime(now)
+                .build();
+        productMapper.insert(product);
+        return product.getId();
+    }
+
+    private long redisStock(long productId) {
+        String stock = redissonClient.<String>getBucket(StockReservationServiceImpl.STOCK_KEY_PREFIX + productId,
+                StringCodec.INSTANCE).get();
+        return Long.parseLong(stock);
+    }
+
+    private long inflight(long productId) {
+        String inflight = redissonClient.<String, String>getMap("stock:inflight", StringCodec.INSTANCE)
+                .get(String.valueOf(productId));
+        return inflight == null ? 0 : Long.parseLong(inflight);
+    }
+}
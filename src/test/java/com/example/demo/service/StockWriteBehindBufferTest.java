@@ -0,0 +1,117 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Product;
+import com.example.demo.mapper.ProductMapper;
+import com.example.demo.mapper.StockJournalMapper;
+import com.example.demo.support.ServiceFixtures;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@MybatisTest
+class StockWriteBehindBufferTest {
+
+    @Autowired
+    private ProductMapper productMapper;
+    @Autowired
+    private StockJournalMapper stockJournalMapper;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Long productId;
+
+    @BeforeEach
+    void setUp() {
+        LocalDateTime now = LocalDateTime.now();
+        Product product = Product.builder()
+                .name("热点商品")
+                .price(BigDecimal.valueOf(100))
+                .stock(5)
+                .createdTime(now)
+                .updatedTime(now)
+                .build();
+        productMapper.insert(product);
+        productId = product.getId();
+    }
+
+    @Test
+    void mergesNetDeltaPerProductInOneUpdate() {
+        StockWriteBehindBuffer buffer = buffer(false);
+        buffer.record(Map.of(productId, 3));
+        buffer.record(Map.of(productId, -1));
+        buffer.record(Map.of(productId, 2));
+
+        // 未合并前表中库存不变，读库存已包含日志中的变化量
+        assertEquals(5, productMapper.findById(productId).orElseThrow().getStock());
+        assertEquals(9, productMapper.getStock(productId, true));
+        // 未开启 write-behind 时不访问日志表
+        assertEquals(5, productMapper.getStock(productId, false));
+
+        assertEquals(3, buffer.flushAll());
+        assertEquals(9, productMapper.findById(productId).orElseThrow().getStock());
+        assertEquals(9, productMapper.getStock(productId, true));
+        assertEquals(0, stockJournalMapper.count());
+    }
+
+    @Test
+    void strictModeBuffersReturnsButNeverOversells() {
+        StockWriteBehindBuffer buffer = buffer(true);
+        ProductService productService = ServiceFixtures.productService(productMapper).stockWriteBehindBuffer(buffer).build();
+
+        productService.increaseStock(productId, 3);
+        assertEquals(1, stockJournalMapper.count());
+
+        // 退回的库存合并前不能被扣减
+        assertFalse(productService.deductStockBatch(Map.of(productId, 6)));
+        assertEquals(5, productMapper.findById(productId).orElseThrow().getStock());
+
+        buffer.flushAll();
+        assertTrue(productService.deductStockBatch(Map.of(productId, 6)));
+        assertEquals(2, productMapper.getStock(productId, true));
+    }
+
+    @Test
+    void pendingStatsComeFromJournalOnEveryNode() {
+        StockWriteBehindBuffer merger = buffer(false);
+        // 没拿到合并锁的节点只负责写日志
+        StockWriteBehindBuffer other = buffer(false, false);
+        other.record(Map.of(productId, 3));
+        other.record(Map.of(productId, -1));
+
+        assertEquals(0, other.flushAll());
+        assertEquals(Map.of(productId, 2), other.stats().get("pending"));
+        assertEquals(2L, other.stats().get("backlog"));
+
+        // 其他节点合并后，本节点的积压随之清空
+        merger.flushAll();
+        assertEquals(Map.of(), other.stats().get("pending"));
+        assertEquals(0L, other.stats().get("backlog"));
+    }
+
+    private StockWriteBehindBuffer buffer(boolean strict) {
+        return buffer(strict, true);
+    }
+
+    private StockWriteBehindBuffer buffer(boolean strict, boolean lockAcquired) {
+        RedissonClient redissonClient = mock(RedissonClient.class);
+        RLock lock = mock(RLock.class);
+        when(redissonClient.getLock("stock:journal:flush_lock")).thenReturn(lock);
+        when(lock.tryLock()).thenReturn(lockAcquired);
+        return new StockWriteBehindBuffer(productMapper, stockJournalMapper, mock(ProductOutbox.class),
+                redissonClient, transactionManager, true, strict, 2);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.demo.shard;
+
+import com.example.demo.id.SnowflakeIdGenerator;
+import com.example.demo.service.OrderNumberGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ShardRouterTest {
+
+    private final ShardRouter router = new ShardRouter(4);
+
+    @Test
+    void orderIdsFromStepOffsetSequencesMapBackToTheirShard() {
+        // 分片 s 的主键序列：s + 1, s + 1 + N, s + 1 + 2N ...
+        for (int shard = 0; shard < router.shardCount(); shard++) {
+            for (long id = shard + 1; id < 1000; id += router.shardCount()) {
+                assertEquals(shard, router.shardOfOrderId(id));
+            }
+        }
+        Map<Integer, List<Long>> groups = router.groupOrderIds(List.of(1L, 2L, 5L, 8L, 6L));
+        assertEquals(Map.of(0, List.of(1L, 5L), 1, List.of(2L, 6L), 3, List.of(8L)), groups);
+    }
+
+    @Test
+    void legacyOrderIdsStayOnProductShard() {
+        ShardRouter migrated = new ShardRouter(4, 1000);
+        // 分片前的订单主键连续，都在 0 号分片
+        for (long id = 1; id <= 1000; id++) {
+            assertEquals(ShardRouter.PRODUCT_SHARD, migrated.shardOfOrderId(id));
+        }
+        assertEquals(0, migrated.shardOfOrderId(1001));
+        assertEquals(1, migrated.shardOfOrderId(1002));
+        assertEquals(3, migrated.shardOfOrderId(1004));
+        assertEquals("SET SESSION auto_increment_increment = 4, auto_increment_offset = 2", migrated.idSequenceInitSql(1));
+        assertNull(ShardRouter.single().idSequenceInitSql(0));
+    }
+
+    @Test
+    void orderNumberCarriesUserShard() {
+        OrderNumberGenerator generator = new OrderNumberGenerator(new SnowflakeIdGenerator(0), router);
+        for (long userId = 0; userId < 20; userId++) {
+            assertEquals(router.shardOfUser(userId), OrderNumberGenerator.shardOf(generator.next(userId)));
+        }
+        // 分片前的旧订单号
+        assertEquals(ShardRouter.PRODUCT_SHARD, OrderNumberGenerator.shardOf("ORD1234567890123"));
+    }
+
+    @Test
+    void rejectsShardCountOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardRouter(0));
+        assertThrows(IllegalArgumentException.class, () -> new ShardRouter(ShardRouter.MAX_SHARDS + 1));
+    }
+
+    @Test
+    void scatterGatherRunsEachQueryInItsShardAndRestoresContext() {
+        var executor = Executors.newFixedThreadPool(2);
+        try {
+            ShardScatterGather scatterGather = new ShardScatterGather(router, executor);
+            List<Integer> seen = scatterGather.gather(shard -> List.of(ShardContext.current() * 10 + shard));
+            List<Integer> sorted = new ArrayList<>(seen);
+            sorted.sort(null);
+            assertEquals(List.of(0, 11, 22, 33), sorted);
+
+            Integer inner = ShardContext.call(2, () -> ShardContext.call(3, ShardContext::current));
+            assertEquals(3, inner);
+            assertNull(ShardContext.current());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.demo.shard;
+
+import com.example.demo.dto.OrderFetch;
+import com.example.demo.dto.PurchaseRequest;
+import com.example.demo.entity.Order;
+import com.example.demo.entity.Product;
+import com.example.demo.entity.StockDeduction;
+import com.example.demo.id.SnowflakeIdGenerator;
+import com.example.demo.mapper.OrderItemMapper;
+import com.example.demo.mapper.OrderMapper;
+import com.example.demo.mapper.ProductMapper;
+import com.example.demo.mapper.StockDeductionMapper;
+import com.example.demo.service.OrderNumberGenerator;
+import com.example.demo.service.OrderServiceImpl;
+import com.example.demo.service.ProductService;
+import com.example.demo.service.StockDeductionLedger;
+import com.example.demo.support.ServiceFixtures;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 每个分片一个 H2 库：订单按用户落到各自分片，主键可算回分片；
+ * 订单不在商品分片时，库存在商品分片的独立事务里扣减并记账，订单事务回滚后按记录补偿加回。
+ */
+@MybatisTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ShardRoutingDataSourceTest {
+    private static final int SHARDS = 2;
+    private static final List<DataSource> SHARD_DATABASES = new ArrayList<>();
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        DataSource dataSource() {
+            SHARD_DATABASES.clear();
+            for (int shard = 0; shard < SHARDS; shard++) {
+                DataSource database = new DriverManagerDataSource(
+                        "jdbc:h2:mem:shard-test-" + shard + ";DB_CLOSE_DELAY=-1", "sa", "");
+                // H2 没有 auto_increment_increment，建表时直接指定步长和起始值，效果相同
+                String orders = "CREATE TABLE IF NOT EXISTS orders (" +
+                        "id BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH " + (shard + 1) +
+                        " INCREMENT BY " + SHARDS + ") PRIMARY KEY, " +
+                        "order_number VARCHAR(64) NOT NULL UNIQUE, user_id BIGINT NOT NULL, " +
+                        "total_amount DECIMAL(12, 2) NOT NULL, status VARCHAR(20) NOT NULL, " +
+                        "created_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                        "updated_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP)";
+                new ResourceDatabasePopulator(new ByteArrayResource(orders.getBytes(StandardCharsets.UTF_8)),
+                        new ClassPathResource("schema.sql")).execute(database);
+                SHARD_DATABASES.add(database);
+            }
+            return new ShardRoutingDataSource(SHARD_DATABASES);
+        }
+    }
+
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private OrderItemMapper orderItemMapper;
+    @Autowired
+    private ProductMapper productMapper;
+    @Autowired
+    private StockDeductionMapper stockDeductionMapper;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final ShardRouter router = new ShardRouter(SHARDS);
+    private OrderServiceImpl orderService;
+    private StockDeductionLedger ledger;
+    private Long productId;
+
+    @BeforeEach
+    void setUp() {
+        for (DataSource database : SHARD_DATABASES) {
+            new JdbcTemplate(database).execute("DELETE FROM order_items");
+            new JdbcTemplate(database).execute("DELETE FROM orders");
+            new JdbcTemplate(database).execute("DELETE FROM stock_deduction");
+        }
+        ProductService productService = ServiceFixtures.productService(productMapper).build();
+        ledger = new StockDeductionLedger(stockDeductionMapper, productService, transactionManager);
+        orderService = ServiceFixtures.orderService(orderMapper, orderItemMapper, productService, transactionManager)
+                .shardRouter(router)
+                .shardScatterGather(new ShardScatterGather(router, Executors.newFixedThreadPool(SHARDS)))
+                .stockDeductionLedger(ledger)
+                .build();
+
+        LocalDateTime now = LocalDateTime.now();
+        Product product = Product.builder()
+                .name("分片测试商品-" + System.nanoTime())
+                .price(new BigDecimal("9.90"))
+                .stock(10)
+                .createdTime(now)
+                .updatedTime(now)
+                .build();
+        // 商品只在 0 号分片
+        productMapper.insert(product);
+        productId = product.getId();
+    }
+
+    @Test
+    void ordersLandOnUserShardAndAreFoundByIdAndScatterGather() {
+        Order onProductShard = orderService.createOrder(purchase(10L, 1));
+        Order onOtherShard = orderService.createOrder(purchase(11L, 2));
+
+        assertEquals(0, router.shardOfOrderId(onProductShard.getId()));
+        assertEquals(1, router.shardOfOrderId(onOtherShard.getId()));
+        assertEquals(1, ordersIn(0));
+        assertEquals(1, ordersIn(1));
+        assertEquals(7, stock());
+
+        // 按主键路由到订单所在分片
+        assertEquals(11L, orderService.getOrderById(onOtherShard.getId(), OrderFetch.ITEMS).orElseThrow().getUserId());
+        assertTrue(orderService.payOrder(onOtherShard.getId()));
+
+        List<Order> pending = orderService.getRecentOrdersByStatus("PENDING", 10);
+        assertEquals(List.of(onProductShard.getId()), pending.stream().map(Order::getId).toList());
+        assertEquals(1, orderService.cancelOrders(List.of(onProductShard.getId(), onOtherShard.getId())));
+        assertEquals(8, stock());
+    }
+
+    @Test
+    void crossShardDeductIsCompensatedWhenOrderTransactionRollsBack() {
+        String orderNumber = new OrderNumberGenerator(new SnowflakeIdGenerator(1), router).next(11L);
+        orderService.createOrder(orderNumber, purchase(11L, 2));
+        assertEquals(8, stock());
+
+        // 商品分片上的扣减已提交，订单分片插入失败回滚后补偿加回
+        assertThrows(DuplicateKeyException.class, () -> orderService.createOrder(orderNumber, purchase(11L, 3)));
+        assertEquals(8, stock());
+        assertEquals(1, ordersIn(1));
+        assertEquals(0, deductions());
+
+        // 取消跨分片订单，提交后在商品分片加回库存
+        Long orderId = orderService.getOrderByNumber(orderNumber).orElseThrow().getId();
+        assertTrue(orderService.cancelOrder(orderId));
+        assertEquals(10, stock());
+    }
+
+    @Test
+    void deductionLeftByCrashIsRestoredOnceAndSettledDeductionIsNot() {
+        // 模拟扣减已提交、订单事务结束前节点崩溃：记录留在商品分片上
+        String orderNumber = new OrderNumberGenerator(new SnowflakeIdGenerator(1), router).next(11L);
+        String deductionId = ledger.deduct(orderNumber, Map.of(productId, 4));
+        assertEquals(6, stock());
+        assertEquals(1, deductions());
+        assertEquals(List.of(orderNumber), ledger.findStale(LocalDateTime.now().plusMinutes(1), 10).stream()
+                .map(StockDeduction::getOrderNumber).toList());
+
+        assertTrue(ledger.restore(deductionId));
+        assertEquals(10, stock());
+        assertEquals(0, deductions());
+        // 补偿和修复任务都处理同一条记录时只加回一次
+        assertFalse(ledger.restore(deductionId));
+        assertEquals(10, stock());
+
+        // 订单已落库的扣减只删除记录
+        String settled = ledger.deduct(orderNumber, Map.of(productId, 4));
+        ledger.settle(settled);
+        assertFalse(ledger.restore(settled));
+        assertEquals(6, stock());
+        // 库存不足时不扣减也不记账
+        assertNull(ledger.deduct(orderNumber, Map.of(productId, 7)));
+        assertEquals(0, deductions());
+    }
+
+    private int deductions() {
+        return new JdbcTemplate(SHARD_DATABASES.get(ShardRouter.PRODUCT_SHARD))
+                .queryForObject("SELECT COUNT(*) FROM stock_deduction", Integer.class);
+    }
+
+    private int stock() {
+        return new JdbcTemplate(SHARD_DATABASES.get(ShardRouter.PRODUCT_SHARD))
+                .queryForObject("SELECT stock FROM products WHERE id = ?", Integer.class, productId);
+    }
+
+    private int ordersIn(int shard) {
+        return new JdbcTemplate(SHARD_DATABASES.get(shard)).queryForObject("SELECT COUNT(*) FROM orders", Integer.class);
+    }
+
+    private PurchaseRequest purchase(Long userId, int quantity) {
+        PurchaseRequest.PurchaseItem item = new PurchaseRequest.PurchaseItem();
+        item.setProductId(productId);
+        item.setQuantity(quantity);
+        PurchaseRequest request = new PurchaseRequest();
+        request.setUserId(userId);
+        request.setItems(List.of(item));
+        return request;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.demo.support;
+
+import com.github.fppt.jedismock.RedisServer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * 不依赖本地 MySQL 和 Redis 的完整应用上下文：test 环境使用内存 H2，
+ * Redis 换成进程内的 jedis-mock（真实的 RESP 协议，Redisson 客户端和 Lua 脚本照常执行）。
+ * Redis 服务在 JVM 内只启动一次，子类共享同一个缓存的 Spring 上下文。
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public abstract class EmbeddedEnvironmentTest {
+
+    private static final RedisServer REDIS = startRedis();
+
+    @DynamicPropertySource
+    static void redisProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.redis.host", REDIS::getHost);
+        registry.add("spring.data.redis.port", REDIS::getBindPort);
+    }
+
+    private static RedisServer startRedis() {
+        try {
+            RedisServer server = RedisServer.newRedisServer();
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    server.stop();
+                } catch (IOException ignored) {
+                    // JVM 退出时忽略
+                }
+            }));
+            return server;
+        } catch (IOException e) {
+            throw new UncheckedIOException("启动进程内 Redis 失败", e);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.demo.support;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+
+/**
+ * 多线程压测：threads 个线程同时开始，共发出 requests 个请求，逐个记录耗时。
+ * 请求返回 true 计为成功；抛出异常计为错误，不计入成功数。
+ */
+public final class LoadRunner {
+
+    private LoadRunner() {
+    }
+
+    // 可通过 -Dloadtest.threads / -Dloadtest.requests 调大规模
+    public static int threads(int defaultValue) {
+        return Integer.getInteger("loadtest.threads", defaultValue);
+    }
+
+    public static int requests(int defaultValue) {
+        return Integer.getInteger("loadtest.requests", defaultValue);
+    }
+
+    public static Report run(String name, int threads, int requests, IntPredicate request) throws Exception {
+        long[] latencies = new long[requests];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> workers = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                workers.add(executor.submit(() -> {
+                    ready.countDown();
+                    start.await();
+                    for (int i = next.getAndIncrement(); i < requests; i = next.getAndIncrement()) {
+                        long begin = System.nanoTime();
+                        try {
+                            if (request.test(i)) {
+                                succeeded.incrementAndGet();
+                            }
+                        } catch (RuntimeException e) {
+                            errors.incrementAndGet();
+                        }
+                        latencies[i] = System.nanoTime() - begin;
+                    }
+                    return null;
+                }));
+            }
+            ready.await();
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(5, TimeUnit.MINUTES);
+            }
+            long elapsed = System.nanoTime() - begin;
+            return new Report(name, threads, requests, succeeded.get(), errors.get(), elapsed, latencies);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public record Report(String name, int threads, int requests, int succeeded, int errors,
+                         long elapsedNanos, long[] latencies) {
+
+        public double throughput() {
+            return requests * 1e9 / elapsedNanos;
+        }
+
+        // 最近秩法，返回毫秒
+        public double percentileMillis(double percentile) {
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+            return sorted[Math.max(rank - 1, 0)] / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: 线程 %d, 请求 %d, 成功 %d, 错误 %d, 吞吐 %.1f req/s, p50 %.2fms, p99 %.2fms",
+                    name, threads, requests, succeeded, errors, throughput(),
+                    percentileMillis(50), percentileMillis(99));
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.demo.support;
+
+import com.example.demo.cache.HotKeyDetector;
+import com.example.demo.cache.ProductBloomFilter;
+import com.example.demo.cache.ProductCache;
+import com.example.demo.cache.ProductCacheProperties;
+import com.example.demo.id.SnowflakeIdGenerator;
+import com.example.demo.mapper.OrderItemMapper;
+import com.example.demo.mapper.OrderMapper;
+import com.example.demo.mapper.ProductMapper;
+import com.example.demo.metrics.ShopMetrics;
+import com.example.demo.service.OrderGraphLoader;
+import com.example.demo.service.OrderNumberGenerator;
+import com.example.demo.service.OrderPricing;
+import com.example.demo.service.OrderServiceImpl;
+import com.example.demo.service.OrderTimeoutQueue;
+import com.example.demo.service.ProductOutbox;
+import com.example.demo.service.ProductService;
+import com.example.demo.service.ProductServiceImpl;
+import com.example.demo.service.StockDeductionLedger;
+import com.example.demo.service.StockReservationService;
+import com.example.demo.service.StockWriteBehindBuffer;
+import com.example.demo.shard.ShardRouter;
+import com.example.demo.shard.ShardScatterGather;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.redisson.api.RedissonClient;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.concurrent.Executor;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * 测试和基准测试共用的服务装配，构造参数变化时只改这里。
+ * 未指定的依赖用模拟对象（单分片、同步执行），@Value 字段按 application.yaml 的默认值设置。
+ */
+public final class ServiceFixtures {
+
+    private ServiceFixtures() {
+    }
+
+    public static ProductServiceBuilder productService(ProductMapper productMapper) {
+        return new ProductServiceBuilder(productMapper);
+    }
+
+    public static OrderServiceBuilder orderService(OrderMapper orderMapper, OrderItemMapper orderItemMapper,
+                                                   ProductService productService,
+                                                   PlatformTransactionManager transactionManager) {
+        return new OrderServiceBuilder(orderMapper, orderItemMapper, productService, transactionManager);
+    }
+
+    public static final class ProductServiceBuilder {
+        private final ProductMapper productMapper;
+        private RedissonClient redissonClient;
+        private ProductCache productCache;
+        private HotKeyDetector hotKeyDetector;
+        private ProductCacheProperties cacheProperties;
+        private Executor cacheRefreshExecutor = Runnable::run;
+        private ProductBloomFilter productBloomFilter;
+        private StockWriteBehindBuffer stockWriteBehindBuffer;
+        private ShopMetrics shopMetrics;
+        private ProductOutbox productOutbox;
+
+        private ProductServiceBuilder(ProductMapper productMapper) {
+            this.productMapper = productMapper;
+        }
+
+        public ProductServiceBuilder redissonClient(RedissonClient redissonClient) {
+            this.redissonClient = redissonClient;
+            return this;
+        }
+
+        public ProductServiceBuilder productCache(ProductCache productCache) {
+            this.productCache = productCache;
+            return this;
+        }
+
+        public ProductServiceBuilder hotKeyDetector(HotKeyDetector hotKeyDetector) {
+            this.hotKeyDetector = hotKeyDetector;
+            return this;
+        }
+
+        public ProductServiceBuilder cacheProperties(ProductCacheProperties cacheProperties) {
+            this.cacheProperties = cacheProperties;
+            return this;
+        }
+
+        public ProductServiceBuilder cacheRefreshExecutor(Executor cacheRefreshExecutor) {
+            this.cacheRefreshExecutor = cacheRefreshExecutor;
+            return this;
+        }
+
+        public ProductServiceBuilder productBloomFilter(ProductBloomFilter productBloomFilter) {
+            this.productBloomFilter = productBloomFilter;
+            return this;
+        }
+
+        public ProductServiceBuilder stockWriteBehindBuffer(StockWriteBehindBuffer stockWriteBehindBuffer) {
+            this.stockWriteBehindBuffer = stockWriteBehindBuffer;
+            return this;
+        }
+
+        public ProductServiceBuilder shopMetrics(ShopMetrics shopMetrics) {
+            this.shopMetrics = shopMetrics;
+            return this;
+        }
+
+        public ProductServiceBuilder productOutbox(ProductOutbox productOutbox) {
+            this.productOutbox = productOutbox;
+            return this;
+        }
+
+        public ProductServiceImpl build() {
+            ProductServiceImpl productService = new ProductServiceImpl(productMapper,
+                    redissonClient != null ? redissonClient : mock(RedissonClient.class),
+                    productCache != null ? productCache : mock(ProductCache.class),
+                    hotKeyDetector != null ? hotKeyDetector : mock(HotKeyDetector.class),
+                    cacheProperties != null ? cacheProperties : new ProductCacheProperties(),
+                    cacheRefreshExecutor,
+                    productBloomFilter != null ? productBloomFilter : mock(ProductBloomFilter.class),
+                    stockWriteBehindBuffer != null ? stockWriteBehindBuffer : mock(StockWriteBehindBuffer.class),
+                    shopMetrics != null ? shopMetrics : new ShopMetrics(new SimpleMeterRegistry()),
+                    productOutbox != null ? productOutbox : mock(ProductOutbox.class));
+            ReflectionTestUtils.setField(productService, "maxPageSize", 100);
+            return productService;
+        }
+    }
+
+    public static final class OrderServiceBuilder {
+        private final OrderMapper orderMapper;
+        private final OrderItemMapper orderItemMapper;
+        private final ProductService productService;
+        private final PlatformTransactionManager transactionManager;
+        private StockReservationService stockReservationService;
+        private OrderNumberGenerator orderNumberGenerator;
+        private OrderGraphLoader orderGraphLoader;
+        private OrderTimeoutQueue orderTimeoutQueue;
+        private OrderPricing orderPricing;
+        private ShardRouter shardRouter = ShardRouter.single();
+        private ShardScatterGather shardScatterGather;
+        private StockDeductionLedger stockDeductionLedger;
+        private ShopMetrics shopMetrics;
+
+        private OrderServiceBuilder(OrderMapper orderMapper, OrderItemMapper orderItemMapper,
+                                    ProductService productService, PlatformTransactionManager transactionManager) {
+            this.orderMapper = orderMapper;
+            this.orderItemMapper = orderItemMapper;
+            this.productService = productService;
+            this.transactionManager = transactionManager;
+        }
+
+        public OrderServiceBuilder stockReservationService(StockReservationService stockReservationService) {
+            this.stockReservationService = stockReservationService;
+            return this;
+        }
+
+        public OrderServiceBuilder orderNumberGenerator(OrderNumberGenerator orderNumberGenerator) {
+            this.orderNumberGenerator = orderNumberGenerator;
+            return this;
+        }
+
+        public OrderServiceBuilder orderGraphLoader(OrderGraphLoader orderGraphLoader) {
+            this.orderGraphLoader = orderGraphLoader;
+            return this;
+        }
+
+        public OrderServiceBuilder orderTimeoutQueue(OrderTimeoutQueue orderTimeoutQueue) {
+            this.orderTimeoutQueue = orderTimeoutQueue;
+            return this;
+        }
+
+        public OrderServiceBuilder orderPricing(OrderPricing orderPricing) {
+            this.orderPricing = orderPricing;
+            return this;
+        }
+
+        // 同时决定默认的订单号生成器和跨分片查询
+        public OrderServiceBuilder shardRouter(ShardRouter shardRouter) {
+            this.shardRouter = shardRouter;
+            return this;
+        }
+
+        public OrderServiceBuilder shardScatterGather(ShardScatterGather shardScatterGather) {
+            this.shardScatterGather = shardScatterGather;
+            return this;
+        }
+
+        public OrderServiceBuilder stockDeductionLedger(StockDeductionLedger stockDeductionLedger) {
+            this.stockDeductionLedger = stockDeductionLedger;
+            return this;
+        }
+
+        public OrderServiceBuilder shopMetrics(ShopMetrics shopMetrics) {
+            this.shopMetrics = shopMetrics;
+            return this;
+        }
+
+        public OrderServiceImpl build() {
+            OrderServiceImpl orderService = new OrderServiceImpl(orderMapper, orderItemMapper, productService,
+                    stockReservationService != null ? stockReservationService : mock(StockReservationService.class),
+                    orderNumberGenerator != null ? orderNumberGenerator
+                            : new OrderNumberGenerator(new SnowflakeIdGenerator(0), shardRouter),
+                    orderGraphLoader != null ? orderGraphLoader : new OrderGraphLoader(orderItemMapper, productService),
+                    orderTimeoutQueue != null ? orderTimeoutQueue : mock(OrderTimeoutQueue.class),
+                    orderPricing != null ? orderPricing : new OrderPricing(productService, transactionManager),
+                    shardRouter,
+                    shardScatterGather != null ? shardScatterGather : new ShardScatterGather(shardRouter, Runnable::run),
+                    stockDeductionLedger != null ? stockDeductionLedger : mock(StockDeductionLedger.class),
+                    transactionManager,
+                    shopMetrics != null ? shopMetrics : new ShopMetrics(new SimpleMeterRegistry()));
+            ReflectionTestUtils.setField(orderService, "maxPageSize", 100);
+            ReflectionTestUtils.setField(orderService, "maxCancelBatchSize", 500);
+            return orderService;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.demo.support;
+
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+
+import java.sql.Connection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 统计实际发往数据库的 JDBC 语句数（每次 prepare 计一次）
+@Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class}))
+public class StatementCountingInterceptor implements Interceptor {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        count.incrementAndGet();
+        return invocation.proceed();
+    }
+
+    public int getCount() {
+        return count.get();
+    }
+
+    public void reset() {
+        count.set(0);
+    }
+}
@@ -0,0 +1,60 @@
+CREATE TABLE IF NOT EXISTS products (
+    id           BIGINT AUTO_INCREMENT PRIMARY KEY,
+    name         VARCHAR(255)   NOT NULL,
+    price        DECIMAL(10, 2) NOT NULL,
+    stock        INT            NOT NULL,
+    description  VARCHAR(1000),
+    created_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS orders (
+    id           BIGINT AUTO_INCREMENT PRIMARY KEY,
+    order_number VARCHAR(64)    NOT NULL UNIQUE,
+    user_id      BIGINT         NOT NULL,
+    total_amount DECIMAL(12, 2) NOT NULL,
+    status       VARCHAR(20)    NOT NULL,
+    created_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS order_items (
+    id         BIGINT AUTO_INCREMENT PRIMARY KEY,
+    order_id   BIGINT         NOT NULL,
+    product_id BIGINT         NOT NULL,
+    quantity   INT            NOT NULL,
+    price      DECIMAL(10, 2) NOT NULL,
+    subtotal   DECIMAL(12, 2) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_order_items_order_id ON order_items (order_id);
+CREATE INDEX IF NOT EXISTS idx_orders_user_created ON orders (user_id, created_time, id);
+CREATE INDEX IF NOT EXISTS idx_orders_status_created ON orders (status, created_time);
+
+CREATE TABLE IF NOT EXISTS stock_journal (
+    id           BIGINT AUTO_INCREMENT PRIMARY KEY,
+    product_id   BIGINT NOT NULL,
+    delta        INT    NOT NULL,
+    created_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_stock_journal_product ON stock_journal (product_id);
+
+CREATE TABLE IF NOT EXISTS stock_deduction (
+    id           BIGINT AUTO_INCREMENT PRIMARY KEY,
+    deduction_id VARCHAR(36) NOT NULL,
+    order_number VARCHAR(64) NOT NULL,
+    product_id   BIGINT      NOT NULL,
+    quantity     INT         NOT NULL,
+    created_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_stock_deduction_id ON stock_deduction (deduction_id);
+CREATE INDEX IF NOT EXISTS idx_stock_deduction_created ON stock_deduction (created_time);
+
+CREATE TABLE IF NOT EXISTS product_outbox (
+    id           BIGINT AUTO_INCREMENT PRIMARY KEY,
+    product_id   BIGINT      NOT NULL,
+    change_type  VARCHAR(16) NOT NULL,
+    created_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);